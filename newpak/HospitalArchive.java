@@ -0,0 +1,402 @@
+package newpak;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// =========================================================
+// HOSPITAL ARCHIVE (compressed, day-partitioned segments)
+// =========================================================
+//
+// Discharged (deleted) and long-inactive patients, and old medical history
+// records, leave the live registry for immutable segment files:
+//
+//   patients-<yyyy-MM-dd>-<seq>.seg   day = the day they were archived
+//   history-<yyyy-MM-dd>-<seq>.seg    day = the day the records were written
+//
+// Segment layout: [int magic][byte kind][int count][count x int id (patients
+// only)][gzip body]. The ID list stays uncompressed, so opening the archive
+// reads only headers to build the ID -> segment index; a lookup inflates one
+// segment of at most SEGMENT_PATIENTS rows. If an ID was archived twice, the
+// newer segment wins.
+//
+// One low-priority daemon thread does the work; the registry is only locked
+// to pick candidates and to remove them, never while compressing or writing.
+public class HospitalArchive implements Closeable {
+    static final int SEGMENT_PATIENTS = 4096;
+    static final int MAX_PENDING = 10_000;
+
+    private static final int MAGIC = 0x48415243; // "HARC"
+    private static final byte KIND_PATIENTS = 1;
+    private static final byte KIND_HISTORY = 2;
+
+    public enum Reason { DISCHARGED, INACTIVE }
+
+    // One archived row: the patient as it was when it left the registry
+    public static final class ArchivedPatient {
+        private final Patient patient;
+        private final long archivedAt;
+        private final Reason reason;
+
+        ArchivedPatient(Patient patient, long archivedAt, Reason reason) {
+            this.patient = patient;
+            this.archivedAt = archivedAt;
+            this.reason = reason;
+        }
+
+        public Patient getPatient() { return patient; }
+        public long getArchivedAt() { return archivedAt; }
+        public Reason getReason() { return reason; }
+
+        @Override
+        public String toString() {
+            return patient + " | " + reason + " " + Instant.ofEpochMilli(archivedAt);
+        }
+    }
+
+    private final Path dir;
+    private final List<Path> segments = new ArrayList<>();           // by sequence number
+    private final IntIntHashMap patientSegments = new IntIntHashMap(1024);
+    private final List<ArchivedPatient> pending = new ArrayList<>(); // guarded by itself
+    private final AtomicBoolean passQueued = new AtomicBoolean();
+    private volatile ScheduledExecutorService worker;
+    private Runnable pass;
+    private int cachedSegment = -1;
+    private List<ArchivedPatient> cachedRows;
+    private long archivedRecords;
+    private long bytes;
+
+    HospitalArchive(Path dir) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.seg")) {
+                stream.forEach(files::add);
+            }
+            files.sort(Comparator.comparingLong(HospitalArchive::sequenceOf));
+            for (Path file : files) {
+                while (segments.size() < sequenceOf(file)) segments.add(null);
+                segments.add(file);
+                indexSegment(segments.size() - 1, file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open archive " + dir, e);
+        }
+    }
+
+    // ---------------- Background worker ----------------
+
+    // Runs pass every intervalMs on one low-priority daemon thread
+    synchronized void start(Runnable pass, long intervalMs) {
+        this.pass = pass;
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hospital-archiver");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        worker.scheduleWithFixedDelay(this::runPass, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Asks for an early pass; at most one is ever queued
+    void requestPass() {
+        ScheduledExecutorService w = worker;
+        if (w != null && passQueued.compareAndSet(false, true)) {
+            w.execute(this::runPass);
+        }
+    }
+
+    private void runPass() {
+        passQueued.set(false);
+        try {
+            pass.run();
+        } catch (RuntimeException e) {
+            System.err.println("Archive pass failed: " + e);
+        }
+    }
+
+    // ---------------- Discharged patients ----------------
+
+    // Queues a deleted patient; true when the queue is full enough to flush.
+    // A delete replayed from the log is skipped when a pass before the
+    // restart already archived the patient as it was.
+    boolean discharge(Patient patient, boolean replayed) {
+        if (replayed) {
+            ArchivedPatient archived = searchPatient(patient.getPatientId());
+            if (archived != null && samePatient(archived.patient, patient)) return false;
+        }
+        synchronized (pending) {
+            pending.add(new ArchivedPatient(patient, System.currentTimeMillis(), Reason.DISCHARGED));
+            return pending.size() >= MAX_PENDING;
+        }
+    }
+
+    // Writes every queued discharge to segments (worker pass and checkpoints)
+    synchronized void flushPending() {
+        List<ArchivedPatient> batch;
+        synchronized (pending) {
+            if (pending.isEmpty()) return;
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        writePatients(batch);
+    }
+
+    private static boolean samePatient(Patient a, Patient b) {
+        return a.getPatientAge() == b.getPatientAge()
+                && Objects.equals(a.getPatientName(), b.getPatientName())
+                && Objects.equals(a.getGender(), b.getGender())
+                && Objects.equals(a.getDisease(), b.getDisease())
+                && Objects.equals(a.getContact(), b.getContact());
+    }
+
+    int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    // ---------------- Writing ----------------
+
+    // Durable (fsync, atomic rename, directory fsync) before returning, so
+    // the caller may then drop the rows from the live registry
+    synchronized void writePatients(List<ArchivedPatient> rows) {
+        for (int from = 0; from < rows.size(); from += SEGMENT_PATIENTS) {
+            List<ArchivedPatient> part = rows.subList(from, Math.min(rows.size(), from + SEGMENT_PATIENTS));
+            int segment = segments.size();
+            Path file = dir.resolve(segmentName("patients", LocalDate.now(), segment));
+            writeSegment(file, KIND_PATIENTS, part.size(), header -> {
+                for (ArchivedPatient row : part) header.writeInt(row.patient.getPatientId());
+            }, body -> {
+                for (ArchivedPatient row : part) {
+                    Patient p = row.patient;
+                    body.writeInt(p.getPatientId());
+                    HospitalPersistence.writeString(body, p.getPatientName());
+                    body.writeInt(p.getPatientAge());
+                    HospitalPersistence.writeString(body, p.getGender());
+                    HospitalPersistence.writeString(body, p.getDisease());
+                    HospitalPersistence.writeString(body, p.getContact());
+                    body.writeLong(row.archivedAt);
+                    body.writeByte(row.reason.ordinal());
+                }
+            });
+            segments.add(file);
+            for (ArchivedPatient row : part) patientSegments.put(row.patient.getPatientId(), segment);
+        }
+    }
+
+    // Records are "yyyy-MM-dd HH:mm:ss - text"; one segment per record day
+    synchronized void writeHistory(List<String> records) {
+        Map<LocalDate, List<String>> byDay = new TreeMap<>();
+        for (String record : records) {
+            byDay.computeIfAbsent(recordDay(record), d -> new ArrayList<>()).add(record);
+        }
+        for (Map.Entry<LocalDate, List<String>> day : byDay.entrySet()) {
+            List<String> part = day.getValue();
+            Path file = dir.resolve(segmentName("history", day.getKey(), segments.size()));
+            writeSegment(file, KIND_HISTORY, part.size(), header -> { }, body -> {
+                for (String record : part) HospitalPersistence.writeString(body, record);
+            });
+            segments.add(file);
+            archivedRecords += part.size();
+        }
+    }
+
+    private interface SegmentWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void writeSegment(Path file, byte kind, int count, SegmentWriter header, SegmentWriter body) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(tmp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeByte(kind);
+                out.writeInt(count);
+                header.write(out);
+                out.flush();
+                DataOutputStream zipped = new DataOutputStream(new BufferedOutputStream(
+                        new GZIPOutputStream(new NonClosing(out), 1 << 16), 1 << 16));
+                body.write(zipped);
+                zipped.close();
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            // The rename is only on disk once the directory entry is; until
+            // then a crash can lose the segment after OP_ARCHIVE_* was logged
+            try (FileChannel directory = FileChannel.open(file.getParent(), StandardOpenOption.READ)) {
+                directory.force(true);
+            }
+            bytes += Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Archive write failed: " + file, e);
+        }
+    }
+
+    // Lets the gzip stream finish without closing the file underneath
+    private static final class NonClosing extends FilterOutputStream {
+        NonClosing(OutputStream out) { super(out); }
+        @Override public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); }
+        @Override public void close() throws IOException { flush(); }
+    }
+
+    // ---------------- Reading ----------------
+
+    public synchronized ArchivedPatient searchPatient(int id) {
+        synchronized (pending) {
+            for (int i = pending.size() - 1; i >= 0; i--) {
+                if (pending.get(i).patient.getPatientId() == id) return pending.get(i);
+            }
+        }
+        int segment = patientSegments.get(id, -1);
+        if (segment < 0) return null;
+        if (segment != cachedSegment) {
+            cachedRows = readPatients(segments.get(segment));
+            cachedSegment = segment;
+        }
+        for (int i = cachedRows.size() - 1; i >= 0; i--) {
+            if (cachedRows.get(i).patient.getPatientId() == id) return cachedRows.get(i);
+        }
+        return null;
+    }
+
+    public synchronized boolean contains(int id) {
+        return patientSegments.containsKey(id);
+    }
+
+    // Archived history records written between from and to (inclusive), oldest first.
+    // Only the segments of those days are opened.
+    public synchronized List<String> getRecords(LocalDate from, LocalDate to) {
+        List<String> records = new ArrayList<>();
+        List<Path> days = new ArrayList<>();
+        for (Path file : segments) {
+            if (file == null || !file.getFileName().toString().startsWith("history-")) continue;
+            LocalDate day = dayOf(file);
+            if (!day.isBefore(from) && !day.isAfter(to)) days.add(file);
+        }
+        days.sort(Comparator.comparing(HospitalArchive::dayOf));
+        for (Path file : days) {
+            try (DataInputStream raw = open(file)) {
+                int count = readHeader(raw, KIND_HISTORY);
+                DataInputStream in = inflate(raw);
+                for (int i = 0; i < count; i++) records.add(HospitalPersistence.readString(in));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Archive read failed: " + file, e);
+            }
+        }
+        return records;
+    }
+
+    public synchronized Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        long segmentCount = segments.stream().filter(Objects::nonNull).count();
+        stats.put("Archive Segments", segmentCount);
+        stats.put("Archived Patients", (long) patientSegments.size());
+        stats.put("Archived Records", archivedRecords);
+        stats.put("Archive Bytes", bytes);
+        stats.put("Pending Discharges", (long) getPendingCount());
+        return stats;
+    }
+
+    private List<ArchivedPatient> readPatients(Path file) {
+        try (DataInputStream raw = open(file)) {
+            int count = readHeader(raw, KIND_PATIENTS);
+            DataInputStream in = inflate(raw);
+            List<ArchivedPatient> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Patient p = new Patient(in.readInt(), HospitalPersistence.readString(in), in.readInt(),
+                        HospitalPersistence.readString(in), HospitalPersistence.readString(in),
+                        HospitalPersistence.readString(in));
+                rows.add(new ArchivedPatient(p, in.readLong(), Reason.values()[in.readByte()]));
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Archive read failed: " + file, e);
+        }
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+    }
+
+    // Checks the header and returns the row count, skipping the ID list
+    private static int readHeader(DataInputStream in, byte kind) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != kind) throw new IOException("Not an archive segment");
+        int count = in.readInt();
+        if (kind == KIND_PATIENTS) in.skipNBytes(4L * count);
+        return count;
+    }
+
+    private static DataInputStream inflate(InputStream in) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new GZIPInputStream(in, 1 << 16), 1 << 16));
+    }
+
+    private void indexSegment(int segment, Path file) throws IOException {
+        try (DataInputStream in = open(file)) {
+            if (in.readInt() != MAGIC) throw new IOException("Not an archive segment: " + file);
+            byte kind = in.readByte();
+            int count = in.readInt();
+            if (kind == KIND_PATIENTS) {
+                for (int i = 0; i < count; i++) patientSegments.put(in.readInt(), segment);
+            } else {
+                archivedRecords += count;
+            }
+        }
+        bytes += Files.size(file);
+    }
+
+    // ---------------- Names ----------------
+    private static String segmentName(String kind, LocalDate day, int sequence) {
+        return String.format("%s-%s-%08d.seg", kind, day, sequence);
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('-') + 1, name.length() - 4));
+    }
+
+    private static LocalDate dayOf(Path file) {
+        String name = file.getFileName().toString();
+        int start = name.indexOf('-') + 1;
+        return LocalDate.parse(name.substring(start, start + 10));
+    }
+
+    static LocalDate recordDay(String record) {
+        try {
+            return LocalDate.parse(record.substring(0, 10));
+        } catch (RuntimeException e) {
+            return LocalDate.now();
+        }
+    }
+
+    // Stops the worker and writes what is still queued
+    @Override
+    public void close() {
+        ScheduledExecutorService w;
+        synchronized (this) {
+            w = worker;
+            worker = null;
+        }
+        if (w != null) {
+            w.shutdown();
+            try {
+                w.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushPending();
+    }
+}
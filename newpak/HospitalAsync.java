@@ -0,0 +1,167 @@
+package newpak;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// =========================================================
+// HOSPITAL ASYNC FACADE (CompletableFuture commands)
+// =========================================================
+//
+// Every subsystem gets one writer thread with an unbounded command queue.
+// Callers (the Swing EDT in particular) enqueue and return immediately;
+// commands for one subsystem run strictly in submission order, while
+// different subsystems run in parallel. The synchronous facade stays the
+// single source of truth, so its monitors are only ever taken uncontended
+// here unless other callers (HTTP API, importers) use the same instance.
+public class HospitalAsync {
+
+    // REPORT only reads: it serves getSystemReportAsync
+    public enum Subsystem {PATIENTS, EMERGENCY, OPD, DEPARTMENTS, HISTORY, REPORT}
+
+    private final HospitalSystemLogic system;
+    private final ThreadPoolExecutor[] writers = new ThreadPoolExecutor[Subsystem.values().length];
+
+    HospitalAsync(HospitalSystemLogic system) {
+        this.system = system;
+        for (Subsystem subsystem : Subsystem.values()) {
+            String name = "hospital-" + subsystem.name().toLowerCase();
+            writers[subsystem.ordinal()] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Subsystem subsystem, Supplier<T> command) {
+        return CompletableFuture.supplyAsync(command, writers[subsystem.ordinal()]);
+    }
+
+    // Commands waiting for the subsystem's writer (excluding the running one)
+    public int getPendingCommands(Subsystem subsystem) {
+        return writers[subsystem.ordinal()].getQueue().size();
+    }
+
+    // Rejects new commands, lets queued ones finish
+    public void shutdown() {
+        for (ExecutorService writer : writers) {
+            writer.shutdown();
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ExecutorService writer : writers) {
+            if (!writer.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ==================== PATIENTS ====================
+
+    public CompletableFuture<Boolean> addPatientAsync(int id, String name, int age, String gender,
+                                                      String disease, String contact) {
+        return submit(Subsystem.PATIENTS, () -> system.addPatient(id, name, age, gender, disease, contact));
+    }
+
+    public CompletableFuture<Boolean> updatePatientAsync(int id, String name, int age, String gender,
+                                                         String disease, String contact) {
+        return submit(Subsystem.PATIENTS, () -> system.updatePatient(id, name, age, gender, disease, contact));
+    }
+
+    public CompletableFuture<Boolean> deletePatientAsync(int id) {
+        return submit(Subsystem.PATIENTS, () -> system.deletePatient(id));
+    }
+
+    public CompletableFuture<Patient> searchPatientAsync(int id) {
+        return submit(Subsystem.PATIENTS, () -> system.searchPatient(id));
+    }
+
+    public CompletableFuture<List<Patient>> getAllPatientsAsync() {
+        return submit(Subsystem.PATIENTS, system::getAllPatients);
+    }
+
+    // ==================== EMERGENCY ====================
+
+    public CompletableFuture<Boolean> addEmergencyPatientAsync(int id, String name, int priority, String condition) {
+        return submit(Subsystem.EMERGENCY, () -> system.addEmergencyPatient(id, name, priority, condition));
+    }
+
+    public CompletableFuture<EmergencyPatient> treatNextEmergencyPatientAsync() {
+        return submit(Subsystem.EMERGENCY, system::treatNextEmergencyPatient);
+    }
+
+    public CompletableFuture<List<EmergencyPatient>> getAllEmergencyPatientsAsync() {
+        return submit(Subsystem.EMERGENCY, system::getAllEmergencyPatients);
+    }
+
+    // ==================== OPD ====================
+
+    // OPD commands also touch department counts; the department monitor
+    // inside the facade covers that
+    public CompletableFuture<Boolean> addOPDPatientAsync(int id, String name, String department) {
+        return submit(Subsystem.OPD, () -> system.addOPDPatient(id, name, department));
+    }
+
+    public CompletableFuture<OPDPatient> treatNextOPDPatientAsync() {
+        return submit(Subsystem.OPD, system::treatNextOPDPatient);
+    }
+
+    public CompletableFuture<List<OPDPatient>> getAllOPDPatientsAsync() {
+        return submit(Subsystem.OPD, system::getAllOPDPatients);
+    }
+
+    // ==================== DEPARTMENTS ====================
+
+    public CompletableFuture<Boolean> addDepartmentAsync(String name) {
+        return submit(Subsystem.DEPARTMENTS, () -> system.addDepartment(name));
+    }
+
+    public CompletableFuture<Boolean> removeDepartmentAsync(String name) {
+        return submit(Subsystem.DEPARTMENTS, () -> system.removeDepartment(name));
+    }
+
+    public CompletableFuture<Boolean> updateDepartmentNameAsync(String oldName, String newName) {
+        return submit(Subsystem.DEPARTMENTS, () -> system.updateDepartmentName(oldName, newName));
+    }
+
+    public CompletableFuture<List<String>> getAllDepartmentsAsync() {
+        return submit(Subsystem.DEPARTMENTS, system::getAllDepartments);
+    }
+
+    // ==================== HISTORY ====================
+
+    public CompletableFuture<Boolean> addMedicalRecordAsync(String record) {
+        return submit(Subsystem.HISTORY, () -> system.addMedicalRecord(record));
+    }
+
+    public CompletableFuture<String> removeLatestRecordAsync() {
+        return submit(Subsystem.HISTORY, system::removeLatestRecord);
+    }
+
+    public CompletableFuture<List<String>> getAllMedicalRecordsAsync() {
+        return submit(Subsystem.HISTORY, system::getAllMedicalRecords);
+    }
+
+    // ==================== REPORT ====================
+
+    // system.getSystemReport(), read on the REPORT writer once every other
+    // writer has run the commands submitted before this call, so the report
+    // reflects all of them
+    public CompletableFuture<Map<String, Integer>> getSystemReportAsync() {
+        List<CompletableFuture<Object>> drained = new ArrayList<>();
+        for (Subsystem subsystem : Subsystem.values()) {
+            if (subsystem != Subsystem.REPORT) drained.add(submit(subsystem, () -> null));
+        }
+        return CompletableFuture.allOf(drained.toArray(new CompletableFuture<?>[0]))
+                .thenApplyAsync(done -> system.getSystemReport(), writers[Subsystem.REPORT.ordinal()]);
+    }
+}
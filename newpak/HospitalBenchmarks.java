@@ -0,0 +1,474 @@
+package newpak;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// =========================================================
+// HOSPITAL BENCHMARKS (plain main, no external harness)
+// =========================================================
+//
+// Usage: java newpak.HospitalBenchmarks startup|export|http|replication|tiered|footprint|archive|metrics [patients]
+public class HospitalBenchmarks {
+
+    static final String[] GENDERS = {"Male", "Female", "Other"};
+    static final String[] DISEASES = {
+            "Hypertension", "Migraine", "Arthritis", "Diabetes", "Asthma", "Influenza",
+            "Fracture", "Bronchitis", "Anemia", "Gastritis", "Pneumonia", "Dermatitis"
+    };
+
+    public static void main(String[] args) throws IOException {
+        String mode = args.length > 0 ? args[0] : "startup";
+        int patients = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        switch (mode) {
+            case "startup" -> startup(patients);
+            case "export" -> export(patients);
+            case "http" -> http(patients);
+            case "replication" -> replication(patients);
+            case "tiered" -> tiered(patients);
+            case "footprint" -> footprint(patients);
+            case "archive" -> archive(patients);
+            case "metrics" -> metrics(patients);
+            default -> System.out.println("Unknown benchmark: " + mode);
+        }
+    }
+
+    // Fills an empty system with deterministic synthetic patients
+    static HospitalSystemLogic populate(int patients) {
+        HospitalSystemLogic system = new HospitalSystemLogic(true);
+        for (int i = 0; i < patients; i++) {
+            system.addPatient(100_000 + i, "Patient " + i, 1 + i % 100,
+                    GENDERS[i % GENDERS.length], DISEASES[i % DISEASES.length],
+                    String.format("03%08d", i));
+        }
+        return system;
+    }
+
+    // ---------------- Snapshot write + cold start load ----------------
+    static void startup(int patients) throws IOException {
+        Path dir = Files.createTempDirectory("hospital-bench");
+        Path file = dir.resolve("snapshot.bin");
+        try {
+            HospitalSystemLogic source = populate(patients);
+
+            long start = System.nanoTime();
+            HospitalSnapshot.write(source, 0, file);
+            long writeNanos = System.nanoTime() - start;
+            long bytes = Files.size(file);
+            source = null;
+
+            long best = Long.MAX_VALUE;
+            long total = 0;
+            int runs = 5;
+            for (int run = 0; run < runs; run++) {
+                System.gc();
+                HospitalSystemLogic target = new HospitalSystemLogic(false);
+                start = System.nanoTime();
+                HospitalSnapshot.read(target, file);
+                long elapsed = System.nanoTime() - start;
+                if (target.getTotalPatients() != patients + 3) {
+                    throw new IllegalStateException("Loaded " + target.getTotalPatients() + " patients");
+                }
+                best = Math.min(best, elapsed);
+                total += elapsed;
+            }
+
+            System.out.printf("startup  patients=%d  size=%.1f MB (%.1f bytes/patient)%n",
+                    patients, bytes / 1e6, (double) bytes / patients);
+            System.out.printf("  write  %.1f ms%n", writeNanos / 1e6);
+            System.out.printf("  load   best %.1f ms  avg %.1f ms  (%.2f M patients/s)%n",
+                    best / 1e6, total / 1e6 / runs, patients / (best / 1e9) / 1e6);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    // ---------------- Bulk export throughput (rows/s per format) ----------------
+    static void export(int patients) throws IOException {
+        Path dir = Files.createTempDirectory("hospital-bench");
+        try {
+            HospitalSystemLogic system = populate(patients);
+            int cores = Runtime.getRuntime().availableProcessors();
+            HospitalExport.Format[] formats = {HospitalExport.CSV, HospitalExport.JSON_LINES, HospitalExport.COLUMNAR};
+
+            System.out.printf("export  patients=%d  cores=%d%n", patients, cores);
+            for (HospitalExport.Format format : formats) {
+                for (int partitions : new int[]{1, Math.max(4, cores)}) {
+                    Path target = dir.resolve("patients." + format.extension());
+                    long best = Long.MAX_VALUE;
+                    int rows = 0;
+                    for (int run = 0; run < 3; run++) {
+                        long start = System.nanoTime();
+                        rows = HospitalExport.export(system, HospitalExport.Dataset.PATIENTS, format, target, partitions);
+                        best = Math.min(best, System.nanoTime() - start);
+                    }
+                    System.out.printf("  %-6s partitions=%-3d %8.1f ms  %6.2f M rows/s  %7.1f MB%n",
+                            format.extension(), partitions, best / 1e6,
+                            rows / (best / 1e9) / 1e6, Files.size(target) / 1e6);
+                }
+            }
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    // ---------------- HTTP API under concurrent clients (rps, p50/p99) ----------------
+    static void http(int patients) throws IOException {
+        HospitalSystemLogic system = populate(patients);
+        HospitalHttpServer server = HospitalHttpServer.start(system, 0);
+        HttpClient client = HttpClient.newBuilder().executor(HospitalHttpServer.newRequestExecutor()).build();
+        String base = "http://localhost:" + server.getPort() + "/api/";
+        int requestsPerClient = 2_000;
+        AtomicInteger nextId = new AtomicInteger(10_000_000);
+
+        System.out.printf("http  patients=%d  cores=%d%n", patients, Runtime.getRuntime().availableProcessors());
+        try {
+            for (int clients : new int[]{1, 16, 64}) {
+                long[] latencies = new long[clients * requestsPerClient];
+                AtomicInteger failures = new AtomicInteger();
+                ExecutorService pool = Executors.newFixedThreadPool(clients);
+                long start = System.nanoTime();
+                Future<?>[] tasks = new Future<?>[clients];
+                for (int c = 0; c < clients; c++) {
+                    int offset = c * requestsPerClient;
+                    tasks[c] = pool.submit(() -> {
+                        for (int r = 0; r < requestsPerClient; r++) {
+                            // Read-mostly mix: 8 lookups, 1 insert, 1 report per 10 requests
+                            HttpRequest request;
+                            if (r % 10 == 8) {
+                                int id = nextId.getAndIncrement();
+                                request = HttpRequest.newBuilder(URI.create(base + "patients"))
+                                        .POST(HttpRequest.BodyPublishers.ofString("{\"id\":" + id
+                                                + ",\"name\":\"Load " + id + "\",\"age\":40,\"gender\":\"Other\","
+                                                + "\"disease\":\"Asthma\",\"contact\":\"0300000000\"}")).build();
+                            } else if (r % 10 == 9) {
+                                request = HttpRequest.newBuilder(URI.create(base + "report")).build();
+                            } else {
+                                int id = 100_000 + (int) ((r * 7919L + offset) % Math.max(1, patients));
+                                request = HttpRequest.newBuilder(URI.create(base + "patients/" + id)).build();
+                            }
+                            long t0 = System.nanoTime();
+                            try {
+                                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                                if (response.statusCode() >= 400) failures.incrementAndGet();
+                            } catch (IOException | InterruptedException e) {
+                                failures.incrementAndGet();
+                            }
+                            latencies[offset + r] = System.nanoTime() - t0;
+                        }
+                    });
+                }
+                for (Future<?> task : tasks) {
+                    try {
+                        task.get();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                pool.shutdown();
+
+                Arrays.sort(latencies);
+                System.out.printf("  clients=%-3d %9.0f req/s  p50 %6.2f ms  p99 %6.2f ms  failures=%d%n",
+                        clients, latencies.length / (elapsed / 1e9),
+                        latencies[latencies.length / 2] / 1e6,
+                        latencies[(int) (latencies.length * 0.99)] / 1e6, failures.get());
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    // ---------------- Log shipping: standby lag under load + promotion ----------------
+    static void replication(int patients) throws IOException {
+        Path dir = Files.createTempDirectory("hospital-bench");
+        HospitalSystemLogic primarySystem = new HospitalSystemLogic(true);
+        primarySystem.attachPersistence(dir.resolve("primary"), 0);
+        HospitalReplication.Primary primary = HospitalReplication.startPrimary(primarySystem, 0);
+        HospitalReplication.Standby standby = HospitalReplication.startStandby("localhost", primary.getPort());
+        try {
+            while (!standby.isConnected()) Thread.sleep(10);
+
+            // Writer runs flat out; sample the standby's lag meanwhile
+            long maxLagRecords = 0;
+            long maxAckLag = 0;
+            long maxDelayMillis = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < patients; i++) {
+                primarySystem.addPatient(100_000 + i, "Patient " + i, 1 + i % 100,
+                        GENDERS[i % GENDERS.length], DISEASES[i % DISEASES.length],
+                        String.format("03%08d", i));
+                if ((i & 1023) == 0) {
+                    maxLagRecords = Math.max(maxLagRecords, primary.getLastLsn() - standby.getAppliedLsn());
+                    maxAckLag = Math.max(maxAckLag, primary.getLagRecords());
+                    maxDelayMillis = Math.max(maxDelayMillis, standby.getApplyDelayMillis());
+                }
+            }
+            long writeNanos = System.nanoTime() - start;
+            long lastLsn = primary.getLastLsn();
+
+            // Promote right away: the standby drains what it already received
+            HospitalSystemLogic promoted = standby.promote(dir.resolve("standby"));
+            long catchUpMillis = standby.getCatchUpMillis();
+            long missing = lastLsn - standby.getAppliedLsn();
+
+            System.out.printf("replication  patients=%d%n", patients);
+            System.out.printf("  primary   %.0f writes/s%n", patients / (writeNanos / 1e9));
+            System.out.printf("  standby   max lag %d records (%d unacknowledged), max apply delay %d ms%n",
+                    maxLagRecords, maxAckLag, maxDelayMillis);
+            System.out.printf("  promote   catch-up %d ms, %d records not received, %d patients%n",
+                    catchUpMillis, missing, promoted.getTotalPatients());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            primary.close();
+            standby.close();
+            primarySystem.shutdown();
+            deleteRecursively(dir);
+        }
+    }
+
+    // ---------------- Hot/cold tiering: heap vs lookup latency ----------------
+    static void tiered(int patients) throws IOException {
+        Path dir = Files.createTempDirectory("hospital-bench");
+        System.setProperty("hospital.dataDir", dir.toString());
+        try {
+            System.out.printf("tiered  patients=%d%n", patients);
+            for (int hot : new int[]{0, patients / 10}) {
+                System.setProperty("hospital.hotPatients", String.valueOf(hot));
+                HospitalSystemLogic system = populate(patients);
+                long heap = usedHeap();
+
+                // Skewed reads: 90% from a working set that fits the hot tier
+                int workingSet = Math.max(1, patients / 20);
+                java.util.Random random = new java.util.Random(42);
+                int lookups = 200_000;
+                long[] nanos = new long[lookups];
+                for (int i = 0; i < lookups; i++) {
+                    int id = 100_000 + (random.nextInt(10) < 9
+                            ? patients - 1 - random.nextInt(workingSet) : random.nextInt(patients));
+                    long start = System.nanoTime();
+                    if (system.searchPatient(id) == null) throw new IllegalStateException("Missing " + id);
+                    nanos[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(nanos);
+
+                // Uniform updates: with tiering most hit a cold slot and are written in place
+                long[] updateNanos = new long[lookups / 4];
+                for (int i = 0; i < updateNanos.length; i++) {
+                    int n = random.nextInt(patients);
+                    long start = System.nanoTime();
+                    system.updatePatient(100_000 + n, "Patient " + n, 1 + i % 100,
+                            GENDERS[n % GENDERS.length], DISEASES[i % DISEASES.length], String.format("03%08d", n));
+                    updateNanos[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(updateNanos);
+                System.out.printf("  hot=%-9s heap %7.1f MB  lookup p50 %.1f us  p99 %.1f us  update p50 %.1f us  p99 %.1f us%n",
+                        hot == 0 ? "all" : hot, heap / 1e6, nanos[lookups / 2] / 1e3, nanos[lookups * 99 / 100] / 1e3,
+                        updateNanos[updateNanos.length / 2] / 1e3, updateNanos[updateNanos.length * 99 / 100] / 1e3);
+
+                // Unknown IDs: answered by the ID filter without touching either tier
+                long missStart = System.nanoTime();
+                int found = 0;
+                for (int i = 0; i < lookups; i++) {
+                    if (system.patientExists(200_000_000 + random.nextInt(patients))) found++;
+                }
+                System.out.printf("    unknown-ID patientExists %.0f ns avg (%d false positives)%n",
+                        (System.nanoTime() - missStart) / (double) lookups, found);
+                System.out.println("    " + system.getPatientStorageStats());
+                system = null;
+            }
+        } finally {
+            System.clearProperty("hospital.hotPatients");
+            System.clearProperty("hospital.dataDir");
+            deleteRecursively(dir);
+        }
+    }
+
+    // ---------------- Archival of inactive patients vs concurrent readers ----------------
+    static void archive(int patients) throws IOException {
+        Path dir = Files.createTempDirectory("hospital-bench");
+        System.setProperty("hospital.archive.inactiveDays", "30");
+        try {
+            HospitalSystemLogic system = populate(patients);
+            system.attachArchive(dir.resolve("archive"));
+
+            // A reader keeps looking patients up while everything is archived
+            AtomicInteger stop = new AtomicInteger();
+            long[] worst = new long[1];
+            int[] reads = new int[1];
+            Thread reader = new Thread(() -> {
+                java.util.Random random = new java.util.Random(7);
+                while (stop.get() == 0) {
+                    long start = System.nanoTime();
+                    system.searchPatient(100_000 + random.nextInt(patients));
+                    worst[0] = Math.max(worst[0], System.nanoTime() - start);
+                    reads[0]++;
+                }
+            });
+            reader.start();
+            long start = System.nanoTime();
+            int archived = system.archiveInactivePatients(PatientManagement.today() + 1);
+            long nanos = System.nanoTime() - start;
+            stop.set(1);
+            reader.join();
+
+            Map<String, Long> stats = system.getArchiveStats();
+            start = System.nanoTime();
+            int lookups = 2_000;
+            java.util.Random random = new java.util.Random(11);
+            for (int i = 0; i < lookups; i++) {
+                if (system.searchArchivedPatient(100_000 + random.nextInt(patients)) == null) {
+                    throw new IllegalStateException("Archived patient not found");
+                }
+            }
+            long lookupNanos = System.nanoTime() - start;
+
+            System.out.printf("archive  patients=%d%n", patients);
+            System.out.printf("  archived %d in %.0f ms (%.0f patients/s), %.1f MB on disk (%.1f bytes/patient)%n",
+                    archived, nanos / 1e6, archived / (nanos / 1e9), stats.get("Archive Bytes") / 1e6,
+                    (double) stats.get("Archive Bytes") / archived);
+            System.out.printf("  concurrent reader: %d lookups, slowest %.1f ms%n", reads[0], worst[0] / 1e6);
+            System.out.printf("  archived lookup by ID: %.0f us avg (random IDs, one segment inflated each)%n",
+                    lookupNanos / 1e3 / lookups);
+            system.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            System.clearProperty("hospital.archive.inactiveDays");
+            deleteRecursively(dir);
+        }
+    }
+
+    // ---------------- Instrumentation overhead: metrics on vs off ----------------
+    static void metrics(int patients) {
+        HospitalSystemLogic system = populate(patients);
+        HospitalMetrics metrics = system.getMetrics();
+        java.util.Random random = new java.util.Random(42);
+        int chunk = 20_000;
+        int pairs = 400;
+        double[] ratios = new double[pairs];
+        long onNanos = 0;
+        long offNanos = 0;
+        // Short on / off chunks back to back (order alternating), compared pair
+        // by pair, so drift in JIT, GC or CPU frequency cancels out
+        for (int pair = -pairs / 4; pair < pairs; pair++) {
+            long[] elapsed = new long[2];
+            for (int side = 0; side < 2; side++) {
+                boolean enabled = (side == 0) == (pair % 2 == 0);
+                metrics.setEnabled(enabled);
+                long start = System.nanoTime();
+                runMixedOperations(system, random, patients, chunk);
+                elapsed[enabled ? 1 : 0] = System.nanoTime() - start;
+            }
+            if (pair < 0) continue;   // warm-up
+            ratios[pair] = (double) elapsed[1] / elapsed[0];
+            onNanos += elapsed[1];
+            offNanos += elapsed[0];
+        }
+        metrics.setEnabled(true);
+        Arrays.sort(ratios);
+        long ops = (long) pairs * chunk;
+        System.out.printf("metrics  patients=%d  %d pairs of %d mixed operations%n", patients, pairs, chunk);
+        System.out.printf("  off %.1f ns/op  on %.1f ns/op  overhead median %+.2f%% (p25 %+.2f%%, p75 %+.2f%%)%n",
+                offNanos / (double) ops, onNanos / (double) ops, (ratios[pairs / 2] - 1) * 100,
+                (ratios[pairs / 4] - 1) * 100, (ratios[pairs * 3 / 4] - 1) * 100);
+        System.out.print(system.getMetricsReport());
+    }
+
+    // Lookup-heavy mix over the facade: searches, existence checks, updates and queue traffic
+    private static void runMixedOperations(HospitalSystemLogic system, java.util.Random random, int patients, int ops) {
+        long sink = 0;
+        for (int i = 0; i < ops; i++) {
+            int n = random.nextInt(patients);
+            switch (i & 15) {
+                case 0 -> sink += system.updatePatient(100_000 + n, "Patient " + n, 1 + i % 100,
+                        GENDERS[n % GENDERS.length], DISEASES[i % DISEASES.length], "0300000000") ? 1 : 0;
+                case 1 -> sink += system.addEmergencyPatient(n, "E", 1 + n % 3, "Trauma") ? 1 : 0;
+                case 2 -> sink += system.treatNextEmergencyPatient() == null ? 0 : 1;
+                case 3 -> sink += system.addOPDPatient(n, "O", "General") ? 1 : 0;
+                case 4 -> sink += system.treatNextOPDPatient() == null ? 0 : 1;
+                case 5 -> sink += system.patientExists(100_000 + n) ? 1 : 0;
+                default -> sink += system.searchPatient(100_000 + n) == null ? 0 : 1;
+            }
+        }
+        if (sink == 0) throw new IllegalStateException("No work done");
+    }
+
+    // ---------------- Heap bytes per patient: compact vs previous layout ----------------
+    static void footprint(int patients) {
+        // Rows as an importer creates them: every field is a fresh String
+        Object[] rows = new Object[patients];
+        long base = usedHeap();
+        for (int i = 0; i < patients; i++) {
+            rows[i] = new LegacyPatient(100_000 + i, "Patient " + i, 1 + i % 100,
+                    new String(GENDERS[i % GENDERS.length]), new String(DISEASES[i % DISEASES.length]),
+                    String.format("03%08d", i));
+        }
+        long legacy = usedHeap() - base;
+        Arrays.fill(rows, null);
+        base = usedHeap();
+        for (int i = 0; i < patients; i++) {
+            rows[i] = new Patient(100_000 + i, "Patient " + i, 1 + i % 100,
+                    new String(GENDERS[i % GENDERS.length]), new String(DISEASES[i % DISEASES.length]),
+                    String.format("03%08d", i));
+        }
+        long compact = usedHeap() - base;
+        Arrays.fill(rows, null);
+
+        base = usedHeap();
+        HospitalSystemLogic system = populate(patients);
+        long whole = usedHeap() - base;
+
+        System.out.printf("footprint  patients=%d  (rows incl. strings, excl. the array)%n", patients);
+        System.out.printf("  previous layout  %6.1f bytes/patient%n", (double) legacy / patients);
+        System.out.printf("  compact layout   %6.1f bytes/patient  (%d diseases in the dictionary)%n",
+                (double) compact / patients, FieldDictionary.DISEASES.size());
+        System.out.printf("  registry total   %6.1f bytes/patient  (with list links and ID map, %d patients)%n",
+                (double) whole / patients, system.getTotalPatients());
+    }
+
+    // Patient fields as they were before dictionary encoding, for the footprint comparison
+    static final class LegacyPatient {
+        int patientId;
+        String patientName;
+        int patientAge;
+        String gender;
+        String disease;
+        String contact;
+        LegacyPatient next;
+        LegacyPatient prev;
+
+        LegacyPatient(int id, String name, int age, String gender, String disease, String contact) {
+            this.patientId = id;
+            this.patientName = name;
+            this.patientAge = age;
+            this.gender = gender;
+            this.disease = disease;
+            this.contact = contact;
+        }
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package newpak;
+
+// =========================================================
+// HOSPITAL CHANGE BUS (typed change events for views)
+// =========================================================
+//
+// The components publish every change to the data they hold, whatever
+// caused it (facade call, import, archiving, log replay on a replica), so
+// a view can apply the one row that changed instead of reloading a table.
+//
+// Listeners run on the thread that made the change, with that component's
+// lock held, so each topic's events arrive in the order they were applied.
+// They must return quickly and must not call back into the system: hand
+// the event to another thread (the GUI uses SwingUtilities.invokeLater).
+// With nobody subscribed a publish is a volatile read and an empty loop.
+public class HospitalChangeBus {
+
+    public enum Change {
+        ADDED,
+        UPDATED,
+        REMOVED,
+        TREATED,   // taken off the emergency / OPD queue
+        CLEARED    // several items at once (history cleared or archived); reload
+    }
+
+    public static final class Topic<T> {
+        // Patient added, updated or removed (deleted / archived)
+        public static final Topic<Patient> PATIENTS = new Topic<>(0, "Patients");
+        // Patient admitted to or treated from the emergency queue
+        public static final Topic<EmergencyPatient> EMERGENCY = new Topic<>(1, "Emergency");
+        // Patient registered in or called from the OPD queue
+        public static final Topic<OPDPatient> OPD = new Topic<>(2, "OPD");
+        // Stored (timestamped) record added or removed; null when CLEARED
+        public static final Topic<String> MEDICAL_HISTORY = new Topic<>(3, "Medical History");
+        // Department name added, removed, or UPDATED when its patient count changes
+        public static final Topic<String> DEPARTMENTS = new Topic<>(4, "Departments");
+
+        private static final int COUNT = 5;
+
+        private final int index;
+        private final String name;
+
+        private Topic(int index, String name) {
+            this.index = index;
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public interface Listener<T> {
+        void onChange(Change change, T item);
+    }
+
+    // Copy-on-write: publish reads the arrays without locking
+    private volatile Listener<?>[][] listeners = new Listener<?>[Topic.COUNT][0];
+
+    public synchronized <T> void subscribe(Topic<T> topic, Listener<T> listener) {
+        Listener<?>[][] copy = listeners.clone();
+        Listener<?>[] current = copy[topic.index];
+        Listener<?>[] added = java.util.Arrays.copyOf(current, current.length + 1);
+        added[current.length] = listener;
+        copy[topic.index] = added;
+        listeners = copy;
+    }
+
+    public synchronized <T> void unsubscribe(Topic<T> topic, Listener<T> listener) {
+        Listener<?>[] current = listeners[topic.index];
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                Listener<?>[][] copy = listeners.clone();
+                Listener<?>[] removed = new Listener<?>[current.length - 1];
+                System.arraycopy(current, 0, removed, 0, i);
+                System.arraycopy(current, i + 1, removed, i, current.length - i - 1);
+                copy[topic.index] = removed;
+                listeners = copy;
+                return;
+            }
+        }
+    }
+
+    public boolean hasListeners(Topic<?> topic) {
+        return listeners[topic.index].length > 0;
+    }
+
+    // Called by the components; a failing listener cannot undo the change
+    @SuppressWarnings("unchecked")
+    <T> void publish(Topic<T> topic, Change change, T item) {
+        for (Listener<?> listener : listeners[topic.index]) {
+            try {
+                ((Listener<T>) listener).onChange(change, item);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package newpak;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// =========================================================
+// HOSPITAL COLD STORE (memory-mapped fixed-width patient records)
+// =========================================================
+//
+// Holds patients evicted from the in-memory (hot) tier. Each patient takes
+// one RECORD_SIZE slot, found through an ID -> slot map; freed slots are
+// reused. The record file is mapped in SEGMENT_RECORDS-slot segments, so a
+// lookup or an update is a read / write at slot * RECORD_SIZE and the OS page
+// cache, not the Java heap, holds the records. Text longer than its inline
+// width goes to an overflow file and the slot keeps a pointer. A rewritten
+// value that still fits reuses its extent; other replaced or removed values
+// are counted as garbage, and once garbage is over half the file the live
+// values are copied to a fresh one.
+// Both files are scratch space: they are recreated on every start (the
+// write-ahead log and snapshots stay the source of truth).
+//
+// Slot layout (256 bytes):
+//   0 id | 4 age | 8 name(96) | 104 gender(16) | 120 disease(96) | 216 contact(32) | 248 live flag
+// Text fields: [byte length, 255 = null][UTF-8 bytes], or
+//              [254][long overflow offset][int byte length] when longer.
+public class HospitalColdStore implements Closeable {
+    static final int RECORD_SIZE = 256;
+    static final int SEGMENT_RECORDS = 1 << 16;   // 16 MB per mapping
+
+    private static final int[] TEXT_OFFSETS = {8, 104, 120, 216};
+    private static final int[] TEXT_WIDTHS = {96, 16, 96, 32};
+    private static final int LIVE_OFFSET = 248;
+    private static final int NULL_LENGTH = 255;
+    private static final int OVERFLOW_LENGTH = 254;
+    private static final long COMPACT_MIN_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final Path file;
+    private final FileChannel channel;
+    private FileChannel overflow;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[4];
+    private final IntIntHashMap slots = new IntIntHashMap(1024);
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+    private int slotCount;
+    private long overflowBytes;
+    private long overflowGarbage;
+    private long compactions;
+    private long reads;
+    private long writes;
+
+    HospitalColdStore(Path directory) {
+        this.directory = directory;
+        try {
+            this.file = Files.createTempFile(directory, "cold-patients", ".dat");
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            this.overflow = newOverflowFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create cold patient file in " + directory, e);
+        }
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    // Record slots in use or free, plus the overflow file
+    public long getFileBytes() {
+        return (long) slotCount * RECORD_SIZE + overflowBytes;
+    }
+
+    public long getOverflowBytes() {
+        return overflowBytes;
+    }
+
+    // Overflow bytes no slot points to any more
+    public long getOverflowGarbage() {
+        return overflowGarbage;
+    }
+
+    public long getCompactions() {
+        return compactions;
+    }
+
+    public long getReads() {
+        return reads;
+    }
+
+    public long getWrites() {
+        return writes;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    boolean contains(int id) {
+        return slots.containsKey(id);
+    }
+
+    // Stores p; replaces an older copy with the same ID in place
+    void write(Patient p) {
+        int slot = slots.get(p.getPatientId(), -1);
+        boolean replace = slot >= 0;
+        if (!replace) {
+            slot = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+            slots.put(p.getPatientId(), slot);
+        }
+        ByteBuffer buf = segment(slot);
+        int offset = offsetOf(slot);
+        buf.putInt(offset, p.getPatientId());
+        buf.putInt(offset + 4, p.getPatientAge());
+        String[] texts = {p.getPatientName(), p.getGender(), p.getDisease(), p.getContact()};
+        for (int i = 0; i < texts.length; i++) {
+            int at = offset + TEXT_OFFSETS[i];
+            // A free slot's old values were counted as garbage when it was freed
+            putText(buf, at, TEXT_WIDTHS[i], texts[i], replace ? overflowLength(buf, at) : 0);
+        }
+        buf.put(offset + LIVE_OFFSET, (byte) 1);
+        writes++;
+        compactIfSparse();
+    }
+
+    // Copy of the stored patient, or null
+    Patient read(int id) {
+        int slot = slots.get(id, -1);
+        if (slot < 0) return null;
+        reads++;
+        return decode(segment(slot), offsetOf(slot));
+    }
+
+    // Takes the patient out of the file (read + free its slot), or null
+    Patient remove(int id) {
+        Patient p = read(id);
+        if (p == null) return null;
+        int slot = slots.remove(id, -1);
+        ByteBuffer buf = segment(slot);
+        int offset = offsetOf(slot);
+        for (int field : TEXT_OFFSETS) {
+            overflowGarbage += overflowLength(buf, offset + field);
+        }
+        buf.put(offset + LIVE_OFFSET, (byte) 0);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        compactIfSparse();
+        return p;
+    }
+
+    // IDs of every stored patient, without decoding them (hash order)
+    int[] ids() {
+        int[] ids = new int[slots.size()];
+        int n = 0;
+        for (int i = 0; i < slots.capacity(); i++) {
+            if (slots.usedAt(i)) ids[n++] = slots.keyAt(i);
+        }
+        return ids;
+    }
+
+    // Slots in use or free; live patients are below this
+    int getSlotCount() {
+        return slotCount;
+    }
+
+    // The patient in slot, or null for a free slot. A patient keeps its slot
+    // until removed (updates rewrite it in place), so slot order is a stable
+    // walk order.
+    Patient readSlot(int slot) {
+        ByteBuffer buf = segment(slot);
+        int offset = offsetOf(slot);
+        return buf.get(offset + LIVE_OFFSET) == 1 ? decode(buf, offset) : null;
+    }
+
+    // Every stored patient in slot order, decoded straight from the mapping
+    Iterator<Patient> iterator() {
+        return new Iterator<Patient>() {
+            private int nextSlot;
+            private Patient next = advance();
+
+            private Patient advance() {
+                while (nextSlot < slotCount) {
+                    int slot = nextSlot++;
+                    ByteBuffer buf = segment(slot);
+                    int offset = offsetOf(slot);
+                    if (buf.get(offset + LIVE_OFFSET) == 1) return decode(buf, offset);
+                }
+                return null;
+            }
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public Patient next() {
+                if (next == null) throw new NoSuchElementException();
+                Patient current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    // The mappings stay valid until garbage collected; the files are already unlinked
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            overflow.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ---------------- Mapping ----------------
+    private static int offsetOf(int slot) {
+        return (slot % SEGMENT_RECORDS) * RECORD_SIZE;
+    }
+
+    // Maps segments on first use (mapping past the end grows the file)
+    private MappedByteBuffer segment(int slot) {
+        int index = slot / SEGMENT_RECORDS;
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(index + 1, segments.length * 2));
+        }
+        MappedByteBuffer segment = segments[index];
+        if (segment == null) {
+            long size = (long) SEGMENT_RECORDS * RECORD_SIZE;
+            try {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, index * size, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map cold patient file", e);
+            }
+            segments[index] = segment;
+        }
+        return segment;
+    }
+
+    // ---------------- Encoding ----------------
+    private Patient decode(ByteBuffer buf, int offset) {
+        return new Patient(buf.getInt(offset), getText(buf, offset + TEXT_OFFSETS[0]),
+                buf.getInt(offset + 4), getText(buf, offset + TEXT_OFFSETS[1]),
+                getText(buf, offset + TEXT_OFFSETS[2]), getText(buf, offset + TEXT_OFFSETS[3]));
+    }
+
+    // oldLength: overflow bytes the field pointed to before (0 if none)
+    private void putText(ByteBuffer buf, int offset, int width, String value, int oldLength) {
+        byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes == null || (bytes.length < width && bytes.length < OVERFLOW_LENGTH)) {
+            overflowGarbage += oldLength;
+            if (bytes == null) {
+                buf.put(offset, (byte) NULL_LENGTH);
+            } else {
+                buf.put(offset, (byte) bytes.length);
+                buf.put(offset + 1, bytes);
+            }
+            return;
+        }
+        long position;
+        if (bytes.length <= oldLength) {
+            position = buf.getLong(offset + 1);   // fits in the old extent
+            overflowGarbage += oldLength - bytes.length;
+        } else {
+            position = overflowBytes;
+            overflowBytes += bytes.length;
+            overflowGarbage += oldLength;
+        }
+        try {
+            writeFully(overflow, ByteBuffer.wrap(bytes), position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cold patient overflow write failed", e);
+        }
+        buf.put(offset, (byte) OVERFLOW_LENGTH);
+        buf.putLong(offset + 1, position);
+        buf.putInt(offset + 9, bytes.length);
+    }
+
+    // Overflow bytes a text field points to (0 when inline or null)
+    private static int overflowLength(ByteBuffer buf, int offset) {
+        return (buf.get(offset) & 0xFF) == OVERFLOW_LENGTH ? buf.getInt(offset + 9) : 0;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining()) {
+            position += out.write(src, position);
+        }
+    }
+
+    private FileChannel newOverflowFile() throws IOException {
+        Path overflowFile = Files.createTempFile(directory, "cold-overflow", ".dat");
+        return FileChannel.open(overflowFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    // ---------------- Overflow compaction ----------------
+    private void compactIfSparse() {
+        if (overflowGarbage >= COMPACT_MIN_BYTES && overflowGarbage * 2 > overflowBytes) {
+            compactOverflow();
+        }
+    }
+
+    // Copies the live values, in slot order, into a fresh file. Slots are
+    // repointed only after every copy succeeded, so a failure leaves the
+    // store as it was.
+    private void compactOverflow() {
+        FileChannel compacted = null;
+        try {
+            compacted = newOverflowFile();
+            long size = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                ByteBuffer buf = segment(slot);
+                int offset = offsetOf(slot);
+                if (buf.get(offset + LIVE_OFFSET) != 1) continue;
+                for (int field : TEXT_OFFSETS) {
+                    int length = overflowLength(buf, offset + field);
+                    if (length == 0) continue;
+                    writeFully(compacted, ByteBuffer.wrap(readOverflowBytes(buf.getLong(offset + field + 1), length)), size);
+                    size += length;
+                }
+            }
+            // Same walk again: each value's new position follows from the order
+            long position = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                ByteBuffer buf = segment(slot);
+                int offset = offsetOf(slot);
+                if (buf.get(offset + LIVE_OFFSET) != 1) continue;
+                for (int field : TEXT_OFFSETS) {
+                    int length = overflowLength(buf, offset + field);
+                    if (length == 0) continue;
+                    buf.putLong(offset + field + 1, position);
+                    position += length;
+                }
+            }
+            FileChannel old = overflow;
+            overflow = compacted;
+            compacted = null;
+            overflowBytes = size;
+            overflowGarbage = 0;
+            compactions++;
+            old.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cold patient overflow compaction failed", e);
+        } finally {
+            if (compacted != null) {
+                try {
+                    compacted.close();
+                } catch (IOException ignored) {
+                    // the copy is being abandoned anyway
+                }
+            }
+        }
+    }
+
+    private String getText(ByteBuffer buf, int offset) {
+        int length = buf.get(offset) & 0xFF;
+        if (length == NULL_LENGTH) return null;
+        if (length == OVERFLOW_LENGTH) return readOverflow(buf.getLong(offset + 1), buf.getInt(offset + 9));
+        byte[] bytes = new byte[length];
+        buf.get(offset + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String readOverflow(long position, int length) {
+        return new String(readOverflowBytes(position, length), StandardCharsets.UTF_8);
+    }
+
+    private byte[] readOverflowBytes(long position, int length) {
+        ByteBuffer dst = ByteBuffer.allocate(length);
+        try {
+            while (dst.hasRemaining()) {
+                int n = overflow.read(dst, position + dst.position());
+                if (n < 0) throw new IOException("Cold patient overflow file truncated");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cold patient overflow read failed", e);
+        }
+        return dst.array();
+    }
+}
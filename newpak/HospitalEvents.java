@@ -0,0 +1,152 @@
+package newpak;
+
+import jdk.jfr.*;
+
+// =========================================================
+// HOSPITAL EVENTS (Java Flight Recorder)
+// =========================================================
+//
+// Custom JFR events emitted by HospitalSystemLogic, so a recording shows
+// registrations, queue traffic and history appends next to GC, locks and
+// CPU samples. Each event's duration runs from the facade call to its
+// return, including any wait for the component lock.
+//
+// Record with:  java -XX:StartFlightRecording:filename=shift.jfr ...
+// Inspect with: jfr print --events 'newpak.*' shift.jfr  (or JDK Mission Control)
+//
+// While no recording is running, shouldCommit() is false and the event
+// object never escapes, so the JIT removes the allocation; the cost is a
+// flag check.
+public final class HospitalEvents {
+
+    private HospitalEvents() {
+    }
+
+    @Name("newpak.PatientRegistration")
+    @Label("Patient Registration")
+    @Category({"Hospital", "Patients"})
+    @StackTrace(false)
+    static final class PatientRegistration extends Event {
+        @Label("Patient ID")
+        int patientId;
+
+        @Label("Disease")
+        String disease;
+
+        @Label("Registered")
+        @Description("False when the ID already existed")
+        boolean registered;
+    }
+
+    @Name("newpak.EmergencyEnqueue")
+    @Label("Emergency Enqueue")
+    @Category({"Hospital", "Emergency"})
+    @StackTrace(false)
+    static final class EmergencyEnqueue extends Event {
+        @Label("Patient ID")
+        int patientId;
+
+        @Label("Priority")
+        @Description("3 = high, 2 = medium, 1 = low")
+        int priority;
+
+        @Label("Admitted")
+        @Description("False when the queue was full")
+        boolean admitted;
+
+        @Label("Queue Depth")
+        int queueDepth;
+    }
+
+    @Name("newpak.EmergencyTreatment")
+    @Label("Emergency Treatment")
+    @Category({"Hospital", "Emergency"})
+    @StackTrace(false)
+    static final class EmergencyTreatment extends Event {
+        @Label("Patient ID")
+        int patientId;
+
+        @Label("Priority")
+        int priority;
+
+        @Label("Wait")
+        @Description("Time from arrival in the queue to treatment")
+        @Timespan(Timespan.MILLISECONDS)
+        long waitMillis;
+
+        @Label("Queue Depth")
+        @Description("Patients still waiting")
+        int queueDepth;
+    }
+
+    @Name("newpak.OPDTokenIssue")
+    @Label("OPD Token Issue")
+    @Category({"Hospital", "OPD"})
+    @StackTrace(false)
+    static final class OPDTokenIssue extends Event {
+        @Label("Patient ID")
+        int patientId;
+
+        @Label("Token")
+        @Description("0 when no token was issued")
+        int token;
+
+        @Label("Department")
+        String department;
+
+        @Label("Queue Depth")
+        int queueDepth;
+    }
+
+    @Name("newpak.OPDServe")
+    @Label("OPD Serve")
+    @Category({"Hospital", "OPD"})
+    @StackTrace(false)
+    static final class OPDServe extends Event {
+        @Label("Patient ID")
+        int patientId;
+
+        @Label("Token")
+        int token;
+
+        @Label("Department")
+        String department;
+
+        @Label("Queue Depth")
+        @Description("Patients still waiting")
+        int queueDepth;
+    }
+
+    @Name("newpak.HistoryAppend")
+    @Label("Medical History Append")
+    @Category({"Hospital", "Medical History"})
+    @StackTrace(false)
+    static final class HistoryAppend extends Event {
+        @Label("Record Length")
+        @Description("Characters, before the timestamp is added")
+        int recordLength;
+
+        @Label("Appended")
+        @Description("False when the history was full")
+        boolean appended;
+
+        @Label("Record Count")
+        int recordCount;
+    }
+
+    @Name("newpak.DepartmentCountChange")
+    @Label("Department Patient Count Change")
+    @Category({"Hospital", "Departments"})
+    @StackTrace(false)
+    static final class DepartmentCountChange extends Event {
+        @Label("Department")
+        String department;
+
+        @Label("Patient ID")
+        int patientId;
+
+        @Label("Patient Count")
+        @Description("Count after the change")
+        int patientCount;
+    }
+}
@@ -0,0 +1,720 @@
+package newpak;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// =========================================================
+// EXPORT BUFFER (bounded char buffer -> Writer or byte channel)
+// =========================================================
+//
+// Numbers are written digit by digit and strings are copied with
+// getChars, so a row costs no temporary String. Memory stays at the
+// fixed buffer size no matter how many rows go through.
+class ExportBuffer implements Flushable {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final char[] chars = new char[BUFFER_SIZE];
+    private int count;
+
+    private final Writer writer;               // one of writer / channel is set
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer bytes;
+
+    ExportBuffer(Writer writer) {
+        this.writer = writer;
+        this.channel = null;
+        this.encoder = null;
+        this.bytes = null;
+    }
+
+    ExportBuffer(WritableByteChannel channel) {
+        this.writer = null;
+        this.channel = channel;
+        this.encoder = StandardCharsets.UTF_8.newEncoder();
+        this.bytes = ByteBuffer.allocate(BUFFER_SIZE * 3);
+    }
+
+    ExportBuffer append(char c) throws IOException {
+        if (count == chars.length) drain();
+        chars[count++] = c;
+        return this;
+    }
+
+    ExportBuffer append(String s) throws IOException {
+        if (s == null) s = "null";
+        int offset = 0;
+        int length = s.length();
+        while (offset < length) {
+            if (count == chars.length) drain();
+            int n = Math.min(chars.length - count, length - offset);
+            s.getChars(offset, offset + n, chars, count);
+            count += n;
+            offset += n;
+        }
+        return this;
+    }
+
+    ExportBuffer append(long value) throws IOException {
+        if (chars.length - count < 20) drain();
+        if (value == Long.MIN_VALUE) return append("-9223372036854775808");
+        if (value < 0) {
+            chars[count++] = '-';
+            value = -value;
+        }
+        int start = count;
+        do {
+            chars[count++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        // digits were written least significant first
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            char t = chars[i];
+            chars[i] = chars[j];
+            chars[j] = t;
+        }
+        return this;
+    }
+
+    // Left-aligned text padded with spaces (same as %-<width>s)
+    ExportBuffer appendPadded(String s, int width) throws IOException {
+        append(s);
+        for (int i = s == null ? 4 : s.length(); i < width; i++) append(' ');
+        return this;
+    }
+
+    private void drain() throws IOException {
+        if (writer != null) {
+            writer.write(chars, 0, count);
+        } else {
+            CharBuffer in = CharBuffer.wrap(chars, 0, count);
+            while (true) {
+                CoderResult result = encoder.encode(in, bytes, false);
+                writeBytes();
+                if (result.isUnderflow()) break;
+            }
+            // a dangling high surrogate is kept for the next drain
+            int left = in.remaining();
+            if (left > 0) System.arraycopy(chars, in.position(), chars, 0, left);
+            count = left;
+            return;
+        }
+        count = 0;
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) channel.write(bytes);
+        bytes.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        if (writer != null) {
+            writer.flush();
+        } else {
+            encoder.encode(CharBuffer.allocate(0), bytes, true);
+            encoder.flush(bytes);
+            writeBytes();
+            encoder.reset();
+        }
+    }
+}
+
+// =========================================================
+// HOSPITAL EXPORT (streaming text exports + bulk formats)
+// =========================================================
+public class HospitalExport {
+
+    public enum Dataset { PATIENTS, EMERGENCY, OPD, DEPARTMENTS, HISTORY }
+
+    public enum ColumnType { INT, LONG, STRING }
+
+    // ==================== TABLE VIEW ====================
+
+    // Read-only, row-indexed view of one dataset. A row can be missing when
+    // the table reads it after it was taken (a patient deleted meanwhile);
+    // the formats skip such rows.
+    public abstract static class Table<T> {
+        private final Dataset dataset;
+        private final String[] columns;
+        private final ColumnType[] types;
+        private final int rowCount;
+
+        Table(Dataset dataset, String[] columns, ColumnType[] types, int rowCount) {
+            this.dataset = dataset;
+            this.columns = columns;
+            this.types = types;
+            this.rowCount = rowCount;
+        }
+
+        public Dataset getDataset() { return dataset; }
+        public int getColumnCount() { return columns.length; }
+        public String getColumnName(int column) { return columns[column]; }
+        public ColumnType getColumnType(int column) { return types[column]; }
+        public int getRowCount() { return rowCount; }
+
+        public boolean hasRow(int row) { return row(row) != null; }
+        public long getLong(int row, int column) { return getLong(row(row), column); }
+        public String getString(int row, int column) { return getString(row(row), column); }
+
+        abstract T row(int index);
+        abstract long getLong(T row, int column);
+        abstract String getString(T row, int column);
+    }
+
+    // Rows taken up front: the live objects, only the reference list is copied
+    private abstract static class ListTable<T> extends Table<T> {
+        private final List<T> rows;
+
+        ListTable(Dataset dataset, String[] columns, ColumnType[] types, List<T> rows) {
+            super(dataset, columns, types, rows.size());
+            this.rows = rows;
+        }
+
+        T row(int index) { return rows.get(index); }
+    }
+
+    // The registry is too large to copy: the table takes only the IDs
+    // (4 bytes a row) and streams the rows, each writing thread copying the
+    // block it is in under the registry lock. Blocks cover a columnar block,
+    // so a column pass never reloads them.
+    private static class PatientTable extends Table<Patient> {
+        private static final int BLOCK = ColumnarFormat.BLOCK_ROWS;
+
+        private final PatientManagement patients;
+        private final int[] ids;
+        private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+        private static class Block {
+            int start;
+            Patient[] rows = new Patient[0];
+        }
+
+        PatientTable(PatientManagement patients, int[] ids) {
+            super(Dataset.PATIENTS, new String[]{"id", "name", "age", "gender", "disease", "contact"},
+                    new ColumnType[]{INT, STRING, INT, STRING, STRING, STRING}, ids.length);
+            this.patients = patients;
+            this.ids = ids;
+        }
+
+        Patient row(int index) {
+            Block block = blocks.get();
+            if (index < block.start || index >= block.start + block.rows.length) {
+                int end = Math.min(ids.length, index + BLOCK);
+                Patient[] rows = new Patient[end - index];
+                synchronized (patients) {
+                    for (int i = index; i < end; i++) {
+                        Patient p = patients.peekPatient(ids[i]);
+                        if (p != null) rows[i - index] = p.copy();
+                    }
+                }
+                block.start = index;
+                block.rows = rows;
+            }
+            return block.rows[index - block.start];
+        }
+
+        long getLong(Patient p, int c) { return c == 0 ? p.getPatientId() : p.getPatientAge(); }
+
+        String getString(Patient p, int c) {
+            switch (c) {
+                case 1: return p.getPatientName();
+                case 3: return p.getGender();
+                case 4: return p.getDisease();
+                default: return p.getContact();
+            }
+        }
+    }
+
+    private static final ColumnType INT = ColumnType.INT;
+    private static final ColumnType LONG = ColumnType.LONG;
+    private static final ColumnType STRING = ColumnType.STRING;
+
+    public static Table<?> table(HospitalSystemLogic system, Dataset dataset) {
+        switch (dataset) {
+            case PATIENTS:
+                return new PatientTable(system.getPatientManagement(), system.getPatientIds(() -> { }));
+            case EMERGENCY:
+                return new ListTable<EmergencyPatient>(dataset,
+                        new String[]{"id", "name", "priority", "condition", "arrival_time"},
+                        new ColumnType[]{INT, STRING, INT, STRING, LONG},
+                        system.getAllEmergencyPatients()) {
+                    long getLong(EmergencyPatient e, int c) {
+                        switch (c) {
+                            case 0: return e.getPatientId();
+                            case 2: return e.getPriority();
+                            default: return e.getArrivalTime();
+                        }
+                    }
+                    String getString(EmergencyPatient e, int c) {
+                        return c == 1 ? e.getPatientName() : e.getCondition();
+                    }
+                };
+            case OPD:
+                return new ListTable<OPDPatient>(dataset,
+                        new String[]{"token", "id", "name", "department"},
+                        new ColumnType[]{INT, INT, STRING, STRING},
+                        system.getAllOPDPatients()) {
+                    long getLong(OPDPatient o, int c) { return c == 0 ? o.getTokenNumber() : o.getPatientId(); }
+                    String getString(OPDPatient o, int c) { return c == 2 ? o.getPatientName() : o.getDepartment(); }
+                };
+            case DEPARTMENTS:
+                return new ListTable<String>(dataset,
+                        new String[]{"name", "patients"},
+                        new ColumnType[]{STRING, INT},
+                        system.getAllDepartments()) {
+                    long getLong(String name, int c) { return system.getDepartmentPatientCount(name); }
+                    String getString(String name, int c) { return name; }
+                };
+            default:
+                List<String> records = system.getAllMedicalRecords();
+                return new ListTable<String>(dataset,
+                        new String[]{"record"},
+                        new ColumnType[]{STRING},
+                        records) {
+                    long getLong(String record, int c) { return 0; }
+                    String getString(String record, int c) { return record; }
+                };
+        }
+    }
+
+    // ==================== FORMATS ====================
+
+    // A file is header + any number of row blocks + footer, so blocks written
+    // by parallel partitions can simply be concatenated. writeRows returns
+    // the rows it wrote: rows deleted since the table was taken are skipped.
+    public interface Format {
+        String extension();
+        void writeHeader(Table<?> table, WritableByteChannel out) throws IOException;
+        int writeRows(Table<?> table, int fromRow, int toRow, WritableByteChannel out) throws IOException;
+        void writeFooter(Table<?> table, WritableByteChannel out) throws IOException;
+    }
+
+    public static final Format CSV = new CsvFormat();
+    public static final Format JSON_LINES = new JsonLinesFormat();
+    public static final Format COLUMNAR = new ColumnarFormat();
+
+    // ---------------- CSV (RFC 4180 quoting) ----------------
+    static class CsvFormat implements Format {
+        public String extension() { return "csv"; }
+
+        public void writeHeader(Table<?> table, WritableByteChannel out) throws IOException {
+            ExportBuffer buf = new ExportBuffer(out);
+            for (int c = 0; c < table.getColumnCount(); c++) {
+                if (c > 0) buf.append(',');
+                buf.append(table.getColumnName(c));
+            }
+            buf.append('\n').flush();
+        }
+
+        public int writeRows(Table<?> table, int fromRow, int toRow, WritableByteChannel out) throws IOException {
+            ExportBuffer buf = new ExportBuffer(out);
+            int columns = table.getColumnCount();
+            int written = 0;
+            for (int r = fromRow; r < toRow; r++) {
+                if (!table.hasRow(r)) continue;
+                for (int c = 0; c < columns; c++) {
+                    if (c > 0) buf.append(',');
+                    if (table.getColumnType(c) == STRING) {
+                        appendField(buf, table.getString(r, c));
+                    } else {
+                        buf.append(table.getLong(r, c));
+                    }
+                }
+                buf.append('\n');
+                written++;
+            }
+            buf.flush();
+            return written;
+        }
+
+        public void writeFooter(Table<?> table, WritableByteChannel out) { }
+
+        private static void appendField(ExportBuffer buf, String value) throws IOException {
+            if (value == null) return; // empty field
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char ch = value.charAt(i);
+                quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+            }
+            if (!quote) {
+                buf.append(value);
+                return;
+            }
+            buf.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                if (ch == '"') buf.append('"');
+                buf.append(ch);
+            }
+            buf.append('"');
+        }
+    }
+
+    // ---------------- JSON Lines (one object per row) ----------------
+    static class JsonLinesFormat implements Format {
+        private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+        public String extension() { return "jsonl"; }
+
+        public void writeHeader(Table<?> table, WritableByteChannel out) { }
+
+        public int writeRows(Table<?> table, int fromRow, int toRow, WritableByteChannel out) throws IOException {
+            ExportBuffer buf = new ExportBuffer(out);
+            int columns = table.getColumnCount();
+            int written = 0;
+            for (int r = fromRow; r < toRow; r++) {
+                if (!table.hasRow(r)) continue;
+                buf.append('{');
+                for (int c = 0; c < columns; c++) {
+                    if (c > 0) buf.append(',');
+                    buf.append('"').append(table.getColumnName(c)).append("\":");
+                    if (table.getColumnType(c) == STRING) {
+                        appendString(buf, table.getString(r, c));
+                    } else {
+                        buf.append(table.getLong(r, c));
+                    }
+                }
+                buf.append("}\n");
+                written++;
+            }
+            buf.flush();
+            return written;
+        }
+
+        public void writeFooter(Table<?> table, WritableByteChannel out) { }
+
+        static void appendString(ExportBuffer buf, String value) throws IOException {
+            if (value == null) {
+                buf.append("null");
+                return;
+            }
+            buf.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                switch (ch) {
+                    case '"': buf.append("\\\""); break;
+                    case '\\': buf.append("\\\\"); break;
+                    case '\n': buf.append("\\n"); break;
+                    case '\r': buf.append("\\r"); break;
+                    case '\t': buf.append("\\t"); break;
+                    default:
+                        if (ch < 0x20) {
+                            buf.append("\\u00").append(HEX[ch >> 4]).append(HEX[ch & 0xF]);
+                        } else {
+                            buf.append(ch);
+                        }
+                }
+            }
+            buf.append('"');
+        }
+    }
+
+    // ---------------- Columnar binary ----------------
+    //
+    //   header : [int magic "HMSC"][int version][string dataset][int columns]
+    //            columns x [string name][byte type]
+    //   block  : [int rows] then per column [int byteLength][values]
+    //            INT = 4 bytes, LONG = 8 bytes,
+    //            STRING = rows x [int length, -1 = null] followed by the UTF-8 bytes
+    //   footer : [int 0]
+    // Strings are [int length][bytes] in the header. Big-endian throughout.
+    static class ColumnarFormat implements Format {
+        static final int MAGIC = 0x484D5343; // "HMSC"
+        static final int VERSION = 1;
+        private static final int BLOCK_ROWS = 64 * 1024;
+
+        public String extension() { return "hcol"; }
+
+        public void writeHeader(Table<?> table, WritableByteChannel out) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(4096);
+            buf.putInt(MAGIC).putInt(VERSION);
+            putString(buf, table.getDataset().name());
+            buf.putInt(table.getColumnCount());
+            for (int c = 0; c < table.getColumnCount(); c++) {
+                putString(buf, table.getColumnName(c));
+                buf.put((byte) table.getColumnType(c).ordinal());
+            }
+            write(buf.flip(), out);
+        }
+
+        public int writeRows(Table<?> table, int fromRow, int toRow, WritableByteChannel out) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+            int[] rows = new int[BLOCK_ROWS];
+            int written = 0;
+            for (int start = fromRow; start < toRow; start += BLOCK_ROWS) {
+                int end = Math.min(toRow, start + BLOCK_ROWS);
+                int count = 0;
+                for (int r = start; r < end; r++) {
+                    if (table.hasRow(r)) rows[count++] = r;
+                }
+                ensure(buf, 4, out);
+                buf.putInt(count);
+                for (int c = 0; c < table.getColumnCount(); c++) {
+                    writeColumn(table, c, rows, count, buf, out);
+                }
+                written += count;
+            }
+            write(buf.flip(), out);
+            return written;
+        }
+
+        public void writeFooter(Table<?> table, WritableByteChannel out) throws IOException {
+            write(ByteBuffer.allocate(4).putInt(0).flip(), out);
+        }
+
+        // Column c of the first count rows listed in rows
+        private static void writeColumn(Table<?> table, int c, int[] rows, int count,
+                                        ByteBuffer buf, WritableByteChannel out) throws IOException {
+            ColumnType type = table.getColumnType(c);
+            if (type == STRING) {
+                byte[][] values = new byte[count][];
+                int bytes = 4 * values.length;
+                for (int i = 0; i < count; i++) {
+                    String s = table.getString(rows[i], c);
+                    values[i] = s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+                    if (s != null) bytes += values[i].length;
+                }
+                ensure(buf, 4, out);
+                buf.putInt(bytes);
+                for (byte[] v : values) {
+                    ensure(buf, 4, out);
+                    buf.putInt(v == null ? -1 : v.length);
+                }
+                for (byte[] v : values) {
+                    if (v == null) continue;
+                    int offset = 0;
+                    while (offset < v.length) {
+                        if (!buf.hasRemaining()) write(buf.flip(), out);
+                        int n = Math.min(buf.remaining(), v.length - offset);
+                        buf.put(v, offset, n);
+                        offset += n;
+                    }
+                }
+            } else {
+                int width = type == INT ? 4 : 8;
+                ensure(buf, 4, out);
+                buf.putInt(width * count);
+                for (int i = 0; i < count; i++) {
+                    ensure(buf, width, out);
+                    if (type == INT) buf.putInt((int) table.getLong(rows[i], c));
+                    else buf.putLong(table.getLong(rows[i], c));
+                }
+            }
+        }
+
+        private static void putString(ByteBuffer buf, String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            buf.putInt(bytes.length).put(bytes);
+        }
+
+        private static void ensure(ByteBuffer buf, int bytes, WritableByteChannel out) throws IOException {
+            if (buf.remaining() < bytes) write(buf.flip(), out);
+        }
+
+        private static void write(ByteBuffer buf, WritableByteChannel out) throws IOException {
+            while (buf.hasRemaining()) out.write(buf);
+            buf.clear();
+        }
+    }
+
+    // ==================== BULK EXPORT ====================
+
+    // Exports one dataset to target. With partitions > 1 the row range is split
+    // and each slice is formatted into its own part file on a worker thread
+    // (text sizes are unknown until written, so slices cannot go straight to
+    // their place in the target). The parts are then appended with
+    // FileChannel.transferTo: the bytes are written twice, but the append
+    // stays in the kernel instead of going through the Java heap. Part files
+    // are deleted however the export ends. Returns the number of rows
+    // written, without rows deleted or archived after the table was taken.
+    public static int export(HospitalSystemLogic system, Dataset dataset, Format format,
+                             Path target, int partitions) throws IOException {
+        Table<?> table = table(system, dataset);
+        int rows = table.getRowCount();
+        partitions = Math.max(1, Math.min(partitions, rows / 10_000 + 1));
+        int written;
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            format.writeHeader(table, out);
+            if (partitions == 1) {
+                written = format.writeRows(table, 0, rows, out);
+            } else {
+                Path[] parts = new Path[partitions];
+                written = writePartitions(table, format, target, parts);
+                try {
+                    for (Path part : parts) {
+                        try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                            long size = in.size();
+                            for (long pos = 0; pos < size; ) {
+                                pos += in.transferTo(pos, size - pos, out);
+                            }
+                        }
+                    }
+                } finally {
+                    for (Path part : parts) Files.deleteIfExists(part);
+                }
+            }
+            format.writeFooter(table, out);
+        }
+        return written;
+    }
+
+    // Writes every dataset as <dir>/<dataset>.<extension>, returns total rows written
+    public static long exportAll(HospitalSystemLogic system, Format format,
+                                 Path dir, int partitions) throws IOException {
+        Files.createDirectories(dir);
+        long rows = 0;
+        for (Dataset dataset : Dataset.values()) {
+            Path target = dir.resolve(dataset.name().toLowerCase() + "." + format.extension());
+            rows += export(system, dataset, format, target, partitions);
+        }
+        return rows;
+    }
+
+    // One part file per element of parts; returns the rows written
+    private static int writePartitions(Table<?> table, Format format, Path target,
+                                       Path[] parts) throws IOException {
+        int rows = table.getRowCount();
+        int partitions = parts.length;
+        ExecutorService pool = Executors.newFixedThreadPool(partitions, r -> {
+            Thread t = new Thread(r, "hospital-export");
+            t.setDaemon(true);
+            return t;
+        });
+        boolean complete = false;
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < partitions; i++) {
+                int from = (int) ((long) rows * i / partitions);
+                int to = (int) ((long) rows * (i + 1) / partitions);
+                Path part = target.resolveSibling(target.getFileName() + ".part" + i);
+                parts[i] = part;
+                futures.add(pool.submit(() -> {
+                    try (FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        return format.writeRows(table, from, to, out);
+                    }
+                }));
+            }
+            int written = 0;
+            for (Future<Integer> future : futures) {
+                written += future.get();
+            }
+            complete = true;
+            return written;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+            if (!complete) deleteParts(pool, parts);
+        }
+    }
+
+    // After a failed or interrupted export: waits for the cancelled workers
+    // to close their files, so none is recreated after its delete
+    private static void deleteParts(ExecutorService pool, Path[] parts) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        for (Path part : parts) {
+            if (part == null) continue;
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                // best effort: the export's own failure is the one reported
+            }
+        }
+    }
+
+    // ==================== TEXT EXPORTS ====================
+
+    private static final int TEXT_BATCH = 1024;
+
+    // Same text as Patient.toString(), one line per patient, then the number
+    // of lines written. Rows are copied in short locked batches through a
+    // PatientManagement.ExportCursor and written with no lock held, so a slow
+    // Writer or channel never stalls the registry. A patient deleted
+    // meanwhile is skipped, an updated one shows as it was when its batch was
+    // copied. Returns the number of patients written; progress is given the
+    // count so far after each batch.
+    static int writePatientData(HospitalSystemLogic system, ExportBuffer out) throws IOException {
+        return writePatientData(system, out, written -> { });
+    }
+
+    static int writePatientData(HospitalSystemLogic system, ExportBuffer out,
+                                java.util.function.IntConsumer progress) throws IOException {
+        PatientManagement patients = system.getPatientManagement();
+        PatientManagement.ExportCursor cursor;
+        synchronized (patients) {
+            cursor = patients.exportCursor();
+        }
+        out.append("===== PATIENT DATA EXPORT =====\n\n");
+
+        int written = 0;
+        try {
+            while (true) {
+                List<Patient> batch;
+                synchronized (patients) {
+                    batch = cursor.next(TEXT_BATCH);
+                }
+                if (batch.isEmpty()) break;
+                for (Patient p : batch) {
+                    out.append("ID: ").append(p.getPatientId())
+                            .append(" | Name: ").append(p.getPatientName())
+                            .append(" | Age: ").append(p.getPatientAge())
+                            .append(" | Gender: ").append(p.getGender())
+                            .append(" | Disease: ").append(p.getDisease())
+                            .append(" | Contact: ").append(p.getContact())
+                            .append('\n');
+                    written++;
+                }
+                progress.accept(written);
+            }
+        } finally {
+            synchronized (patients) {
+                cursor.close();
+            }
+        }
+        out.append("\nTotal Patients: ").append(written).append('\n');
+        out.flush();
+        return written;
+    }
+
+    // "Generated" is when this report version was built
+    static void writeSystemReport(HospitalReport.Snapshot report, ExportBuffer out) throws IOException {
+        out.append("===== HOSPITAL SYSTEM REPORT =====\n");
+        out.append("Generated: ").append(new Date(report.getGeneratedAt()).toString()).append("\n\n");
+
+        for (Map.Entry<String, Integer> entry : report.getEntries().entrySet()) {
+            out.appendPadded(entry.getKey(), 20).append(": ").append(entry.getValue()).append('\n');
+        }
+
+        out.append("\n===== DEPARTMENT STATISTICS =====\n");
+        for (String dept : report.getDepartmentStats()) {
+            out.append(dept).append('\n');
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,514 @@
+package newpak;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// =========================================================
+// HOSPITAL HTTP SERVER (JSON API over HospitalSystemLogic)
+// =========================================================
+//
+//   GET    /api/patients?offset=0&limit=100     POST /api/patients
+//   GET    /api/patients?q=age > 65 and gender = female[&explain=true]
+//   GET    /api/patients/{id}                   PUT  /api/patients/{id}
+//   HEAD   /api/patients/{id} (200 / 404, a cold patient stays cold)
+//   DELETE /api/patients/{id}                   GET  /api/patients/export (JSON Lines)
+//   GET    /api/emergency                       POST /api/emergency
+//   GET    /api/emergency/next                  POST /api/emergency/treat
+//   GET    /api/opd                             POST /api/opd
+//   GET    /api/opd/next                        POST /api/opd/treat
+//   GET    /api/departments                     POST /api/departments
+//   PUT    /api/departments/{name}              DELETE /api/departments/{name}
+//   GET    /api/history?offset=0&limit=100      POST /api/history
+//   DELETE /api/history/latest                  GET  /api/report
+//   GET    /api/metrics (plain text)
+//
+// Each request runs on its own virtual thread when the JDK has them
+// (21+), otherwise on a fixed pool of platform threads.
+//
+// Launch with -Dsun.net.httpserver.nodelay=true: headers and body go out as
+// separate writes, and with Nagle on every response waits for the client's
+// delayed ACK (~40 ms). The server does not set it, as it is JVM-wide.
+public class HospitalHttpServer {
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10_000;
+    private static final int MAX_BODY = 64 * 1024;
+
+    private final HospitalSystemLogic system;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // Thrown by handlers, turned into a JSON error response
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private HospitalHttpServer(HospitalSystemLogic system, int port) throws IOException {
+        this.system = system;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor();
+        server.createContext("/api/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public static HospitalHttpServer start(HospitalSystemLogic system, int port) throws IOException {
+        HospitalHttpServer httpServer = new HospitalHttpServer(system, port);
+        httpServer.server.start();
+        return httpServer;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // Virtual thread per request on JDK 21+, platform pool before that
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(16, Runtime.getRuntime().availableProcessors() * 8);
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "hospital-http");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // ==================== DISPATCH ====================
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestMethod().equals("GET")
+                && exchange.getRequestURI().getRawPath().equals("/api/patients/export")) {
+            exportPatients(exchange);
+            return;
+        }
+        if (exchange.getRequestMethod().equals("GET")
+                && exchange.getRequestURI().getRawPath().equals("/api/metrics")) {
+            metrics(exchange);
+            return;
+        }
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            patientExists(exchange);
+            return;
+        }
+        int status = 200;
+        String body;
+        try {
+            String[] path = exchange.getRequestURI().getRawPath().substring("/api/".length()).split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+            String resource = path[0];
+            String item = path.length > 1 ? URLDecoder.decode(path[1], StandardCharsets.UTF_8) : null;
+
+            switch (resource) {
+                case "patients" -> body = patients(method, item, query, exchange);
+                case "emergency" -> body = emergency(method, item, exchange);
+                case "opd" -> body = opd(method, item, exchange);
+                case "departments" -> body = departments(method, item, exchange);
+                case "history" -> body = history(method, item, query, exchange);
+                case "report" -> body = report(method);
+                default -> throw new ApiException(404, "Unknown resource: " + resource);
+            }
+            if (method.equals("POST") && body.startsWith("{") && !isAction(item)) {
+                status = 201;
+            }
+        } catch (ApiException e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException e) { // bad JSON, bad numbers
+            status = 400;
+            body = error(e.getMessage());
+        } catch (RuntimeException e) {
+            // Details go to the server log, not to the client
+            System.err.println("HTTP " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed:");
+            e.printStackTrace();
+            status = 500;
+            body = error("Internal error");
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static boolean isAction(String item) {
+        return "treat".equals(item);
+    }
+
+    // ==================== PATIENTS ====================
+
+    private String patients(String method, String item, Map<String, String> query,
+                            HttpExchange exchange) throws IOException {
+        if (item == null) {
+            switch (method) {
+                case "GET": {
+                    String q = query.get("q");
+                    if (q != null && "true".equals(query.get("explain"))) {
+                        return "{\"plan\":" + Json.appendString(new StringBuilder(), system.explainPatientQuery(q)) + "}";
+                    }
+                    int offset = Math.max(0, intParam(query, "offset", 0));
+                    int limit = Math.max(0, Math.min(MAX_LIMIT, intParam(query, "limit", DEFAULT_LIMIT)));
+                    HospitalQuery.Page page = q != null
+                            ? system.queryPatients(q, offset, limit)
+                            : system.getPatientPage(offset, limit);
+                    StringBuilder sb = new StringBuilder("{\"total\":").append(page.getTotal()).append(",\"items\":[");
+                    for (Patient p : page.getRows()) {
+                        if (sb.charAt(sb.length() - 1) != '[') sb.append(',');
+                        patientJson(sb, p);
+                    }
+                    return sb.append("]}").toString();
+                }
+                case "POST": {
+                    Map<String, String> in = readJson(exchange);
+                    int id = requiredInt(in, "id");
+                    String[] fields = validatedPatient(in);
+                    int age = Integer.parseInt(fields[1]);
+                    if (!system.addPatient(id, fields[0], age, fields[2], fields[3], fields[4])) {
+                        throw new ApiException(409, "Patient ID already exists: " + id);
+                    }
+                    return patientJson(new StringBuilder(), system.searchPatient(id)).toString();
+                }
+                default:
+                    throw methodNotAllowed(method);
+            }
+        }
+
+        int id = parseId(item);
+        switch (method) {
+            case "GET": {
+                Patient patient = system.searchPatient(id);
+                if (patient == null) throw new ApiException(404, "Patient not found: " + id);
+                return patientJson(new StringBuilder(), patient).toString();
+            }
+            case "PUT": {
+                String[] fields = validatedPatient(readJson(exchange));
+                if (!system.updatePatient(id, fields[0], Integer.parseInt(fields[1]), fields[2], fields[3], fields[4])) {
+                    throw new ApiException(404, "Patient not found: " + id);
+                }
+                return patientJson(new StringBuilder(), system.searchPatient(id)).toString();
+            }
+            case "DELETE":
+                if (!system.deletePatient(id)) throw new ApiException(404, "Patient not found: " + id);
+                return "{\"deleted\":" + id + "}";
+            default:
+                throw methodNotAllowed(method);
+        }
+    }
+
+    // Whole patient list as JSON Lines, streamed (chunked) instead of paged
+    private void exportPatients(HttpExchange exchange) throws IOException {
+        HospitalExport.Table<?> table = HospitalExport.table(system, HospitalExport.Dataset.PATIENTS);
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (WritableByteChannel out = Channels.newChannel(exchange.getResponseBody())) {
+            HospitalExport.JSON_LINES.writeHeader(table, out);
+            HospitalExport.JSON_LINES.writeRows(table, 0, table.getRowCount(), out);
+            HospitalExport.JSON_LINES.writeFooter(table, out);
+        }
+    }
+
+    // Status only: a HEAD response has no body
+    private void patientExists(HttpExchange exchange) throws IOException {
+        String[] path = exchange.getRequestURI().getRawPath().substring("/api/".length()).split("/");
+        int status;
+        if (path.length != 2 || !path[0].equals("patients")) {
+            status = 405;
+        } else {
+            try {
+                status = system.patientExists(parseId(path[1])) ? 200 : 404;
+            } catch (ApiException e) {
+                status = e.status;
+            }
+        }
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        byte[] bytes = system.getMetricsReport().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // name, age, gender, disease, contact (validated like the import)
+    private static String[] validatedPatient(Map<String, String> in) {
+        String name = required(in, "name");
+        int age = requiredInt(in, "age");
+        if (!HospitalSystemLogic.isValidAge(age)) throw new ApiException(400, "Age out of range: " + age);
+        String contact = in.get("contact");
+        if (!HospitalSystemLogic.isValidPhone(contact)) throw new ApiException(400, "Invalid contact number: " + contact);
+        String gender = in.get("gender");
+        if (!HospitalSystemLogic.isValidGender(gender)) throw new ApiException(400, "Unknown gender: " + gender);
+        return new String[]{name, String.valueOf(age), in.get("gender"), in.get("disease"), contact};
+    }
+
+    private static StringBuilder patientJson(StringBuilder sb, Patient p) {
+        sb.append("{\"id\":").append(p.getPatientId()).append(",\"name\":");
+        Json.appendString(sb, p.getPatientName()).append(",\"age\":").append(p.getPatientAge()).append(",\"gender\":");
+        Json.appendString(sb, p.getGender()).append(",\"disease\":");
+        Json.appendString(sb, p.getDisease()).append(",\"contact\":");
+        return Json.appendString(sb, p.getContact()).append('}');
+    }
+
+    // ==================== EMERGENCY ====================
+
+    private String emergency(String method, String item, HttpExchange exchange) throws IOException {
+        if (item == null && method.equals("GET")) {
+            StringBuilder sb = new StringBuilder("[");
+            List<EmergencyPatient> all = system.getAllEmergencyPatients();
+            for (int i = 0; i < all.size(); i++) {
+                if (i > 0) sb.append(',');
+                emergencyJson(sb, all.get(i));
+            }
+            return sb.append(']').toString();
+        }
+        if (item == null && method.equals("POST")) {
+            Map<String, String> in = readJson(exchange);
+            int id = requiredInt(in, "id");
+            int priority = requiredInt(in, "priority");
+            if (!HospitalSystemLogic.isValidPriority(priority)) {
+                throw new ApiException(400, "Priority must be 1 (LOW) to 3 (HIGH)");
+            }
+            if (!system.addEmergencyPatient(id, required(in, "name"), priority, in.get("condition"))) {
+                throw new ApiException(409, "Emergency queue is full");
+            }
+            return "{\"queued\":" + id + ",\"waiting\":" + system.getEmergencyCount() + "}";
+        }
+        if ("next".equals(item) && method.equals("GET")) {
+            return emergencyOrEmpty(system.peekNextEmergencyPatient());
+        }
+        if ("treat".equals(item) && method.equals("POST")) {
+            return emergencyOrEmpty(system.treatNextEmergencyPatient());
+        }
+        throw methodNotAllowed(method);
+    }
+
+    private static String emergencyOrEmpty(EmergencyPatient patient) {
+        if (patient == null) throw new ApiException(404, "No emergency patients");
+        return emergencyJson(new StringBuilder(), patient).toString();
+    }
+
+    private static StringBuilder emergencyJson(StringBuilder sb, EmergencyPatient e) {
+        sb.append("{\"id\":").append(e.getPatientId()).append(",\"name\":");
+        Json.appendString(sb, e.getPatientName()).append(",\"priority\":").append(e.getPriority()).append(",\"condition\":");
+        return Json.appendString(sb, e.getCondition()).append(",\"arrivalTime\":").append(e.getArrivalTime()).append('}');
+    }
+
+    // ==================== OPD ====================
+
+    private String opd(String method, String item, HttpExchange exchange) throws IOException {
+        if (item == null && method.equals("GET")) {
+            StringBuilder sb = new StringBuilder("[");
+            List<OPDPatient> all = system.getAllOPDPatients();
+            for (int i = 0; i < all.size(); i++) {
+                if (i > 0) sb.append(',');
+                opdJson(sb, all.get(i));
+            }
+            return sb.append(']').toString();
+        }
+        if (item == null && method.equals("POST")) {
+            Map<String, String> in = readJson(exchange);
+            int id = requiredInt(in, "id");
+            String department = required(in, "department");
+            if (!system.departmentExists(department)) throw new ApiException(404, "Unknown department: " + department);
+            if (!system.addOPDPatient(id, required(in, "name"), department)) {
+                throw new ApiException(409, "OPD queue is full");
+            }
+            return "{\"queued\":" + id + ",\"waiting\":" + system.getOPDCount() + "}";
+        }
+        if ("next".equals(item) && method.equals("GET")) {
+            return opdOrEmpty(system.peekNextOPDPatient());
+        }
+        if ("treat".equals(item) && method.equals("POST")) {
+            return opdOrEmpty(system.treatNextOPDPatient());
+        }
+        throw methodNotAllowed(method);
+    }
+
+    private static String opdOrEmpty(OPDPatient patient) {
+        if (patient == null) throw new ApiException(404, "No OPD patients waiting");
+        return opdJson(new StringBuilder(), patient).toString();
+    }
+
+    private static StringBuilder opdJson(StringBuilder sb, OPDPatient o) {
+        sb.append("{\"token\":").append(o.getTokenNumber()).append(",\"id\":").append(o.getPatientId()).append(",\"name\":");
+        Json.appendString(sb, o.getPatientName()).append(",\"department\":");
+        return Json.appendString(sb, o.getDepartment()).append('}');
+    }
+
+    // ==================== DEPARTMENTS ====================
+
+    private String departments(String method, String item, HttpExchange exchange) throws IOException {
+        if (item == null && method.equals("GET")) {
+            StringBuilder sb = new StringBuilder("[");
+            List<String> all = system.getAllDepartments();
+            for (int i = 0; i < all.size(); i++) {
+                if (i > 0) sb.append(',');
+                sb.append("{\"name\":");
+                Json.appendString(sb, all.get(i)).append(",\"patients\":")
+                        .append(system.getDepartmentPatientCount(all.get(i))).append('}');
+            }
+            return sb.append(']').toString();
+        }
+        if (item == null && method.equals("POST")) {
+            String name = required(readJson(exchange), "name").trim();
+            if (!system.addDepartment(name)) throw new ApiException(409, "Department already exists: " + name);
+            return "{\"name\":" + Json.appendString(new StringBuilder(), name) + "}";
+        }
+        if (item != null && method.equals("PUT")) {
+            String newName = required(readJson(exchange), "name").trim();
+            if (!system.updateDepartmentName(item, newName)) {
+                throw new ApiException(409, "Rename failed: " + item + " -> " + newName);
+            }
+            return "{\"name\":" + Json.appendString(new StringBuilder(), newName) + "}";
+        }
+        if (item != null && method.equals("DELETE")) {
+            if (!system.removeDepartment(item)) throw new ApiException(404, "Department not found: " + item);
+            return "{\"deleted\":" + Json.appendString(new StringBuilder(), item) + "}";
+        }
+        throw methodNotAllowed(method);
+    }
+
+    // ==================== HISTORY ====================
+
+    private String history(String method, String item, Map<String, String> query,
+                           HttpExchange exchange) throws IOException {
+        if (item == null && method.equals("GET")) {
+            // Newest first, like the GUI
+            List<String> all = system.getAllMedicalRecords();
+            int offset = intParam(query, "offset", 0);
+            int limit = Math.min(MAX_LIMIT, intParam(query, "limit", DEFAULT_LIMIT));
+            StringBuilder sb = new StringBuilder("{\"total\":").append(all.size()).append(",\"items\":[");
+            for (int n = 0, i = all.size() - 1 - offset; i >= 0 && n < limit; n++, i--) {
+                if (n > 0) sb.append(',');
+                Json.appendString(sb, all.get(i));
+            }
+            return sb.append("]}").toString();
+        }
+        if (item == null && method.equals("POST")) {
+            String record = required(readJson(exchange), "record").trim();
+            if (!system.addMedicalRecord(record)) throw new ApiException(409, "Medical history storage is full");
+            return "{\"records\":" + system.getMedicalRecordCount() + "}";
+        }
+        if ("latest".equals(item) && method.equals("DELETE")) {
+            String removed = system.removeLatestRecord();
+            if (removed == null) throw new ApiException(404, "No medical records");
+            return "{\"removed\":" + Json.appendString(new StringBuilder(), removed) + "}";
+        }
+        throw methodNotAllowed(method);
+    }
+
+    // ==================== REPORT ====================
+
+    private String report(String method) {
+        if (!method.equals("GET")) throw methodNotAllowed(method);
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<String, Integer> entry : system.getSystemReport().entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            Json.appendString(sb, entry.getKey()).append(':').append(entry.getValue());
+        }
+        return sb.append('}').toString();
+    }
+
+    // ==================== HELPERS ====================
+
+    private static Map<String, String> readJson(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY + 1);
+            if (bytes.length > MAX_BODY) throw new ApiException(413, "Request body too large");
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Invalid " + name + ": " + value);
+        }
+    }
+
+    private static String required(Map<String, String> in, String field) {
+        String value = in.get(field);
+        if (value == null || value.trim().isEmpty()) throw new ApiException(400, "Missing field: " + field);
+        return value;
+    }
+
+    private static int requiredInt(Map<String, String> in, String field) {
+        String value = required(in, field);
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Invalid " + field + ": " + value);
+        }
+    }
+
+    private static int parseId(String item) {
+        try {
+            return Integer.parseInt(item);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Invalid patient ID: " + item);
+        }
+    }
+
+    private static ApiException methodNotAllowed(String method) {
+        return new ApiException(405, "Method not allowed: " + method);
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.appendString(new StringBuilder(), message) + "}";
+    }
+
+    // java newpak.HospitalHttpServer [port]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        HospitalHttpServer server = start(HospitalSystemLogic.getInstance(), port);
+        System.out.println("Hospital API listening on http://localhost:" + server.getPort() + "/api/");
+    }
+}
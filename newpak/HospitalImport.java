@@ -0,0 +1,373 @@
+package newpak;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+// =========================================================
+// HOSPITAL IMPORT (streaming bulk patient import)
+// =========================================================
+//
+// Pipeline: the calling thread reads the file in batches of raw rows,
+// a worker pool parses + validates whole batches in parallel, and the
+// calling thread commits the validated batches in file order (so
+// duplicate handling is deterministic). Only a few batches are in
+// flight at once, memory does not grow with the file size.
+public class HospitalImport {
+    static final int DEFAULT_BATCH_SIZE = 4096;
+    private static final int MAX_REPORTED_ERRORS = 10_000;
+    // A quoted CSV field may span lines, but a record longer than this is a
+    // stray quote: its first line is rejected and the rest read again
+    static final int MAX_RECORD_LINES = 100;
+    static final int MAX_RECORD_CHARS = 64 * 1024;
+    private static final String[] COLUMNS = {"id", "name", "age", "gender", "disease", "contact"};
+
+    // ==================== REPORT ====================
+
+    public static class RowError {
+        private final long line;
+        private final String message;
+
+        RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() { return line; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "Line " + line + ": " + message;
+        }
+    }
+
+    public static class ImportReport {
+        private long imported;
+        private long duplicates;
+        private long invalid;
+        private long elapsedNanos;
+        private final List<RowError> errors = new ArrayList<>();
+
+        public long getImported() { return imported; }
+        public long getDuplicates() { return duplicates; }
+        public long getInvalid() { return invalid; }
+        public long getRejected() { return duplicates + invalid; }
+        public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+        // First MAX_REPORTED_ERRORS errors; counts cover every row
+        public List<RowError> getErrors() { return errors; }
+
+        void error(long line, String message) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(line, message));
+            }
+        }
+
+        public void writeTo(Writer out) throws IOException {
+            out.write("Imported: " + imported + ", duplicates: " + duplicates +
+                    ", invalid: " + invalid + ", time: " + getElapsedMillis() + " ms\n");
+            for (RowError error : errors) {
+                out.write(error.toString());
+                out.write('\n');
+            }
+            if (errors.size() < getRejected()) {
+                out.write("... " + (getRejected() - errors.size()) + " more errors not listed\n");
+            }
+            out.flush();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported: %d | Duplicates: %d | Invalid: %d | Time: %d ms",
+                    imported, duplicates, invalid, getElapsedMillis());
+        }
+    }
+
+    // ==================== PIPELINE ====================
+
+    // One parsed + validated row (error != null means rejected)
+    private static class ParsedRow {
+        final long line;
+        final String error;
+        final int id;
+        final String name;
+        final int age;
+        final String gender;
+        final String disease;
+        final String contact;
+
+        ParsedRow(long line, String error) {
+            this(line, error, 0, null, 0, null, null, null);
+        }
+
+        ParsedRow(long line, String error, int id, String name, int age,
+                  String gender, String disease, String contact) {
+            this.line = line;
+            this.error = error;
+            this.id = id;
+            this.name = name;
+            this.age = age;
+            this.gender = gender;
+            this.disease = disease;
+            this.contact = contact;
+        }
+    }
+
+    public static ImportReport importPatients(HospitalSystemLogic system, Path file,
+                                              int batchSize, int threads) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        boolean json = name.endsWith(".jsonl") || name.endsWith(".json");
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importPatients(system, reader, json, batchSize, threads);
+        }
+    }
+
+    public static ImportReport importPatients(HospitalSystemLogic system, BufferedReader reader,
+                                              boolean json, int batchSize, int threads) throws IOException {
+        ImportReport report = new ImportReport();
+        long start = System.nanoTime();
+        threads = Math.max(1, threads);
+        batchSize = Math.max(1, batchSize);
+
+        // CSV: map header names to positions (any column order is accepted)
+        int[] columnIndex = null;
+        long lineNumber = 0;
+        if (!json) {
+            String header = reader.readLine();
+            if (header == null) return report;
+            lineNumber = 1;
+            columnIndex = mapHeader(header);
+            if (columnIndex == null) {
+                throw new IOException("CSV header must contain: " + String.join(",", COLUMNS));
+            }
+        }
+        final int[] csvColumns = columnIndex;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "hospital-import");
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<List<ParsedRow>>> inFlight = new ArrayDeque<>();
+        try {
+            StringBuilder record = new StringBuilder();
+            List<String> lines = new ArrayList<>(batchSize);
+            List<Long> numbers = new ArrayList<>(batchSize);
+            Deque<String> reread = new ArrayDeque<>();
+            String line;
+            long recordStart = 0;
+            int recordLines = 0;
+            int quotes = 0;
+            while ((line = reread.isEmpty() ? reader.readLine() : reread.poll()) != null) {
+                lineNumber++;
+                if (record.length() == 0) {
+                    if (line.isEmpty()) continue;
+                    recordStart = lineNumber;
+                    recordLines = 0;
+                    quotes = 0;
+                } else {
+                    record.append('\n');
+                }
+                record.append(line);
+                recordLines++;
+                quotes += countQuotes(line);
+                // A quoted CSV field may span lines: wait for the closing quote
+                if (!json && quotes % 2 != 0) {
+                    if (recordLines < MAX_RECORD_LINES && record.length() < MAX_RECORD_CHARS) continue;
+                    // Stray quote: the first line fails to parse (reported at
+                    // recordStart), the lines after it are records of their own
+                    int firstEnd = record.indexOf("\n");
+                    if (firstEnd >= 0) {
+                        String[] rest = record.substring(firstEnd + 1).split("\n", -1);
+                        for (int i = rest.length - 1; i >= 0; i--) reread.push(rest[i]);
+                        record.setLength(firstEnd);
+                        lineNumber = recordStart;
+                    }
+                }
+
+                lines.add(record.toString());
+                numbers.add(recordStart);
+                record.setLength(0);
+
+                if (lines.size() == batchSize) {
+                    inFlight.add(submit(pool, lines, numbers, json, csvColumns));
+                    lines = new ArrayList<>(batchSize);
+                    numbers = new ArrayList<>(batchSize);
+                    // Bounded pipeline: commit the oldest batch before reading further
+                    if (inFlight.size() > threads * 2) {
+                        commit(system, await(inFlight.poll()), report);
+                    }
+                }
+            }
+            if (record.length() > 0) {
+                lines.add(record.toString());
+                numbers.add(recordStart);
+            }
+            if (!lines.isEmpty()) {
+                inFlight.add(submit(pool, lines, numbers, json, csvColumns));
+            }
+            while (!inFlight.isEmpty()) {
+                commit(system, await(inFlight.poll()), report);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private static Future<List<ParsedRow>> submit(ExecutorService pool, List<String> lines, List<Long> numbers,
+                                                  boolean json, int[] csvColumns) {
+        return pool.submit(() -> {
+            List<ParsedRow> rows = new ArrayList<>(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                rows.add(parse(lines.get(i), numbers.get(i), json, csvColumns));
+            }
+            return rows;
+        });
+    }
+
+    private static List<ParsedRow> await(Future<List<ParsedRow>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Import worker failed", e.getCause());
+        }
+    }
+
+    // Applies one validated batch, then makes it durable with a single flush
+    private static void commit(HospitalSystemLogic system, List<ParsedRow> rows, ImportReport report) {
+        for (ParsedRow row : rows) {
+            if (row.error != null) {
+                report.invalid++;
+                report.error(row.line, row.error);
+            } else if (system.patientExists(row.id)
+                    || !system.addPatient(row.id, row.name, row.age, row.gender, row.disease, row.contact)) {
+                report.duplicates++;
+                report.error(row.line, "Patient ID " + row.id + " already exists");
+            } else {
+                report.imported++;
+            }
+        }
+        system.flush();
+    }
+
+    // ==================== PARSING + VALIDATION (worker threads) ====================
+
+    private static ParsedRow parse(String text, long line, boolean json, int[] csvColumns) {
+        String[] values;
+        try {
+            values = json ? parseJson(text) : parseCsv(text, csvColumns);
+        } catch (IllegalArgumentException e) {
+            return new ParsedRow(line, e.getMessage());
+        }
+
+        int id;
+        int age;
+        try {
+            id = Integer.parseInt(values[0].trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            return new ParsedRow(line, "Invalid patient ID: " + values[0]);
+        }
+        try {
+            age = Integer.parseInt(values[2].trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            return new ParsedRow(line, "Invalid age: " + values[2]);
+        }
+        if (values[1] == null || values[1].trim().isEmpty()) {
+            return new ParsedRow(line, "Name is required");
+        }
+        if (!HospitalSystemLogic.isValidAge(age)) {
+            return new ParsedRow(line, "Age out of range: " + age);
+        }
+        if (!HospitalSystemLogic.isValidPhone(values[5])) {
+            return new ParsedRow(line, "Invalid contact number: " + values[5]);
+        }
+        if (!HospitalSystemLogic.isValidGender(values[3])) {
+            return new ParsedRow(line, "Unknown gender: " + values[3]);
+        }
+        return new ParsedRow(line, null, id, values[1].trim(), age, values[3], values[4], values[5]);
+    }
+
+    // Column positions in COLUMNS order, null when one is missing
+    private static int[] mapHeader(String header) {
+        List<String> names = splitCsv(header);
+        int[] index = new int[COLUMNS.length];
+        for (int c = 0; c < COLUMNS.length; c++) {
+            index[c] = -1;
+            for (int i = 0; i < names.size(); i++) {
+                if (names.get(i).trim().equalsIgnoreCase(COLUMNS[c])) index[c] = i;
+            }
+            if (index[c] < 0) return null;
+        }
+        return index;
+    }
+
+    private static String[] parseCsv(String text, int[] columnIndex) {
+        if (countQuotes(text) % 2 != 0) throw new IllegalArgumentException("Unterminated quoted field");
+        List<String> fields = splitCsv(text);
+        String[] values = new String[COLUMNS.length];
+        for (int c = 0; c < COLUMNS.length; c++) {
+            int i = columnIndex[c];
+            if (i >= fields.size()) throw new IllegalArgumentException("Missing column '" + COLUMNS[c] + "'");
+            String value = fields.get(i);
+            values[c] = value.isEmpty() ? null : value;
+        }
+        return values;
+    }
+
+    private static int countQuotes(String text) {
+        int quotes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') quotes++;
+        }
+        return quotes;
+    }
+
+    // RFC 4180: fields may be quoted, "" inside quotes is a literal quote
+    static List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<>(COLUMNS.length);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (ch != '\r') {
+                field.append(ch);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    static String[] parseJson(String text) {
+        Map<String, String> fields = Json.parseObject(text);
+        String[] values = new String[COLUMNS.length];
+        for (int c = 0; c < COLUMNS.length; c++) {
+            values[c] = fields.get(COLUMNS[c]);
+        }
+        return values;
+    }
+}
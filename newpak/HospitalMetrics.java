@@ -0,0 +1,481 @@
+package newpak;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// =========================================================
+// LATENCY HISTOGRAM (HDR-style log-linear buckets)
+// =========================================================
+//
+// Values below 2^SUB_BITS nanoseconds get one bucket each; above that every
+// power of two is split into 2^SUB_BITS buckets, so any recorded value is
+// known to within ~3%. Recording is an index computation and an array
+// add: no allocation, no locks. The caller serializes writers. A sample
+// taken 1 in n calls is recorded with weight n, so the counts estimate
+// every call.
+class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int MAX_EXPONENT = 40;   // ~18 minutes; longer values are clamped
+    static final int BUCKETS = bucketCount(SUB_BITS, MAX_EXPONENT);
+
+    private final long[] counts = new long[BUCKETS];
+    private long samples;
+    private long weightedCount;
+    private long totalNanos;
+    private long maxNanos;
+
+    void record(long nanos, long weight) {
+        if (nanos < 0) nanos = 0;
+        counts[bucket(nanos)] += weight;
+        samples++;
+        weightedCount += weight;
+        totalNanos += nanos * weight;
+        if (nanos > maxNanos) maxNanos = nanos;
+    }
+
+    static int bucket(long nanos) {
+        return bucket(nanos, SUB_BITS, MAX_EXPONENT);
+    }
+
+    // Highest value that falls in the bucket
+    static long upperBound(int bucket) {
+        return upperBound(bucket, SUB_BITS);
+    }
+
+    // Log-linear bucket of value with 2^subBits buckets per power of two;
+    // values of 2^(maxExponent + 1) and more share the last bucket
+    static int bucket(long value, int subBits, int maxExponent) {
+        int subCount = 1 << subBits;
+        if (value < subCount) return (int) Math.max(0, value);
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), maxExponent);
+        int sub = (int) (value >>> (exponent - subBits)) & (subCount - 1);
+        if (exponent == maxExponent && value >>> maxExponent > 1) sub = subCount - 1;
+        return (exponent - subBits + 1) * subCount + sub;
+    }
+
+    static int bucketCount(int subBits, int maxExponent) {
+        return (maxExponent - subBits + 2) << subBits;
+    }
+
+    static long upperBound(int bucket, int subBits) {
+        int subCount = 1 << subBits;
+        if (bucket < subCount) return bucket;
+        int exponent = bucket / subCount + subBits - 1;
+        long sub = bucket % subCount;
+        return ((subCount + sub + 1) << (exponent - subBits)) - 1;
+    }
+
+    long getSamples() {
+        return samples;
+    }
+
+    long getMaxNanos() {
+        return maxNanos;
+    }
+
+    double getMeanNanos() {
+        return weightedCount == 0 ? 0 : (double) totalNanos / weightedCount;
+    }
+
+    // Value at fraction (0..1) of the samples, e.g. 0.99 for p99. Readers
+    // run unsynchronized against writers and may see a sample or two in flight.
+    long percentile(double fraction) {
+        long total = weightedCount;
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBound(i), maxNanos);
+        }
+        return maxNanos;
+    }
+
+    void reset() {
+        Arrays.fill(counts, 0);
+        samples = 0;
+        weightedCount = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+}
+
+// =========================================================
+// HOSPITAL METRICS (operation counters, latencies, queue gauges)
+// =========================================================
+//
+// Every facade operation is counted. Counters and histograms are plain
+// fields written under the component lock the operation already holds
+// (begin / end), so the hot path has no atomics. Two clock reads and a
+// histogram update cost more than a patient lookup, so frequent operations
+// are timed on a sample: each operation times every call at first and
+// halves its sampling rate each time its call count passes
+// SAMPLES_PER_STEP times the current interval, down to 1 in sampleEvery.
+// Rare operations (a treated emergency) keep every timing; millions of
+// lookups cost one timing per thousand calls. Operations that span several
+// components (queries, reports, exports, checkpoints) time every call and
+// use beginShared / endShared, which lock the operation's own stats.
+//
+// -Dhospital.metrics=false starts with recording off; it can be switched
+// at runtime through setEnabled or the Enabled JMX attribute.
+// -Dhospital.metrics.sampleEvery=N (power of two, lowest sampling rate, default 1024).
+public class HospitalMetrics {
+
+    public enum Operation {
+        ADD_PATIENT, SEARCH_PATIENT, UPDATE_PATIENT, DELETE_PATIENT, PATIENT_EXISTS,
+        LIST_PATIENTS, QUERY_PATIENTS,
+        ADD_EMERGENCY, TREAT_EMERGENCY, PEEK_EMERGENCY, LIST_EMERGENCY,
+        ADD_OPD, TREAT_OPD, PEEK_OPD, LIST_OPD,
+        ADD_RECORD, REMOVE_RECORD, LIST_RECORDS, CLEAR_HISTORY,
+        ADD_DEPARTMENT, REMOVE_DEPARTMENT, RENAME_DEPARTMENT, LIST_DEPARTMENTS, DEPARTMENT_EXISTS,
+        SYSTEM_REPORT, EXPORT, CHECKPOINT;
+
+        // JMX / dump name, e.g. ADD_PATIENT -> addPatient
+        String displayName() {
+            StringBuilder sb = new StringBuilder();
+            boolean upper = false;
+            for (char c : name().toLowerCase(Locale.ROOT).toCharArray()) {
+                if (c == '_') {
+                    upper = true;
+                } else {
+                    sb.append(upper ? Character.toUpperCase(c) : c);
+                    upper = false;
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    static final String OBJECT_NAME = "newpak:type=HospitalMetrics";
+
+    static final int SAMPLES_PER_STEP = 1024;
+
+
+    // Sampled latencies of one operation
+    static final class OperationStats {
+        final Operation operation;
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        OperationStats(Operation operation) {
+            this.operation = operation;
+        }
+    }
+
+    private final HospitalSystemLogic system;
+    private final OperationStats[] stats = new OperationStats[Operation.values().length];
+    // Per operation: calls until the next timed one (the only counter an
+    // untimed call touches, kept together so it stays in cache), the current
+    // sampling interval and the calls up to the last timed one
+    private final long[] countdown = new long[Operation.values().length];
+    private final long[] interval = new long[Operation.values().length];
+    private final long[] counted = new long[Operation.values().length];
+    private final int sampleEvery;
+    private volatile boolean enabled;
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    HospitalMetrics(HospitalSystemLogic system) {
+        this.system = system;
+        for (Operation op : Operation.values()) {
+            stats[op.ordinal()] = new OperationStats(op);
+        }
+        this.sampleEvery = Integer.highestOneBit(Math.max(1, Integer.getInteger("hospital.metrics.sampleEvery", 1024)));
+        resetCounters();
+        this.enabled = !"false".equals(System.getProperty("hospital.metrics"));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    // ---------------- Recording ----------------
+
+    // Caller holds the lock that guards op. Returns the start time when this
+    // call is sampled, 0 otherwise; pass it to end.
+    // An untimed call is one decrement. (A timed call that throws before end
+    // leaves the countdown at or below zero, so the next call is timed.)
+    long begin(Operation op) {
+        if (!enabled) return 0;
+        if (--countdown[op.ordinal()] > 0) return 0;
+        return System.nanoTime();
+    }
+
+    void end(Operation op, long start) {
+        if (start == 0) return;
+        long nanos = System.nanoTime() - start;
+        int i = op.ordinal();
+        long every = interval[i];
+        stats[i].latency.record(nanos, every);
+        counted[i] += every;
+        if (every < sampleEvery && counted[i] >= every * SAMPLES_PER_STEP) {
+            every *= 2;
+            interval[i] = every;
+        }
+        countdown[i] = every;
+    }
+
+    // For operations not guarded by a single component lock; every call is timed
+    long beginShared(Operation op) {
+        if (!enabled) return 0;
+        synchronized (stats[op.ordinal()]) {
+            counted[op.ordinal()]++;
+        }
+        return System.nanoTime();
+    }
+
+    void endShared(Operation op, long start) {
+        if (start == 0) return;
+        long nanos = System.nanoTime() - start;
+        OperationStats s = stats[op.ordinal()];
+        synchronized (s) {
+            s.latency.record(nanos, 1);
+        }
+    }
+
+    // ---------------- Reading ----------------
+
+    public long getCalls(Operation op) {
+        int i = op.ordinal();
+        return counted[i] + Math.max(0, interval[i] - countdown[i]);
+    }
+
+    public long getLatencyPercentileNanos(Operation op, double fraction) {
+        return stats[op.ordinal()].latency.percentile(fraction);
+    }
+
+    public int getEmergencyQueueDepth() {
+        return system.getEmergencyCount();
+    }
+
+    public int getOPDQueueDepth() {
+        return system.getOPDCount();
+    }
+
+    // Clears counters and histograms. Each operation's lock is not held, so a
+    // call in flight may land just before or after the reset.
+    public void reset() {
+        for (OperationStats s : stats) {
+            synchronized (s) {
+                s.latency.reset();
+            }
+        }
+        resetCounters();
+    }
+
+    private void resetCounters() {
+        Arrays.fill(countdown, 1);
+        Arrays.fill(interval, 1);
+        Arrays.fill(counted, 0);
+    }
+
+    // Plain-text table of every operation called so far, plus the gauges
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Hospital metrics (%s, frequent operations timed down to 1 in %d calls)%n",
+                enabled ? "enabled" : "disabled", getSampleEvery()));
+        sb.append(String.format("  Emergency queue depth: %d%n", getEmergencyQueueDepth()));
+        sb.append(String.format("  OPD queue depth:       %d%n", getOPDQueueDepth()));
+        sb.append(String.format("%-18s %12s %9s %10s %10s %10s %10s %10s%n",
+                "operation", "calls", "samples", "mean us", "p50 us", "p90 us", "p99 us", "max us"));
+        for (OperationStats s : stats) {
+            long calls = getCalls(s.operation);
+            if (calls == 0) continue;
+            LatencyHistogram h = s.latency;
+            sb.append(String.format(Locale.ROOT, "%-18s %12d %9d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                    s.operation.displayName(), calls, h.getSamples(), h.getMeanNanos() / 1e3,
+                    h.percentile(0.50) / 1e3, h.percentile(0.90) / 1e3, h.percentile(0.99) / 1e3,
+                    h.getMaxNanos() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    // ---------------- JMX ----------------
+
+    // newpak:type=HospitalMetrics (switch, gauges, dump / reset) and one
+    // newpak:type=HospitalMetrics,operation=<name> per operation. Skipped
+    // quietly when the names are taken (another instance in this JVM).
+    void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName root = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(root)) return;
+            server.registerMBean(new SystemBean(), root);
+            registered.add(root);
+            for (OperationStats s : stats) {
+                ObjectName name = new ObjectName(OBJECT_NAME + ",operation=" + s.operation.displayName());
+                server.registerMBean(new OperationBean(s), name);
+                registered.add(name);
+            }
+        } catch (JMException e) {
+            System.err.println("Metrics MBeans not registered: " + e);
+        }
+    }
+
+    void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ignored) {
+                // Already gone
+            }
+        }
+        registered.clear();
+    }
+
+    // Read-only long / int / boolean attributes, plus whatever a subclass adds
+    private abstract static class ReadOnlyBean implements DynamicMBean {
+        abstract String[] attributeNames();
+
+        abstract String attributeType(String name);
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                try {
+                    list.add(new Attribute(name, getAttribute(name)));
+                } catch (JMException ignored) {
+                    // Unknown names are left out, as the spec allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException {
+            throw new AttributeNotFoundException("Read-only attribute: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            AttributeList set = new AttributeList();
+            for (Attribute attribute : attributes.asList()) {
+                try {
+                    setAttribute(attribute);
+                    set.add(attribute);
+                } catch (JMException ignored) {
+                    // Not settable
+                }
+            }
+            return set;
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(action));
+        }
+
+        MBeanAttributeInfo[] attributeInfo(String writable) {
+            String[] names = attributeNames();
+            MBeanAttributeInfo[] info = new MBeanAttributeInfo[names.length];
+            for (int i = 0; i < names.length; i++) {
+                info[i] = new MBeanAttributeInfo(names[i], attributeType(names[i]), names[i],
+                        true, names[i].equals(writable), false);
+            }
+            return info;
+        }
+    }
+
+    private final class SystemBean extends ReadOnlyBean {
+        private final String[] names = {"Enabled", "SampleEvery", "EmergencyQueueDepth", "OPDQueueDepth"};
+
+        String[] attributeNames() {
+            return names;
+        }
+
+        String attributeType(String name) {
+            return name.equals("Enabled") ? "boolean" : "int";
+        }
+
+        @Override
+        public Object getAttribute(String name) throws AttributeNotFoundException {
+            switch (name) {
+                case "Enabled": return enabled;
+                case "SampleEvery": return getSampleEvery();
+                case "EmergencyQueueDepth": return getEmergencyQueueDepth();
+                case "OPDQueueDepth": return getOPDQueueDepth();
+                default: throw new AttributeNotFoundException(name);
+            }
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException {
+            if (!attribute.getName().equals("Enabled")) super.setAttribute(attribute);
+            if (!(attribute.getValue() instanceof Boolean)) {
+                throw new InvalidAttributeValueException("Enabled takes a boolean");
+            }
+            setEnabled((Boolean) attribute.getValue());
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            switch (action) {
+                case "dump": return dump();
+                case "reset": reset(); return null;
+                default: return super.invoke(action, params, signature);
+            }
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            MBeanOperationInfo[] ops = {
+                    new MBeanOperationInfo("dump", "Text table of all operations", new MBeanParameterInfo[0],
+                            "java.lang.String", MBeanOperationInfo.INFO),
+                    new MBeanOperationInfo("reset", "Clear counters and histograms", new MBeanParameterInfo[0],
+                            "void", MBeanOperationInfo.ACTION)
+            };
+            return new MBeanInfo(HospitalMetrics.class.getName(), "Hospital metrics",
+                    attributeInfo("Enabled"), null, ops, null);
+        }
+    }
+
+    private final class OperationBean extends ReadOnlyBean {
+        private static final String[] NAMES = {"Calls", "Samples", "MeanNanos", "P50Nanos", "P90Nanos", "P99Nanos", "MaxNanos"};
+        private final OperationStats stats;
+
+        OperationBean(OperationStats stats) {
+            this.stats = stats;
+        }
+
+        String[] attributeNames() {
+            return NAMES;
+        }
+
+        String attributeType(String name) {
+            return "long";
+        }
+
+        @Override
+        public Object getAttribute(String name) throws AttributeNotFoundException {
+            LatencyHistogram h = stats.latency;
+            switch (name) {
+                case "Calls": return getCalls(stats.operation);
+                case "Samples": return h.getSamples();
+                case "MeanNanos": return Math.round(h.getMeanNanos());
+                case "P50Nanos": return h.percentile(0.50);
+                case "P90Nanos": return h.percentile(0.90);
+                case "P99Nanos": return h.percentile(0.99);
+                case "MaxNanos": return h.getMaxNanos();
+                default: throw new AttributeNotFoundException(name);
+            }
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return new MBeanInfo(HospitalMetrics.class.getName(), "Hospital operation " + stats.operation.displayName(),
+                    attributeInfo(null), null, null, null);
+        }
+    }
+}
@@ -0,0 +1,569 @@
+package newpak;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+// =========================================================
+// HOSPITAL MICRO BENCHMARKS (per data structure, JMH-style)
+// =========================================================
+//
+// Usage:
+//   java newpak.HospitalMicroBenchmarks run [sizes] [results.tsv]
+//   java newpak.HospitalMicroBenchmarks compare <baseline.tsv> [sizes]
+// sizes: comma separated entry counts (default 10000,1000000; 10000000
+// needs -Xmx4g).
+//
+// Each benchmark keeps its structure at a steady size (an add is paired
+// with a delete, a treat-next with an admit), so every measured operation
+// sees the same N. Per benchmark and size: WARMUP_ITERATIONS, then
+// MEASURE_ITERATIONS timed windows of ITERATION_MS. Reported: ops/s mean
+// with a 99.9% confidence interval, bytes allocated per op (this thread)
+// and GC collections / time during measurement. Results are tab separated,
+// so a baseline file can be kept and compared against.
+//
+// JMH is not a dependency of this project, so the harness does two of its
+// jobs itself. Every benchmark and size runs in a fresh JVM (same JVM
+// options; -Dbench.fork=false runs them in-process), so the op call site
+// only ever sees one Benchmark class and no benchmark inherits another's
+// JIT profile or heap. Each op returns a primitive derived from its result,
+// which the timing loop sums into a local; see sink.
+public class HospitalMicroBenchmarks {
+    static final int WARMUP_ITERATIONS = Integer.getInteger("bench.warmup", 3);
+    // Five half-second windows gave error bars as wide as the mean for
+    // GC-heavy rows, which then could never be flagged as regressions
+    static final int MEASURE_ITERATIONS = Integer.getInteger("bench.iterations", 15);
+    static final long ITERATION_MS = Long.getLong("bench.iterationMs", 1000L);
+    static final double REGRESSION_THRESHOLD = 0.10;
+
+    static final String[] GENDERS = HospitalBenchmarks.GENDERS;
+    static final String[] DISEASES = HospitalBenchmarks.DISEASES;
+    static final String[] DEPARTMENTS = {"Cardiology", "Neurology", "Orthopedics", "Pediatrics", "General"};
+
+    static final boolean FORK = Boolean.parseBoolean(System.getProperty("bench.fork", "true"));
+
+    // Each window's sum of op results is stored here once: a plain field
+    // write the JIT cannot drop, and no volatile store inside the timed loop
+    static long sink;
+
+    // ==================== BENCHMARK DEFINITION ====================
+
+    // setup builds the state for one size; op runs operation number i and
+    // returns something computed from its result
+    abstract static class Benchmark {
+        final String name;
+
+        Benchmark(String name) {
+            this.name = name;
+        }
+
+        abstract void setup(int size);
+
+        abstract long op(int i);
+
+        void tearDown() { }
+    }
+
+    static List<Benchmark> benchmarks() {
+        List<Benchmark> list = new ArrayList<>();
+
+        // ---------------- PatientManagement (linked list + ID map) ----------------
+        list.add(new PatientBenchmark("patients.search") {
+            long op(int i) { return patients.searchPatient(FIRST_ID + random(i, size)).getPatientAge(); }
+        });
+        list.add(new PatientBenchmark("patients.update") {
+            long op(int i) {
+                int n = random(i, size);
+                return patients.updatePatient(FIRST_ID + n, "Patient " + n, 1 + i % 100,
+                        GENDERS[n % 3], DISEASES[i % DISEASES.length], "0300" + n) ? 1 : 0;
+            }
+        });
+        list.add(new PatientBenchmark("patients.addDelete") {
+            long op(int i) {
+                int id = FIRST_ID + size + i;
+                patients.addPatient(id, "New " + i, 40, "Female", "Asthma", "0311");
+                return patients.deletePatient(id) ? 1 : 0;
+            }
+        });
+        list.add(new PatientBenchmark("patients.exists.miss") {
+            long op(int i) { return patients.patientExists(-1 - i) ? 1 : 0; }
+        });
+        list.add(new PatientBenchmark("patients.list") {
+            long op(int i) { return patients.getAllPatients().size(); }
+        });
+
+        // ---------------- EmergencyManagement (priority queue) ----------------
+        list.add(new Benchmark("emergency.admitTreatNext") {
+            EmergencyManagement emergency;
+
+            void setup(int size) {
+                emergency = new EmergencyManagement(size + 1);
+                for (int i = 0; i < size; i++) {
+                    emergency.admitPatient(new EmergencyPatient(i, "E" + i, 1 + random(i, 3), "Trauma", i));
+                }
+            }
+
+            long op(int i) {
+                emergency.admitPatient(new EmergencyPatient(i, "E", 1 + random(i, 3), "Trauma", 1_000_000_000L + i));
+                return emergency.treatNextPatient().getPatientId();
+            }
+        });
+        list.add(new Benchmark("emergency.list") {
+            EmergencyManagement emergency;
+
+            void setup(int size) {
+                emergency = new EmergencyManagement(size);
+                for (int i = 0; i < size; i++) {
+                    emergency.admitPatient(new EmergencyPatient(i, "E" + i, 1 + random(i, 3), "Trauma", i));
+                }
+            }
+
+            long op(int i) { return emergency.getAllEmergencyPatients().size(); }
+        });
+
+        // ---------------- OPDManagement (circular queue) ----------------
+        list.add(new Benchmark("opd.addCallNext") {
+            OPDManagement opd;
+
+            void setup(int size) {
+                opd = new OPDManagement(size + 1);
+                for (int i = 0; i < size; i++) opd.addOPDPatient(i, "O" + i, DEPARTMENTS[i % DEPARTMENTS.length]);
+            }
+
+            long op(int i) {
+                opd.addOPDPatient(i, "O", DEPARTMENTS[i % DEPARTMENTS.length]);
+                return opd.treatNextPatient().getTokenNumber();
+            }
+        });
+        list.add(new Benchmark("opd.list") {
+            OPDManagement opd;
+
+            void setup(int size) {
+                opd = new OPDManagement(size);
+                for (int i = 0; i < size; i++) opd.addOPDPatient(i, "O" + i, DEPARTMENTS[i % DEPARTMENTS.length]);
+            }
+
+            long op(int i) { return opd.getAllOPDPatients().size(); }
+        });
+
+        // ---------------- MedicalHistoryManagement (stack) ----------------
+        list.add(new Benchmark("history.addRemoveLatest") {
+            MedicalHistoryManagement history;
+
+            void setup(int size) {
+                history = new MedicalHistoryManagement(size + 1);
+                for (int i = 0; i < size; i++) history.restoreRecord("2026-01-01 10:00:00 - Record " + i);
+            }
+
+            long op(int i) {
+                history.addMedicalRecord("Follow-up");
+                return history.removeLatestRecord().length();
+            }
+        });
+        list.add(new Benchmark("history.list") {
+            MedicalHistoryManagement history;
+
+            void setup(int size) {
+                history = new MedicalHistoryManagement(size);
+                for (int i = 0; i < size; i++) history.restoreRecord("2026-01-01 10:00:00 - Record " + i);
+            }
+
+            long op(int i) { return history.getAllRecords().size(); }
+        });
+
+        // ---------------- DepartmentManagement (binary search tree) ----------------
+        list.add(new DepartmentBenchmark("departments.search") {
+            long op(int i) { return departments.departmentExists(names[random(i, names.length)]) ? 1 : 0; }
+        });
+        list.add(new DepartmentBenchmark("departments.addRemove") {
+            long op(int i) {
+                String name = "Extra " + i;
+                departments.addDepartment(name);
+                return departments.removeDepartment(name) ? 1 : 0;
+            }
+        });
+        list.add(new DepartmentBenchmark("departments.list") {
+            long op(int i) { return departments.getAllDepartments().size(); }
+        });
+
+        // ---------------- Export (whole registry, CSV) ----------------
+        list.add(new Benchmark("export.csv") {
+            HospitalSystemLogic system;
+            Path file;
+
+            void setup(int size) {
+                system = new HospitalSystemLogic(false);
+                PatientManagement patients = system.getPatientManagement();
+                for (int i = 0; i < size; i++) {
+                    patients.addPatient(FIRST_ID + i, "Patient " + i, 1 + i % 100, GENDERS[i % 3],
+                            DISEASES[i % DISEASES.length], "0300" + i);
+                }
+                try {
+                    file = Files.createTempFile("hospital-bench", ".csv");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            long op(int i) {
+                try {
+                    return HospitalExport.export(system, HospitalExport.Dataset.PATIENTS, HospitalExport.CSV, file, 1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            void tearDown() {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                system = null;
+            }
+        });
+        return list;
+    }
+
+    static final int FIRST_ID = 100_000;
+
+    abstract static class PatientBenchmark extends Benchmark {
+        PatientManagement patients;
+        int size;
+
+        PatientBenchmark(String name) {
+            super(name);
+        }
+
+        void setup(int size) {
+            this.size = size;
+            patients = new PatientManagement();
+            for (int i = 0; i < size; i++) {
+                patients.addPatient(FIRST_ID + i, "Patient " + i, 1 + i % 100, GENDERS[i % 3],
+                        DISEASES[i % DISEASES.length], "0300" + i);
+            }
+        }
+
+        void tearDown() {
+            patients = null;
+        }
+    }
+
+    // Names inserted in random order, so the (unbalanced) tree stays shallow
+    abstract static class DepartmentBenchmark extends Benchmark {
+        DepartmentManagement departments;
+        String[] names;
+
+        DepartmentBenchmark(String name) {
+            super(name);
+        }
+
+        void setup(int size) {
+            departments = new DepartmentManagement();
+            names = new String[size];
+            for (int i = 0; i < size; i++) names[i] = "Department " + i;
+            List<String> shuffled = new ArrayList<>(Arrays.asList(names));
+            Collections.shuffle(shuffled, new Random(42));
+            for (String name : shuffled) departments.addDepartment(name);
+        }
+
+        void tearDown() {
+            departments = null;
+        }
+    }
+
+    // Cheap deterministic pseudo-random index in [0, bound)
+    static int random(int i, int bound) {
+        long x = (i + 1) * 0x9E3779B97F4A7C15L;
+        x ^= x >>> 29;
+        return (int) Math.floorMod(x, (long) bound);
+    }
+
+    // ==================== HARNESS ====================
+
+    static final class Result {
+        final String benchmark;
+        final int size;
+        final double opsPerSecond;
+        final double error;          // 99.9% confidence half-width
+        final double bytesPerOp;
+        final long gcCount;
+        final long gcMillis;
+
+        Result(String benchmark, int size, double opsPerSecond, double error,
+               double bytesPerOp, long gcCount, long gcMillis) {
+            this.benchmark = benchmark;
+            this.size = size;
+            this.opsPerSecond = opsPerSecond;
+            this.error = error;
+            this.bytesPerOp = bytesPerOp;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        String key() {
+            return benchmark + "@" + size;
+        }
+
+        String toLine() {
+            return String.format(Locale.ROOT, "%s\t%d\t%.1f\t%.1f\t%.1f\t%d\t%d",
+                    benchmark, size, opsPerSecond, error, bytesPerOp, gcCount, gcMillis);
+        }
+
+        static Result parse(String line) {
+            String[] f = line.split("\t");
+            return new Result(f[0], Integer.parseInt(f[1]), Double.parseDouble(f[2]), Double.parseDouble(f[3]),
+                    Double.parseDouble(f[4]), Long.parseLong(f[5]), Long.parseLong(f[6]));
+        }
+    }
+
+    static final String HEADER = "benchmark\tsize\tops_per_s\terror_99_9\tbytes_per_op\tgc_count\tgc_ms";
+
+    static Result measure(Benchmark benchmark, int size) {
+        benchmark.setup(size);
+        try {
+            int next = 0;
+            for (int w = 0; w < WARMUP_ITERATIONS; w++) {
+                next = iteration(benchmark, next, new long[1]);
+            }
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long gcCount = -gcCount();
+            long gcMillis = -gcMillis();
+            long allocated = -threads.getCurrentThreadAllocatedBytes();
+            long totalOps = 0;
+            double[] rates = new double[MEASURE_ITERATIONS];
+            for (int m = 0; m < MEASURE_ITERATIONS; m++) {
+                long[] nanos = new long[1];
+                int before = next;
+                next = iteration(benchmark, next, nanos);
+                int ops = next - before;
+                totalOps += ops;
+                rates[m] = ops / (nanos[0] / 1e9);
+            }
+            allocated += threads.getCurrentThreadAllocatedBytes();
+            gcCount += gcCount();
+            gcMillis += gcMillis();
+            return new Result(benchmark.name, size, mean(rates), confidence(rates),
+                    (double) allocated / totalOps, gcCount, gcMillis);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    // Runs ops for ITERATION_MS; returns the next op index. The clock is read
+    // after batches that grow until they take ~10 us, so reading it costs
+    // little for fast ops and slow ops do not overshoot the window.
+    private static int iteration(Benchmark benchmark, int next, long[] nanos) {
+        long start = System.nanoTime();
+        long deadline = start + ITERATION_MS * 1_000_000;
+        long now = start;
+        int batch = 1;
+        long sum = 0;
+        do {
+            long batchStart = now;
+            for (int k = 0; k < batch; k++) {
+                sum += benchmark.op(next++);
+            }
+            now = System.nanoTime();
+            if (now - batchStart < 10_000 && batch < 1024) batch <<= 1;
+        } while (now < deadline);
+        sink += sum;
+        nanos[0] = now - start;
+        return next;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += gc.getCollectionCount();
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) millis += gc.getCollectionTime();
+        return millis;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) sum += v;
+        return sum / values.length;
+    }
+
+    // Student t (two-sided 99.9%) times the standard error, like JMH's error column
+    private static double confidence(double[] values) {
+        int n = values.length;
+        if (n < 2) return Double.NaN;
+        double mean = mean(values);
+        double squares = 0;
+        for (double v : values) squares += (v - mean) * (v - mean);
+        double[] t = {636.6, 31.6, 12.9, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59,
+                4.44, 4.32, 4.22, 4.14, 4.07, 4.01, 3.97, 3.92, 3.88, 3.85,
+                3.82, 3.79, 3.77, 3.75, 3.73, 3.71, 3.69, 3.67, 3.66, 3.65};
+        double quantile = n - 1 <= t.length ? t[n - 2] : 3.29;
+        return quantile * Math.sqrt(squares / (n - 1)) / Math.sqrt(n);
+    }
+
+    // ==================== MAIN ====================
+
+    public static void main(String[] args) throws IOException {
+        String mode = args.length > 0 ? args[0] : "run";
+        switch (mode) {
+            case "run" -> {
+                int[] sizes = parseSizes(args.length > 1 ? args[1] : "10000,1000000");
+                List<Result> results = runAll(sizes);
+                if (args.length > 2) {
+                    write(Paths.get(args[2]), results);
+                    System.out.println("Results written to " + args[2]);
+                }
+            }
+            case "compare" -> {
+                if (args.length < 2) {
+                    System.out.println("Usage: compare <baseline.tsv> [sizes]");
+                    return;
+                }
+                Map<String, Result> baseline = read(Paths.get(args[1]));
+                int[] sizes = parseSizes(args.length > 2 ? args[2] : "10000,1000000");
+                compare(baseline, runAll(sizes));
+            }
+            case "fork" -> {
+                // Child JVM of runAll: one benchmark at one size, the result line on stdout
+                Result r = measure(benchmark(args[1]), Integer.parseInt(args[2]));
+                System.out.println(r.toLine());
+            }
+            default -> System.out.println("Unknown mode: " + mode);
+        }
+    }
+
+    static List<Result> runAll(int[] sizes) {
+        List<Result> results = new ArrayList<>();
+        System.out.printf("%-26s %10s %14s %12s %12s %6s %8s%n",
+                "Benchmark", "Size", "ops/s", "error", "B/op", "gc", "gc ms");
+        for (Benchmark benchmark : benchmarks()) {
+            for (int size : sizes) {
+                Result r;
+                if (FORK) {
+                    r = fork(benchmark.name, size);
+                } else {
+                    System.gc();
+                    r = measure(benchmark, size);
+                }
+                if (r == null) {
+                    System.out.printf("%-26s %10d  failed, see above%n", benchmark.name, size);
+                    continue;
+                }
+                results.add(r);
+                System.out.printf(Locale.ROOT, "%-26s %10d %14.1f %12.1f %12.1f %6d %8d%n",
+                        r.benchmark, r.size, r.opsPerSecond, r.error, r.bytesPerOp, r.gcCount, r.gcMillis);
+            }
+        }
+        return results;
+    }
+
+    static Benchmark benchmark(String name) {
+        for (Benchmark benchmark : benchmarks()) {
+            if (benchmark.name.equals(name)) return benchmark;
+        }
+        throw new IllegalArgumentException("Unknown benchmark: " + name);
+    }
+
+    // Runs one benchmark in a new JVM with this JVM's options; null when the
+    // child fails (its error output goes to ours)
+    static Result fork(String name, int size) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(HospitalMicroBenchmarks.class.getName());
+        command.add("fork");
+        command.add(name);
+        command.add(String.valueOf(size));
+        try {
+            Process child = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            String last = null;
+            try (java.io.BufferedReader out = new java.io.BufferedReader(
+                    new java.io.InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8))) {
+                for (String line; (line = out.readLine()) != null; ) last = line;
+            }
+            return child.waitFor() == 0 && last != null ? Result.parse(last) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // A change counts as a regression when it is slower than the baseline by
+    // more than REGRESSION_THRESHOLD and more than both error bars together
+    static void compare(Map<String, Result> baseline, List<Result> current) {
+        System.out.println();
+        System.out.printf("%-26s %10s %14s %14s %9s%n", "Benchmark", "Size", "baseline", "current", "change");
+        int regressions = 0;
+        for (Result r : current) {
+            Result base = baseline.get(r.key());
+            if (base == null) {
+                System.out.printf("%-26s %10d %14s %14.1f %9s%n", r.benchmark, r.size, "-", r.opsPerSecond, "new");
+                continue;
+            }
+            double change = (r.opsPerSecond - base.opsPerSecond) / base.opsPerSecond;
+            boolean regressed = change < -REGRESSION_THRESHOLD
+                    && base.opsPerSecond - r.opsPerSecond > base.error + r.error;
+            if (regressed) regressions++;
+            System.out.printf(Locale.ROOT, "%-26s %10d %14.1f %14.1f %+8.1f%%%s%n", r.benchmark, r.size,
+                    base.opsPerSecond, r.opsPerSecond, change * 100, regressed ? "  REGRESSION" : "");
+        }
+        System.out.println(regressions == 0 ? "No regressions" : regressions + " regression(s)");
+    }
+
+    static int[] parseSizes(String text) {
+        return Arrays.stream(text.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    static void write(Path file, List<Result> results) throws IOException {
+        List<String> lines = new ArrayList<>();
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        lines.add("# " + cpuModel() + ", " + Runtime.getRuntime().availableProcessors() + " cpu, "
+                + os.getTotalMemorySize() / (1 << 20) + " MB RAM, " + System.getProperty("os.name")
+                + " " + System.getProperty("os.version") + " " + System.getProperty("os.arch"));
+        lines.add("# " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                + ", max heap " + Runtime.getRuntime().maxMemory() / (1 << 20) + " MB, "
+                + (FORK ? "one JVM per benchmark and size, " : "one JVM, ")
+                + MEASURE_ITERATIONS + " x " + ITERATION_MS + " ms after " + WARMUP_ITERATIONS + " warmup");
+        lines.add(HEADER);
+        for (Result r : results) lines.add(r.toLine());
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    // "model name" from /proc/cpuinfo where there is one
+    private static String cpuModel() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/cpuinfo"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("model name")) return line.substring(line.indexOf(':') + 1).trim();
+            }
+        } catch (IOException e) {
+            // not Linux
+        }
+        return System.getProperty("os.arch");
+    }
+
+    static Map<String, Result> read(Path file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#") || line.startsWith("benchmark\t")) continue;
+            Result r = Result.parse(line);
+            results.put(r.key(), r);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,605 @@
+package newpak;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// =========================================================
+// WRITE-AHEAD LOG (append-only, CRC protected records)
+// =========================================================
+//
+// Record layout:  [int length][long lsn][byte op][payload...][int crc32]
+// "length" covers lsn + op + payload. A torn or corrupt tail is cut off
+// on recovery, everything before it is replayed.
+class WriteAheadLog implements Closeable {
+
+    interface RecordHandler {
+        void apply(long lsn, byte op, DataInputStream in) throws IOException;
+    }
+
+    // Sees every committed record (lsn + op + payload, and its crc), e.g. for replication
+    interface RecordTap {
+        void onRecord(long lsn, byte[] record, int length, int crc);
+    }
+
+    private static final int STAGING_SIZE = 64 * 1024;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private final Path file;
+    private FileChannel channel;
+    private final ByteBuffer staging = ByteBuffer.allocate(STAGING_SIZE);
+    private final RecordOutput record = new RecordOutput();
+    private final DataOutputStream out = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+
+    // fsync batching: force after N records or after the interval, whichever first
+    private final int syncEvery;
+    private final long syncIntervalNanos;
+    private int unsynced;
+    private long lastSyncNanos;
+    private long nextLsn;
+    private RecordTap tap;
+
+    WriteAheadLog(Path file, int syncEvery, long syncIntervalMillis) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.syncEvery = Math.max(1, syncEvery);
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.lastSyncNanos = System.nanoTime();
+        this.nextLsn = 1;
+    }
+
+    // ---------------- Append ----------------
+    synchronized DataOutputStream begin(byte op) throws IOException {
+        record.reset();
+        out.writeLong(nextLsn);
+        out.writeByte(op);
+        return out;
+    }
+
+    synchronized long commit() throws IOException {
+        int length = record.size();
+        crc.reset();
+        crc.update(record.buffer(), 0, length);
+
+        if (staging.remaining() < length + 8) {
+            drain();
+        }
+        if (length + 8 > staging.capacity()) {
+            // Oversized record: write straight through
+            ByteBuffer big = ByteBuffer.allocate(length + 8);
+            big.putInt(length).put(record.buffer(), 0, length).putInt((int) crc.getValue());
+            big.flip();
+            while (big.hasRemaining()) channel.write(big);
+        } else {
+            staging.putInt(length).put(record.buffer(), 0, length).putInt((int) crc.getValue());
+        }
+
+        if (tap != null) {
+            tap.onRecord(nextLsn, record.buffer(), length, (int) crc.getValue());
+        }
+        long lsn = nextLsn++;
+        unsynced++;
+        if (unsynced >= syncEvery || System.nanoTime() - lastSyncNanos >= syncIntervalNanos) {
+            sync();
+        }
+        return lsn;
+    }
+
+    // Writes the staging buffer and forces it to stable storage
+    synchronized void sync() throws IOException {
+        drain();
+        if (unsynced > 0) {
+            channel.force(false);
+            unsynced = 0;
+        }
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private void drain() throws IOException {
+        staging.flip();
+        while (staging.hasRemaining()) channel.write(staging);
+        staging.clear();
+    }
+
+    // Log position after the last committed record (staging written out)
+    synchronized long syncedPosition() throws IOException {
+        sync();
+        return channel.position();
+    }
+
+    // Drops the records before position (a snapshot now covers them) and
+    // keeps the ones appended since. The kept tail goes to a new file that
+    // is forced and renamed over the log, so a crash leaves either log whole.
+    synchronized void truncateBefore(long position) throws IOException {
+        sync();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel tail = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long end = channel.size();
+            for (long at = position; at < end; ) {
+                at += channel.transferTo(at, end - at, tail);
+            }
+            tail.force(true);
+        }
+        channel.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    // Drops every record (called once a snapshot covers them)
+    synchronized void truncate() throws IOException {
+        sync();
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    synchronized long getNextLsn() { return nextLsn; }
+
+    synchronized void setNextLsn(long nextLsn) { this.nextLsn = nextLsn; }
+
+    synchronized void setTap(RecordTap tap) { this.tap = tap; }
+
+    // ---------------- Recovery ----------------
+    // Replays records with lsn > afterLsn, truncates a torn tail, returns the last lsn seen
+    synchronized long replay(long afterLsn, RecordHandler handler) throws IOException {
+        channel.position(0);
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel), STAGING_SIZE));
+        RecordInput body = new RecordInput();
+        DataInputStream bodyIn = new DataInputStream(body);
+        byte[] bytes = new byte[256];
+        long validEnd = 0;
+        long lastLsn = afterLsn;
+
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException eof) {
+                break;
+            }
+            if (length < 9 || length > MAX_RECORD_SIZE) break;
+            if (bytes.length < length) bytes = new byte[Math.max(length, bytes.length * 2)];
+            int storedCrc;
+            try {
+                in.readFully(bytes, 0, length);
+                storedCrc = in.readInt();
+            } catch (EOFException torn) {
+                break;
+            }
+            crc.reset();
+            crc.update(bytes, 0, length);
+            if ((int) crc.getValue() != storedCrc) break;
+
+            body.reset(bytes, length);
+            long lsn = bodyIn.readLong();
+            byte op = bodyIn.readByte();
+            if (lsn > afterLsn) {
+                handler.apply(lsn, op, bodyIn);
+            }
+            lastLsn = Math.max(lastLsn, lsn);
+            validEnd += length + 8;
+        }
+
+        if (channel.size() > validEnd) {
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+        nextLsn = lastLsn + 1;
+        return lastLsn;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    // Growable byte buffer exposing its backing array (no copy on commit)
+    private static class RecordOutput extends ByteArrayOutputStream {
+        RecordOutput() { super(256); }
+        byte[] buffer() { return buf; }
+    }
+
+    // Re-pointable byte array stream so one DataInputStream serves every record
+    private static class RecordInput extends ByteArrayInputStream {
+        RecordInput() { super(new byte[0]); }
+        void reset(byte[] bytes, int length) {
+            buf = bytes;
+            pos = 0;
+            count = length;
+            mark = 0;
+        }
+    }
+}
+
+// =========================================================
+// HOSPITAL PERSISTENCE (log every mutation + periodic snapshots)
+// =========================================================
+public class HospitalPersistence {
+    // Log operation codes (never renumber, they are on disk)
+    static final byte OP_ADD_PATIENT = 1;
+    static final byte OP_UPDATE_PATIENT = 2;
+    static final byte OP_DELETE_PATIENT = 3;
+    static final byte OP_ADD_EMERGENCY = 4;
+    static final byte OP_TREAT_EMERGENCY = 5;
+    static final byte OP_ADD_OPD = 6;
+    static final byte OP_TREAT_OPD = 7;
+    static final byte OP_ADD_RECORD = 8;
+    static final byte OP_REMOVE_RECORD = 9;
+    static final byte OP_CLEAR_HISTORY = 10;
+    static final byte OP_ADD_DEPARTMENT = 11;
+    static final byte OP_REMOVE_DEPARTMENT = 12;
+    static final byte OP_RENAME_DEPARTMENT = 13;
+    static final byte OP_ARCHIVE_PATIENT = 14;
+    static final byte OP_ARCHIVE_RECORDS = 15;
+    static final byte OP_ADD_OPD_AT = 16;   // OP_ADD_OPD plus the arrival time
+
+    // Configuration (system properties)
+    private static final int SYNC_EVERY = Integer.getInteger("hospital.wal.syncEvery", 64);
+    private static final long SYNC_INTERVAL_MS = Long.getLong("hospital.wal.syncIntervalMs", 200L);
+    private static final int SNAPSHOT_EVERY = Integer.getInteger("hospital.snapshotEvery", 100_000);
+
+    private final HospitalSystemLogic system;
+    private final Path snapshotFile;
+    private final WriteAheadLog wal;
+    private final ScheduledExecutorService syncer;
+    private boolean replaying;
+    private int recordsSinceSnapshot;
+    private boolean snapshotScheduled;
+
+    private HospitalPersistence(Path dir, HospitalSystemLogic system) throws IOException {
+        Files.createDirectories(dir);
+        this.system = system;
+        this.snapshotFile = dir.resolve("snapshot.bin");
+        this.wal = new WriteAheadLog(dir.resolve("wal.log"), SYNC_EVERY, SYNC_INTERVAL_MS);
+
+        // Bounds the loss window when the record-count trigger is not reached
+        this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hospital-wal-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(this::flush, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "hospital-wal-close"));
+    }
+
+    static HospitalPersistence open(Path dir, HospitalSystemLogic system) {
+        try {
+            return new HospitalPersistence(dir, system);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open data directory " + dir, e);
+        }
+    }
+
+    // ---------------- Recovery ----------------
+    // Snapshot first, then every newer log record. False when the directory is empty.
+    synchronized boolean recover() {
+        try {
+            boolean found = Files.exists(snapshotFile);
+            long snapshotLsn = found ? HospitalSnapshot.read(system, snapshotFile) : 0;
+
+            replaying = true;
+            long lastLsn;
+            try {
+                lastLsn = wal.replay(snapshotLsn, this::apply);
+            } finally {
+                replaying = false;
+            }
+            recordsSinceSnapshot = (int) Math.min(Integer.MAX_VALUE, lastLsn - snapshotLsn);
+            return found || lastLsn > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Recovery failed", e);
+        }
+    }
+
+    private void apply(long lsn, byte op, DataInputStream in) throws IOException {
+        apply(system, lsn, op, in);
+    }
+
+    // Re-executes one logged mutation through the facade. Used for recovery
+    // (logging suppressed) and by replicas, which have no log of their own.
+    static void apply(HospitalSystemLogic system, long lsn, byte op, DataInputStream in) throws IOException {
+        switch (op) {
+            case OP_ADD_PATIENT -> system.addPatient(in.readInt(), readString(in), in.readInt(),
+                    readString(in), readString(in), readString(in));
+            case OP_UPDATE_PATIENT -> system.updatePatient(in.readInt(), readString(in), in.readInt(),
+                    readString(in), readString(in), readString(in));
+            case OP_DELETE_PATIENT -> system.deletePatient(in.readInt());
+            case OP_ADD_EMERGENCY -> system.admitEmergencyPatient(new EmergencyPatient(
+                    in.readInt(), readString(in), in.readInt(), readString(in), in.readLong()));
+            case OP_TREAT_EMERGENCY -> system.treatNextEmergencyPatient();
+            case OP_ADD_OPD -> system.addOPDPatient(in.readInt(), readString(in), readString(in));
+            case OP_ADD_OPD_AT -> system.addOPDPatient(in.readInt(), readString(in), readString(in), in.readLong());
+            case OP_TREAT_OPD -> system.treatNextOPDPatient();
+            case OP_ADD_RECORD -> system.restoreMedicalRecord(readString(in));
+            case OP_REMOVE_RECORD -> system.removeLatestRecord();
+            case OP_CLEAR_HISTORY -> system.clearMedicalHistory();
+            case OP_ADD_DEPARTMENT -> system.addDepartment(readString(in));
+            case OP_REMOVE_DEPARTMENT -> system.removeDepartment(readString(in));
+            case OP_RENAME_DEPARTMENT -> system.updateDepartmentName(readString(in), readString(in));
+            case OP_ARCHIVE_PATIENT -> system.removeArchivedPatient(in.readInt());
+            case OP_ARCHIVE_RECORDS -> system.removeArchivedRecords(in.readInt());
+            default -> throw new IOException("Unknown log operation " + op + " at lsn " + lsn);
+        }
+    }
+
+    // ---------------- Checkpoint ----------------
+    // Two phases, so operations only wait while the cut is taken:
+    //   capture (every component lock held): note the last LSN and where the
+    //     log ends, stream the state into an unforced temp file
+    //   publish (no lock but checkpointLock): write queued discharges, force and
+    //     rename the snapshot, drop the log records it covers
+    // Records logged meanwhile have higher LSNs and stay in the log.
+    private final Object checkpointLock = new Object();
+
+    private static final class Cut {
+        final long lsn;
+        final long logPosition;
+        final Path snapshot;
+
+        Cut(long lsn, long logPosition, Path snapshot) {
+            this.lsn = lsn;
+            this.logPosition = logPosition;
+            this.snapshot = snapshot;
+        }
+    }
+
+    // runLocked runs its argument with every component lock held
+    void checkpoint(java.util.function.Consumer<Runnable> runLocked) {
+        synchronized (checkpointLock) {
+            Cut[] cut = new Cut[1];
+            runLocked.accept(() -> cut[0] = capture());
+            publish(cut[0]);
+        }
+    }
+
+    // For callers that already hold every component lock, or run alone
+    void checkpoint() {
+        checkpoint(Runnable::run);
+    }
+
+    private synchronized Cut capture() {
+        try {
+            long position = wal.syncedPosition();
+            long lsn = wal.getNextLsn() - 1;
+            Path tmp = HospitalSnapshot.capture(system, lsn, snapshotFile);
+            return new Cut(lsn, position, tmp);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Checkpoint failed", e);
+        }
+    }
+
+    private void publish(Cut cut) {
+        try {
+            // Discharges queued before the cut must be archived before the snapshot drops them
+            HospitalArchive archive = system.getArchive();
+            if (archive != null) {
+                archive.flushPending();
+            }
+            HospitalSnapshot.publish(cut.snapshot, snapshotFile);
+            wal.truncateBefore(cut.logPosition);
+            synchronized (this) {
+                recordsSinceSnapshot = (int) Math.min(Integer.MAX_VALUE, wal.getNextLsn() - 1 - cut.lsn);
+                snapshotScheduled = false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Checkpoint failed", e);
+        }
+    }
+
+    // True while recover() re-applies log records
+    boolean isReplaying() {
+        return replaying;
+    }
+
+    // Continues the LSN sequence of another log (promoted replica): the
+    // current log is dropped and the next record gets lastLsn + 1
+    synchronized void restartAt(long lastLsn) {
+        try {
+            wal.truncate();
+            wal.setNextLsn(lastLsn + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Log reset failed", e);
+        }
+    }
+
+    long getLastLsn() {
+        return wal.getNextLsn() - 1;
+    }
+
+    void setReplicationTap(WriteAheadLog.RecordTap tap) {
+        wal.setTap(tap);
+    }
+
+    synchronized void flush() {
+        try {
+            wal.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Log flush failed", e);
+        }
+    }
+
+    synchronized void close() {
+        syncer.shutdown();
+        try {
+            wal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Log close failed", e);
+        }
+    }
+
+    // ---------------- Log Writers ----------------
+    synchronized void logAddPatient(int id, String name, int age, String gender, String disease, String contact) {
+        logPatient(OP_ADD_PATIENT, id, name, age, gender, disease, contact);
+    }
+
+    synchronized void logUpdatePatient(int id, String name, int age, String gender, String disease, String contact) {
+        logPatient(OP_UPDATE_PATIENT, id, name, age, gender, disease, contact);
+    }
+
+    private void logPatient(byte op, int id, String name, int age, String gender, String disease, String contact) {
+        if (replaying) return;
+        try {
+            DataOutputStream out = wal.begin(op);
+            out.writeInt(id);
+            writeString(out, name);
+            out.writeInt(age);
+            writeString(out, gender);
+            writeString(out, disease);
+            writeString(out, contact);
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void logDeletePatient(int id) {
+        logInt(OP_DELETE_PATIENT, id);
+    }
+
+    // Written once the patient's archive segment is on disk
+    synchronized void logArchivePatient(int id) {
+        logInt(OP_ARCHIVE_PATIENT, id);
+    }
+
+    synchronized void logArchiveRecords(int count) {
+        logInt(OP_ARCHIVE_RECORDS, count);
+    }
+
+    private void logInt(byte op, int value) {
+        if (replaying) return;
+        try {
+            wal.begin(op).writeInt(value);
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void logAddEmergencyPatient(EmergencyPatient patient) {
+        if (replaying) return;
+        try {
+            DataOutputStream out = wal.begin(OP_ADD_EMERGENCY);
+            out.writeInt(patient.getPatientId());
+            writeString(out, patient.getPatientName());
+            out.writeInt(patient.getPriority());
+            writeString(out, patient.getCondition());
+            out.writeLong(patient.getArrivalTime());
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void logTreatNextEmergencyPatient() {
+        logEmpty(OP_TREAT_EMERGENCY);
+    }
+
+    synchronized void logAddOPDPatient(int id, String name, String department, long arrivalTime) {
+        if (replaying) return;
+        try {
+            DataOutputStream out = wal.begin(OP_ADD_OPD_AT);
+            out.writeInt(id);
+            writeString(out, name);
+            writeString(out, department);
+            out.writeLong(arrivalTime);
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void logTreatNextOPDPatient() {
+        logEmpty(OP_TREAT_OPD);
+    }
+
+    synchronized void logAddMedicalRecord(String stampedRecord) {
+        logStrings(OP_ADD_RECORD, stampedRecord);
+    }
+
+    synchronized void logRemoveLatestRecord() {
+        logEmpty(OP_REMOVE_RECORD);
+    }
+
+    synchronized void logClearMedicalHistory() {
+        logEmpty(OP_CLEAR_HISTORY);
+    }
+
+    synchronized void logAddDepartment(String name) {
+        logStrings(OP_ADD_DEPARTMENT, name);
+    }
+
+    synchronized void logRemoveDepartment(String name) {
+        logStrings(OP_REMOVE_DEPARTMENT, name);
+    }
+
+    synchronized void logUpdateDepartmentName(String oldName, String newName) {
+        logStrings(OP_RENAME_DEPARTMENT, oldName, newName);
+    }
+
+    private void logEmpty(byte op) {
+        if (replaying) return;
+        try {
+            wal.begin(op);
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void logStrings(byte op, String... values) {
+        if (replaying) return;
+        try {
+            DataOutputStream out = wal.begin(op);
+            for (String value : values) {
+                writeString(out, value);
+            }
+            commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The periodic snapshot runs on the sync thread: it needs every component
+    // lock, and the caller already holds one of them.
+    private void commit() throws IOException {
+        wal.commit();
+        if (++recordsSinceSnapshot >= SNAPSHOT_EVERY && !snapshotScheduled) {
+            snapshotScheduled = true;
+            syncer.execute(system::checkpoint);
+        }
+    }
+
+    // ---------------- String Encoding ----------------
+    // Length-prefixed UTF-8, -1 for null (writeUTF caps at 64 KiB and rejects null)
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,653 @@
+package newpak;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+// =========================================================
+// HOSPITAL QUERY (filter language over patients)
+// =========================================================
+//
+//   query      := or
+//   or         := and ("or" and)*
+//   and        := unary ("and" unary)*
+//   unary      := "not" unary | "(" or ")" | comparison
+//   comparison := field op value | field "in" "(" value ("," value)* ")"
+//                 | field "between" value "and" value
+//   field      := id | name | age | gender | disease | contact
+//   op         := = | != | < | <= | > | >= | contains | startswith
+//   value      := number | 'text' | "text" | word
+//
+// Text comparisons ignore case. Example:
+//   gender = female and age > 65 and disease = Arthritis and contact startswith 0300
+//
+// A compiled query is reusable and thread-safe. Each execution plans against
+// the indexes that exist at that moment: the cheapest indexed conjunct picks
+// the candidates, the full predicate filters them. Without a selective index
+// the list is scanned, in parallel once it is large.
+public class HospitalQuery {
+    static final int PARALLEL_THRESHOLD = 50_000;
+    // An index that still returns more than this share of patients loses to a scan
+    static final double MAX_INDEX_SELECTIVITY = 0.3;
+
+    private final String text;
+    private final Node root;
+    private final Predicate<Patient> predicate;
+
+    private HospitalQuery(String text, Node root) {
+        this.text = text;
+        this.root = root;
+        this.predicate = root.compile();
+    }
+
+    // Throws IllegalArgumentException with the position of the first error
+    public static HospitalQuery compile(String text) {
+        Parser parser = new Parser(text);
+        Node root = parser.parseOr();
+        parser.expectEnd();
+        return new HospitalQuery(text, root);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean matches(Patient patient) {
+        return predicate.test(patient);
+    }
+
+    // ==================== EXECUTION ====================
+
+    public List<Patient> execute(HospitalSystemLogic system) {
+        return run(system, false).rows;
+    }
+
+    // Matches offset .. offset + limit and how many match in all. Only the
+    // page is kept, so a scan walks the registry without copying it.
+    public Page execute(HospitalSystemLogic system, int offset, int limit) {
+        PatientManagement patients = system.getPatientManagement();
+        synchronized (patients) {
+            Plan plan = plan(patients);
+            Iterable<Patient> candidates = plan.access != null ? plan.access.candidates(patients) : patients.patients();
+            List<Patient> rows = new ArrayList<>();
+            int total = 0;
+            for (Patient p : candidates) {
+                if (!predicate.test(p)) continue;
+                if (total >= offset && rows.size() < limit) rows.add(p);
+                total++;
+            }
+            return new Page(total, rows);
+        }
+    }
+
+    // One page of patients and the size of the whole result
+    public static class Page {
+        private final int total;
+        private final List<Patient> rows;
+
+        Page(int total, List<Patient> rows) {
+            this.total = total;
+            this.rows = rows;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public List<Patient> getRows() {
+            return rows;
+        }
+    }
+
+    // Runs the query and returns the plan with actual row count and timing
+    public String explain(HospitalSystemLogic system) {
+        return run(system, true).describe();
+    }
+
+    private Result run(HospitalSystemLogic system, boolean timed) {
+        PatientManagement patients = system.getPatientManagement();
+        synchronized (patients) {
+            long start = System.nanoTime();
+            Plan plan = plan(patients);
+            List<Patient> rows;
+            if (plan.access != null) {
+                rows = new ArrayList<>();
+                for (Patient p : plan.access.candidates(patients)) {
+                    if (predicate.test(p)) rows.add(p);
+                }
+            } else if (plan.parallel) {
+                // Workers only read; the lock held here keeps writers out
+                rows = patients.getAllPatients().parallelStream().filter(predicate).collect(Collectors.toList());
+            } else {
+                rows = new ArrayList<>();
+                for (Patient p : patients.patients()) {
+                    if (predicate.test(p)) rows.add(p);
+                }
+            }
+            Result result = new Result(plan, rows);
+            if (timed) result.elapsedNanos = System.nanoTime() - start;
+            return result;
+        }
+    }
+
+    // ==================== PLANNING ====================
+
+    private Plan plan(PatientManagement patients) {
+        int total = patients.getTotalPatients();
+        Plan plan = new Plan(total);
+        List<Node> conjuncts = new ArrayList<>();
+        root.flattenAnd(conjuncts);
+
+        // Age bounds from several conjuncts collapse into one range
+        Comparison low = null;
+        Comparison high = null;
+        for (Node node : conjuncts) {
+            if (!(node instanceof Comparison)) continue;
+            Comparison c = (Comparison) node;
+            Access access = c.access(patients);
+            if (access != null) plan.consider(access, patients);
+            if (c.field != PatientField.AGE) continue;
+            if (c.op.equals(">") || c.op.equals(">=")) low = c;
+            if (c.op.equals("<") || c.op.equals("<=")) high = c;
+        }
+        if (low != null && high != null && patients.getIndex(PatientField.AGE) != null) {
+            plan.consider(new RangeAccess(PatientField.AGE,
+                    low.values.get(0), low.op.equals(">="), high.values.get(0), high.op.equals("<=")), patients);
+        }
+
+        if (plan.access != null && plan.estimate > Math.max(1, total * MAX_INDEX_SELECTIVITY)) {
+            plan.rejected = plan.access;
+            plan.access = null;
+        }
+        plan.parallel = plan.access == null && total >= PARALLEL_THRESHOLD;
+        return plan;
+    }
+
+    private class Plan {
+        final int total;
+        Access access;
+        Access rejected;
+        long estimate = Long.MAX_VALUE;
+        boolean parallel;
+
+        Plan(int total) {
+            this.total = total;
+        }
+
+        void consider(Access candidate, PatientManagement patients) {
+            long cost = candidate.estimate(patients);
+            if (cost < estimate) {
+                access = candidate;
+                estimate = cost;
+            }
+        }
+    }
+
+    private class Result {
+        final Plan plan;
+        final List<Patient> rows;
+        long elapsedNanos;
+
+        Result(Plan plan, List<Patient> rows) {
+            this.plan = plan;
+            this.rows = rows;
+        }
+
+        String describe() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Query:   ").append(root).append('\n');
+            if (plan.access != null) {
+                sb.append("Access:  ").append(plan.access).append(" (~").append(plan.estimate)
+                        .append(" of ").append(plan.total).append(" patients)\n");
+            } else {
+                sb.append("Access:  ").append(plan.parallel ? "parallel scan" : "scan")
+                        .append(" (").append(plan.total).append(" patients)\n");
+                if (plan.rejected != null) {
+                    sb.append("Skipped: ").append(plan.rejected).append(" (~").append(plan.estimate)
+                            .append(" rows, not selective)\n");
+                }
+            }
+            sb.append("Filter:  ").append(root).append('\n');
+            sb.append("Rows:    ").append(rows.size()).append('\n');
+            sb.append(String.format("Time:    %.3f ms", elapsedNanos / 1e6));
+            return sb.toString();
+        }
+    }
+
+    // ==================== ACCESS PATHS ====================
+
+    private interface Access {
+        long estimate(PatientManagement patients);
+        Collection<Patient> candidates(PatientManagement patients);
+    }
+
+    // Index entries are IDs; cold patients are read without being loaded into memory
+    private static void resolve(PatientManagement patients, Collection<Integer> ids, List<Patient> out) {
+        for (Integer id : ids) {
+            Patient p = patients.peekPatient(id);
+            if (p != null) out.add(p);
+        }
+    }
+
+    // id = n / id in (...)
+    private static class IdAccess implements Access {
+        final List<Object> ids;
+
+        IdAccess(List<Object> ids) {
+            this.ids = ids;
+        }
+
+        public long estimate(PatientManagement patients) {
+            return ids.size();
+        }
+
+        public Collection<Patient> candidates(PatientManagement patients) {
+            List<Patient> found = new ArrayList<>(ids.size());
+            for (Object id : new LinkedHashSet<>(ids)) {
+                Patient p = patients.peekPatient((Integer) id);
+                if (p != null) found.add(p);
+            }
+            return found;
+        }
+
+        public String toString() {
+            return "id lookup " + ids;
+        }
+    }
+
+    // field = v / field in (...) on a secondary index
+    private static class KeyAccess implements Access {
+        final PatientField field;
+        final List<Object> keys;
+
+        KeyAccess(PatientField field, List<Object> keys) {
+            this.field = field;
+            this.keys = keys;
+        }
+
+        public long estimate(PatientManagement patients) {
+            long n = 0;
+            for (Object key : new LinkedHashSet<>(keys)) n += patients.getIndex(field).get(key).size();
+            return n;
+        }
+
+        public Collection<Patient> candidates(PatientManagement patients) {
+            List<Patient> found = new ArrayList<>();
+            for (Object key : new LinkedHashSet<>(keys)) resolve(patients, patients.getIndex(field).get(key), found);
+            return found;
+        }
+
+        public String toString() {
+            return "index " + field.name().toLowerCase() + " " + (keys.size() == 1 ? "= " + Node.literal(keys.get(0)) : "in " + keys);
+        }
+    }
+
+    // <, <=, >, >=, between on a secondary index
+    private static class RangeAccess implements Access {
+        final PatientField field;
+        final Object from;
+        final boolean fromInclusive;
+        final Object to;
+        final boolean toInclusive;
+
+        RangeAccess(PatientField field, Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+            this.field = field;
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+        }
+
+        private SortedMap<Object, Set<Integer>> range(PatientManagement patients) {
+            return patients.getIndex(field).range(from, fromInclusive, to, toInclusive);
+        }
+
+        public long estimate(PatientManagement patients) {
+            long n = 0;
+            for (Set<Integer> set : range(patients).values()) n += set.size();
+            return n;
+        }
+
+        public Collection<Patient> candidates(PatientManagement patients) {
+            List<Patient> found = new ArrayList<>();
+            for (Set<Integer> set : range(patients).values()) resolve(patients, set, found);
+            return found;
+        }
+
+        public String toString() {
+            return "index " + field.name().toLowerCase() + " range "
+                    + (from == null ? "(-inf" : (fromInclusive ? "[" : "(") + Node.literal(from)) + ", "
+                    + (to == null ? "+inf)" : Node.literal(to) + (toInclusive ? "]" : ")"));
+        }
+    }
+
+    // startswith on a text index
+    private static class PrefixAccess implements Access {
+        final PatientField field;
+        final String prefix;
+
+        PrefixAccess(PatientField field, String prefix) {
+            this.field = field;
+            this.prefix = prefix;
+        }
+
+        public long estimate(PatientManagement patients) {
+            long n = 0;
+            for (Set<Integer> set : patients.getIndex(field).prefix(prefix).values()) n += set.size();
+            return n;
+        }
+
+        public Collection<Patient> candidates(PatientManagement patients) {
+            List<Patient> found = new ArrayList<>();
+            for (Set<Integer> set : patients.getIndex(field).prefix(prefix).values()) resolve(patients, set, found);
+            return found;
+        }
+
+        public String toString() {
+            return "index " + field.name().toLowerCase() + " prefix " + Node.literal(prefix);
+        }
+    }
+
+    // ==================== SYNTAX TREE ====================
+
+    private abstract static class Node {
+        abstract Predicate<Patient> compile();
+
+        void flattenAnd(List<Node> out) {
+            out.add(this);
+        }
+
+        static String literal(Object value) {
+            return value instanceof String ? "'" + ((String) value).replace("'", "\\'") + "'" : String.valueOf(value);
+        }
+    }
+
+    private static class And extends Node {
+        final Node left, right;
+
+        And(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        Predicate<Patient> compile() {
+            return left.compile().and(right.compile());
+        }
+
+        void flattenAnd(List<Node> out) {
+            left.flattenAnd(out);
+            right.flattenAnd(out);
+        }
+
+        public String toString() {
+            return left + " and " + right;
+        }
+    }
+
+    private static class Or extends Node {
+        final Node left, right;
+
+        Or(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        Predicate<Patient> compile() {
+            return left.compile().or(right.compile());
+        }
+
+        public String toString() {
+            return "(" + left + " or " + right + ")";
+        }
+    }
+
+    private static class Not extends Node {
+        final Node inner;
+
+        Not(Node inner) {
+            this.inner = inner;
+        }
+
+        Predicate<Patient> compile() {
+            return inner.compile().negate();
+        }
+
+        public String toString() {
+            return "not " + inner;
+        }
+    }
+
+    private static class Comparison extends Node {
+        final PatientField field;
+        final String op;
+        final List<Object> values;   // Integer or lower-case String keys
+
+        Comparison(PatientField field, String op, List<Object> values) {
+            this.field = field;
+            this.op = op;
+            this.values = values;
+        }
+
+        Predicate<Patient> compile() {
+            PatientField f = field;
+            Object v = values.get(0);
+            switch (op) {
+                case "=": return p -> v.equals(f.key(p));
+                case "!=": return p -> !v.equals(f.key(p));
+                case "<": return p -> compare(f.key(p), v) < 0;
+                case "<=": return p -> compare(f.key(p), v) <= 0;
+                case ">": return p -> compare(f.key(p), v) > 0;
+                case ">=": return p -> compare(f.key(p), v) >= 0;
+                case "contains": {
+                    String s = String.valueOf(v);
+                    return p -> { Object k = f.key(p); return k != null && k.toString().contains(s); };
+                }
+                case "startswith": {
+                    String s = String.valueOf(v);
+                    return p -> { Object k = f.key(p); return k != null && k.toString().startsWith(s); };
+                }
+                case "in": {
+                    Set<Object> set = new HashSet<>(values);
+                    return p -> set.contains(f.key(p));
+                }
+                case "between": {
+                    Object hi = values.get(1);
+                    return p -> compare(f.key(p), v) >= 0 && compare(f.key(p), hi) <= 0;
+                }
+                default: throw new IllegalStateException(op);
+            }
+        }
+
+        // null sorts below everything, so range tests are false for it
+        private static int compare(Object key, Object value) {
+            return key == null ? -1 : PatientField.KEY_ORDER.compare(key, value);
+        }
+
+        // Index access path for this conjunct, or null
+        Access access(PatientManagement patients) {
+            if (field == PatientField.ID) {
+                return op.equals("=") || op.equals("in") ? new IdAccess(values) : null;
+            }
+            if (patients.getIndex(field) == null) return null;
+            switch (op) {
+                case "=": case "in": return new KeyAccess(field, values);
+                case "<": return new RangeAccess(field, null, false, values.get(0), false);
+                case "<=": return new RangeAccess(field, null, false, values.get(0), true);
+                case ">": return new RangeAccess(field, values.get(0), false, null, false);
+                case ">=": return new RangeAccess(field, values.get(0), true, null, false);
+                case "between": return new RangeAccess(field, values.get(0), true, values.get(1), true);
+                case "startswith": return field.isNumeric() ? null : new PrefixAccess(field, (String) values.get(0));
+                default: return null;
+            }
+        }
+
+        public String toString() {
+            String name = field.name().toLowerCase();
+            if (op.equals("in")) {
+                return name + " in (" + values.stream().map(Node::literal).collect(Collectors.joining(", ")) + ")";
+            }
+            if (op.equals("between")) {
+                return name + " between " + literal(values.get(0)) + " and " + literal(values.get(1));
+            }
+            return name + " " + op + " " + literal(values.get(0));
+        }
+    }
+
+    // ==================== PARSER ====================
+
+    private static class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text == null ? "" : text;
+        }
+
+        Node parseOr() {
+            Node node = parseAnd();
+            while (acceptWord("or")) node = new Or(node, parseAnd());
+            return node;
+        }
+
+        Node parseAnd() {
+            Node node = parseUnary();
+            while (acceptWord("and")) node = new And(node, parseUnary());
+            return node;
+        }
+
+        Node parseUnary() {
+            if (acceptWord("not")) return new Not(parseUnary());
+            if (accept("(")) {
+                Node node = parseOr();
+                expect(")");
+                return node;
+            }
+            return parseComparison();
+        }
+
+        Node parseComparison() {
+            int at = skipSpace();
+            String name = word();
+            PatientField field;
+            try {
+                field = PatientField.parse(name);
+            } catch (IllegalArgumentException e) {
+                throw error(at, "Unknown field '" + name + "'");
+            }
+
+            String op;
+            if (acceptWord("in")) {
+                expect("(");
+                List<Object> values = new ArrayList<>();
+                do {
+                    values.add(value(field));
+                } while (accept(","));
+                expect(")");
+                return new Comparison(field, "in", values);
+            }
+            if (acceptWord("between")) {
+                Object lo = value(field);
+                if (!acceptWord("and")) throw error(pos, "Expected 'and' in between");
+                return new Comparison(field, "between", Arrays.asList(lo, value(field)));
+            }
+            if (acceptWord("contains")) op = "contains";
+            else if (acceptWord("startswith")) op = "startswith";
+            else if (accept("!=")) op = "!=";
+            else if (accept("<=")) op = "<=";
+            else if (accept(">=")) op = ">=";
+            else if (accept("<")) op = "<";
+            else if (accept(">")) op = ">";
+            else if (accept("=")) op = "=";
+            else throw error(pos, "Expected operator after '" + name + "'");
+
+            if ((op.equals("contains") || op.equals("startswith")) && field.isNumeric()) {
+                throw error(at, op + " needs a text field");
+            }
+            Object value = op.equals("contains") || op.equals("startswith") ? textValue() : value(field);
+            return new Comparison(field, op, Collections.singletonList(value));
+        }
+
+        // Integer for numeric fields, lower-case text otherwise
+        private Object value(PatientField field) {
+            int at = skipSpace();
+            String raw = text();
+            if (!field.isNumeric()) return PatientField.lower(raw);
+            try {
+                return Integer.parseInt(raw);
+            } catch (NumberFormatException e) {
+                throw error(at, "Expected a number for " + field.name().toLowerCase());
+            }
+        }
+
+        private String textValue() {
+            skipSpace();
+            return PatientField.lower(text());
+        }
+
+        // Quoted string or a bare word
+        private String text() {
+            if (pos < text.length() && (text.charAt(pos) == '\'' || text.charAt(pos) == '"')) {
+                char quote = text.charAt(pos++);
+                StringBuilder sb = new StringBuilder();
+                while (pos < text.length() && text.charAt(pos) != quote) {
+                    char ch = text.charAt(pos++);
+                    if (ch == '\\' && pos < text.length()) ch = text.charAt(pos++);
+                    sb.append(ch);
+                }
+                if (pos >= text.length()) throw error(pos, "Unterminated string");
+                pos++;
+                return sb.toString();
+            }
+            String word = word();
+            if (word.isEmpty()) throw error(pos, "Expected a value");
+            return word;
+        }
+
+        private String word() {
+            skipSpace();
+            int start = pos;
+            while (pos < text.length() && "()=!<>,'\"".indexOf(text.charAt(pos)) < 0
+                    && !Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            return text.substring(start, pos);
+        }
+
+        private boolean acceptWord(String keyword) {
+            int at = skipSpace();
+            int end = at + keyword.length();
+            if (text.regionMatches(true, at, keyword, 0, keyword.length())
+                    && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)))) {
+                pos = end;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean accept(String symbol) {
+            skipSpace();
+            if (text.startsWith(symbol, pos)) {
+                pos += symbol.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String symbol) {
+            if (!accept(symbol)) throw error(pos, "Expected '" + symbol + "'");
+        }
+
+        void expectEnd() {
+            if (skipSpace() < text.length()) throw error(pos, "Unexpected '" + text.substring(pos) + "'");
+        }
+
+        private int skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+            return pos;
+        }
+
+        private IllegalArgumentException error(int at, String message) {
+            return new IllegalArgumentException(message + " at column " + (at + 1));
+        }
+    }
+}
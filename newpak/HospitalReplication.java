@@ -0,0 +1,522 @@
+package newpak;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// =========================================================
+// HOSPITAL REPLICATION (log shipping to a hot standby)
+// =========================================================
+//
+// The primary streams its write-ahead log over TCP. A standby that connects
+// first gets a snapshot taken under every component lock, then every record
+// committed after it, in LSN order. The standby applies them to its own
+// in-memory HospitalSystemLogic and can be promoted to a durable primary.
+//
+// Stream (primary -> standby):
+//   'S' [long lsn][long size][snapshot bytes]
+//   'R' [long commitMillis][int length][lsn + op + payload][int crc32]
+//   'H' [long lastLsn][long millis]            heartbeat, every 100 ms idle
+// Stream (standby -> primary):
+//   [int MAGIC] once, then 'A' [long appliedLsn] on every heartbeat and
+//   at least every 100 ms while records are flowing
+//
+// Replication is asynchronous: the primary never waits for a standby. A
+// standby that falls more than MAX_QUEUED records behind is disconnected and
+// re-bootstraps from a fresh snapshot.
+public class HospitalReplication {
+    static final int MAGIC = 0x484D5352; // "HMSR"
+    static final byte MSG_SNAPSHOT = 'S';
+    static final byte MSG_RECORD = 'R';
+    static final byte MSG_HEARTBEAT = 'H';
+    static final byte MSG_ACK = 'A';
+
+    private static final long HEARTBEAT_MS = 100;
+    private static final int MAX_QUEUED = 256 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static Primary startPrimary(HospitalSystemLogic system, int port) throws IOException {
+        return new Primary(system, port);
+    }
+
+    public static Standby startStandby(String host, int port) {
+        return new Standby(host, port);
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    // ==================== PRIMARY ====================
+
+    public static class Primary implements Closeable {
+        private final HospitalSystemLogic system;
+        private final HospitalPersistence persistence;
+        private final ServerSocket server;
+        private final List<Session> sessions = new CopyOnWriteArrayList<>();
+        private volatile boolean closed;
+
+        private Primary(HospitalSystemLogic system, int port) throws IOException {
+            this.system = system;
+            this.persistence = system.getPersistence();
+            if (persistence == null) {
+                throw new IllegalStateException("Replication ships the write-ahead log; start with -Dhospital.dataDir");
+            }
+            this.server = new ServerSocket();
+            server.bind(new InetSocketAddress(port));
+            // Called inside the log's commit, under the component lock: copy and queue only
+            persistence.setReplicationTap((lsn, record, length, crc) -> {
+                if (sessions.isEmpty()) return;
+                byte[] message = recordMessage(record, length, crc);
+                for (Session session : sessions) {
+                    session.enqueue(message);
+                }
+            });
+            daemon(this::acceptLoop, "hospital-repl-accept");
+        }
+
+        public int getPort() {
+            return server.getLocalPort();
+        }
+
+        public int getStandbyCount() {
+            return sessions.size();
+        }
+
+        public long getLastLsn() {
+            return persistence.getLastLsn();
+        }
+
+        // Records committed here but not yet acknowledged by the slowest standby
+        public long getLagRecords() {
+            long last = getLastLsn();
+            long lag = 0;
+            for (Session session : sessions) {
+                lag = Math.max(lag, last - session.ackedLsn);
+            }
+            return lag;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            persistence.setReplicationTap(null);
+            server.close();
+            for (Session session : sessions) {
+                session.close();
+            }
+        }
+
+        private void acceptLoop() {
+            while (!closed) {
+                try {
+                    Socket socket = server.accept();
+                    daemon(() -> bootstrap(socket), "hospital-repl-bootstrap");
+                } catch (IOException e) {
+                    if (!closed) System.err.println("Replication accept failed: " + e.getMessage());
+                }
+            }
+        }
+
+        // Snapshot + registration happen under every lock, so the standby sees
+        // each record exactly once: either inside the snapshot or in its queue
+        private void bootstrap(Socket socket) {
+            Session session = null;
+            Path snapshot = null;
+            try {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (in.readInt() != MAGIC) throw new IOException("Not a hospital standby");
+
+                Session newSession = new Session(socket, in);
+                Path file = Files.createTempFile("hospital-repl", ".snapshot");
+                snapshot = file;
+                long[] lsn = new long[1];
+                Path[] captured = new Path[1];
+                system.runLocked(() -> {
+                    try {
+                        lsn[0] = persistence.getLastLsn();
+                        captured[0] = HospitalSnapshot.capture(system, lsn[0], file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    sessions.add(newSession);
+                });
+                HospitalSnapshot.publish(captured[0], file);
+                session = newSession;
+                session.ackedLsn = lsn[0];
+
+                DataOutputStream out = session.out;
+                out.writeByte(MSG_SNAPSHOT);
+                out.writeLong(lsn[0]);
+                out.writeLong(Files.size(file));
+                Files.copy(file, out);
+                out.flush();
+                daemon(session::sendLoop, "hospital-repl-send");
+                session.ackLoop();
+            } catch (IOException | UncheckedIOException e) {
+                if (!closed) System.err.println("Standby disconnected: " + e);
+            } finally {
+                if (session != null) session.close();
+                else closeQuietly(socket);
+                if (snapshot != null) snapshot.toFile().delete();
+            }
+        }
+
+        private static byte[] recordMessage(byte[] record, int length, int crc) {
+            byte[] message = new byte[1 + 8 + 4 + length + 4];
+            ByteBuffer.wrap(message).put(MSG_RECORD).putLong(System.currentTimeMillis())
+                    .putInt(length).put(record, 0, length).putInt(crc);
+            return message;
+        }
+
+        // One connected standby: a bounded outbound queue, a sender, an ack reader
+        private class Session {
+            private final Socket socket;
+            private final DataInputStream in;
+            private final DataOutputStream out;
+            private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(MAX_QUEUED);
+            private volatile long ackedLsn;
+            private volatile boolean dropped;
+
+            Session(Socket socket, DataInputStream in) throws IOException {
+                this.socket = socket;
+                this.in = in;
+                this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            }
+
+            void enqueue(byte[] message) {
+                if (!queue.offer(message) && !dropped) {
+                    // Too far behind: drop it, it re-bootstraps from a snapshot
+                    dropped = true;
+                    daemon(this::close, "hospital-repl-drop");
+                }
+            }
+
+            void sendLoop() {
+                try {
+                    while (!dropped) {
+                        byte[] message = queue.poll(HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+                        if (message == null) {
+                            out.writeByte(MSG_HEARTBEAT);
+                            out.writeLong(persistence.getLastLsn());
+                            out.writeLong(System.currentTimeMillis());
+                            out.flush();
+                            continue;
+                        }
+                        // Batch whatever is already queued into one flush
+                        do {
+                            out.write(message);
+                        } while ((message = queue.poll()) != null);
+                        out.flush();
+                    }
+                } catch (IOException | InterruptedException e) {
+                    close();
+                }
+            }
+
+            void ackLoop() throws IOException {
+                while (!dropped) {
+                    if (in.readByte() != MSG_ACK) throw new IOException("Unexpected message from standby");
+                    ackedLsn = in.readLong();
+                }
+            }
+
+            void close() {
+                dropped = true;
+                sessions.remove(this);
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    // ==================== STANDBY ====================
+
+    public static class Standby implements Closeable {
+        private final String host;
+        private final int port;
+        private final Thread receiver;
+        private final CRC32 crc = new CRC32();
+
+        private volatile HospitalSystemLogic system;
+        private volatile Socket socket;
+        private volatile boolean connected;
+        private volatile boolean promoting;
+        private volatile boolean closed;
+
+        // Applied / known primary position and timing (for lag)
+        private volatile long appliedLsn;
+        private volatile long primaryLsn;
+        private volatile long applyDelayMillis;
+        private volatile long lastContactMillis = System.currentTimeMillis();
+        private volatile long catchUpMillis = -1;
+
+        private Standby(String host, int port) {
+            this.host = host;
+            this.port = port;
+            this.receiver = daemon(this::receiveLoop, "hospital-repl-standby");
+        }
+
+        // Live replica for reads; replaced when re-bootstrapping, null until the first snapshot
+        public HospitalSystemLogic getSystem() {
+            return system;
+        }
+
+        public boolean isConnected() {
+            return connected;
+        }
+
+        public long getAppliedLsn() {
+            return appliedLsn;
+        }
+
+        // Records the primary has committed that are not applied here yet
+        public long getLagRecords() {
+            return Math.max(0, primaryLsn - appliedLsn);
+        }
+
+        // Commit-to-apply time of the last applied record (same host clock)
+        public long getApplyDelayMillis() {
+            return applyDelayMillis;
+        }
+
+        public long getMillisSinceContact() {
+            return System.currentTimeMillis() - lastContactMillis;
+        }
+
+        // Time promote() spent draining the stream, -1 before promotion
+        public long getCatchUpMillis() {
+            return catchUpMillis;
+        }
+
+        // Stops following the primary after applying everything already received,
+        // then makes the replica durable in dataDir (null keeps it in memory)
+        public HospitalSystemLogic promote(Path dataDir) throws InterruptedException {
+            long start = System.nanoTime();
+            promoting = true;
+            receiver.join();
+            catchUpMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            HospitalSystemLogic promoted = system;
+            if (promoted == null) {
+                throw new IllegalStateException("Standby never received a snapshot");
+            }
+            if (dataDir != null) {
+                promoted.attachPersistence(dataDir, appliedLsn);
+            }
+            return promoted;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            closeQuietly(socket);
+        }
+
+        private void receiveLoop() {
+            while (!closed && !promoting) {
+                try (Socket s = new Socket()) {
+                    s.connect(new InetSocketAddress(host, port), 1000);
+                    s.setTcpNoDelay(true);
+                    // Short reads let promote() notice an idle stream quickly
+                    s.setSoTimeout((int) HEARTBEAT_MS / 2);
+                    socket = s;
+                    if (closed) break;
+                    follow(s);
+                } catch (IOException e) {
+                    connected = false;
+                    if (closed || promoting) break;
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException interrupted) {
+                        break;
+                    }
+                } finally {
+                    connected = false;
+                }
+            }
+        }
+
+        private void follow(Socket s) throws IOException {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            StreamSource source = new StreamSource(s.getInputStream(), this);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(source, BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.flush();
+
+            byte[] record = new byte[256];
+            long lastAckMillis = 0;
+            while (!closed) {
+                byte type;
+                source.atBoundary = true;
+                try {
+                    type = in.readByte();
+                } catch (SocketTimeoutException caughtUp) {
+                    return; // promoting, and nothing left to apply
+                } finally {
+                    source.atBoundary = false;
+                }
+                lastContactMillis = System.currentTimeMillis();
+                switch (type) {
+                    case MSG_SNAPSHOT -> {
+                        receiveSnapshot(in);
+                        connected = true;
+                    }
+                    case MSG_RECORD -> {
+                        long commitMillis = in.readLong();
+                        int length = in.readInt();
+                        if (record.length < length) record = new byte[Math.max(length, record.length * 2)];
+                        in.readFully(record, 0, length);
+                        int storedCrc = in.readInt();
+                        crc.reset();
+                        crc.update(record, 0, length);
+                        if ((int) crc.getValue() != storedCrc) throw new IOException("Corrupt replication record");
+
+                        DataInputStream body = new DataInputStream(new ByteArrayInputStream(record, 0, length));
+                        long lsn = body.readLong();
+                        HospitalPersistence.apply(system, lsn, body.readByte(), body);
+                        appliedLsn = lsn;
+                        primaryLsn = Math.max(primaryLsn, lsn);
+                        applyDelayMillis = lastContactMillis - commitMillis;
+                        if (lastContactMillis - lastAckMillis >= HEARTBEAT_MS) {
+                            lastAckMillis = ack(out);
+                        }
+                    }
+                    case MSG_HEARTBEAT -> {
+                        primaryLsn = Math.max(appliedLsn, in.readLong());
+                        in.readLong();
+                        lastAckMillis = ack(out);
+                    }
+                    default -> throw new IOException("Unknown replication message " + type);
+                }
+            }
+        }
+
+        private long ack(DataOutputStream out) throws IOException {
+            out.writeByte(MSG_ACK);
+            out.writeLong(appliedLsn);
+            out.flush();
+            return System.currentTimeMillis();
+        }
+
+        private void receiveSnapshot(DataInputStream in) throws IOException {
+            long lsn = in.readLong();
+            long size = in.readLong();
+            Path file = Files.createTempFile("hospital-standby", ".snapshot");
+            try {
+                try (OutputStream out = Files.newOutputStream(file)) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    for (long left = size; left > 0; ) {
+                        int n = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+                        if (n < 0) throw new EOFException("Snapshot cut off");
+                        out.write(buffer, 0, n);
+                        left -= n;
+                    }
+                }
+                HospitalSystemLogic fresh = new HospitalSystemLogic(false);
+                HospitalSnapshot.read(fresh, file);
+                system = fresh;
+                appliedLsn = lsn;
+                primaryLsn = lsn;
+            } finally {
+                file.toFile().delete();
+            }
+        }
+    }
+
+    // Socket input that waits through read timeouts, except between messages
+    // while promoting: a timeout there means the stream is fully applied.
+    // Timeouts inside a message never surface, so framing cannot break.
+    private static class StreamSource extends FilterInputStream {
+        volatile boolean atBoundary;
+        private final Standby owner;
+
+        StreamSource(InputStream in, Standby owner) {
+            super(in);
+            this.owner = owner;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (true) {
+                try {
+                    return super.read();
+                } catch (SocketTimeoutException e) {
+                    if (atBoundary && owner.promoting) throw e;
+                }
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (true) {
+                try {
+                    return super.read(b, off, len);
+                } catch (SocketTimeoutException e) {
+                    if (atBoundary && owner.promoting) throw e;
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // already closed or broken
+        }
+    }
+
+    // ==================== COMMAND LINE ====================
+    //
+    //   java newpak.HospitalReplication primary <dataDir> <replicationPort> [httpPort]
+    //   java newpak.HospitalReplication standby <host> <replicationPort> <dataDir> [httpPort]
+    //
+    // The standby promotes itself once the primary has been silent for
+    // -Dhospital.replica.failoverMs (default 1000) and then serves the HTTP API.
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("primary")) {
+            System.setProperty("hospital.dataDir", args[1]);
+            HospitalSystemLogic system = HospitalSystemLogic.getInstance();
+            Primary primary = startPrimary(system, Integer.parseInt(args[2]));
+            if (args.length > 3) HospitalHttpServer.start(system, Integer.parseInt(args[3]));
+            System.out.println("Primary replicating on port " + primary.getPort());
+            while (true) {
+                Thread.sleep(1000);
+                System.out.printf("primary  lsn=%d  standbys=%d  lag=%d records%n",
+                        primary.getLastLsn(), primary.getStandbyCount(), primary.getLagRecords());
+            }
+        }
+        if (args.length >= 4 && args[0].equals("standby")) {
+            long failoverMs = Long.getLong("hospital.replica.failoverMs", 1000L);
+            Standby standby = startStandby(args[1], Integer.parseInt(args[2]));
+            while (standby.getSystem() == null || standby.getMillisSinceContact() < failoverMs) {
+                Thread.sleep(200);
+                System.out.printf("standby  applied=%d  lag=%d records  delay=%d ms  connected=%b%n",
+                        standby.getAppliedLsn(), standby.getLagRecords(),
+                        standby.getApplyDelayMillis(), standby.isConnected());
+            }
+            HospitalSystemLogic system = standby.promote(Paths.get(args[3]));
+            System.out.printf("Promoted at lsn %d (catch-up %d ms): %s%n",
+                    standby.getAppliedLsn(), standby.getCatchUpMillis(), system.getSystemReport());
+            if (args.length > 4) HospitalHttpServer.start(system, Integer.parseInt(args[4]));
+            return;
+        }
+        System.out.println("Usage: primary <dataDir> <port> [httpPort] | standby <host> <port> <dataDir> [httpPort]");
+    }
+}
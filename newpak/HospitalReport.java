@@ -0,0 +1,139 @@
+package newpak;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+// =========================================================
+// HOSPITAL REPORT (materialized system report)
+// =========================================================
+//
+// The counters behind getSystemReport, kept up to date by the components
+// themselves: every mutation (facade call, log replay, snapshot restore,
+// archiving) sets the new count here in O(1) and bumps the version.
+//
+// Readers take a Snapshot: an immutable view of one version, built on the
+// first read after a change and shared by every read until the next one,
+// so polling an unchanged system allocates nothing. Comparing
+// Snapshot.getVersion() with the last one rendered tells a view it can
+// skip re-rendering.
+//
+// Wait percentiles also change as the windows slide, so a snapshot holding
+// them expires at the next slot boundary even without a mutation.
+public class HospitalReport {
+
+    enum Counter {
+        TOTAL_PATIENTS, EMERGENCY_PATIENTS, OPD_PATIENTS, MEDICAL_RECORDS
+    }
+
+    private final HospitalWaitTimes waitTimes;
+
+    private final int[] counters = new int[Counter.values().length];
+    // Department -> patient count, in the BST's (case-insensitive) order
+    private final TreeMap<String, Integer> departments = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private volatile long version;
+    private Snapshot snapshot;
+
+    HospitalReport(HospitalWaitTimes waitTimes) {
+        this.waitTimes = waitTimes;
+    }
+
+    // ==================== UPDATES (component locks held) ====================
+
+    synchronized void set(Counter counter, int value) {
+        counters[counter.ordinal()] = value;
+        version++;
+    }
+
+    // Adds the department or updates its count; an existing entry keeps its name
+    synchronized void setDepartment(String name, int patientCount) {
+        departments.put(name, patientCount);
+        version++;
+    }
+
+    synchronized void removeDepartment(String name) {
+        departments.remove(name);
+        version++;
+    }
+
+    // Something outside the counters changed (e.g. a wait was recorded)
+    synchronized void changed() {
+        version++;
+    }
+
+    // ==================== READS ====================
+
+    // Increases with every change; cheap enough to poll
+    public long getVersion() {
+        return version;
+    }
+
+    public synchronized Snapshot snapshot() {
+        long now = System.currentTimeMillis();
+        if (snapshot != null && now >= snapshot.expiresAt) {
+            version++;
+        }
+        if (snapshot == null || snapshot.version != version) {
+            snapshot = new Snapshot(this, now);
+        }
+        return snapshot;
+    }
+
+    // One version of the report; never changes once built
+    public static final class Snapshot {
+        private final long version;
+        private final long generatedAt;
+        private final long expiresAt;
+        private final Map<String, Integer> entries;
+        private final List<String> departmentStats;
+        private volatile String text;   // rendered on first use
+
+        private Snapshot(HospitalReport report, long now) {
+            version = report.version;
+            generatedAt = now;
+            expiresAt = report.waitTimes.nextExpiry(now);
+
+            Map<String, Integer> map = new LinkedHashMap<>();
+            map.put("Total Patients", report.counters[Counter.TOTAL_PATIENTS.ordinal()]);
+            map.put("Emergency Patients", report.counters[Counter.EMERGENCY_PATIENTS.ordinal()]);
+            map.put("OPD Patients", report.counters[Counter.OPD_PATIENTS.ordinal()]);
+            map.put("Departments", report.departments.size());
+            map.put("Medical Records", report.counters[Counter.MEDICAL_RECORDS.ordinal()]);
+            report.waitTimes.addTo(map, now);
+            entries = Collections.unmodifiableMap(map);
+
+            List<String> stats = new ArrayList<>(report.departments.size());
+            for (Map.Entry<String, Integer> dept : report.departments.entrySet()) {
+                stats.add(dept.getKey() + " (" + dept.getValue() + " patients)");
+            }
+            departmentStats = Collections.unmodifiableList(stats);
+        }
+
+        public long getVersion() { return version; }
+        public long getGeneratedAt() { return generatedAt; }
+
+        // Unmodifiable, in display order
+        public Map<String, Integer> getEntries() { return entries; }
+
+        // "Cardiology (2 patients)", in department order; unmodifiable
+        public List<String> getDepartmentStats() { return departmentStats; }
+
+        // The exportSystemReport text for this version
+        public String getText() {
+            String rendered = text;
+            if (rendered == null) {
+                StringWriter sw = new StringWriter();
+                try {
+                    HospitalExport.writeSystemReport(this, new ExportBuffer(sw));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // StringWriter never throws
+                }
+                rendered = sw.toString();
+                text = rendered;
+            }
+            return rendered;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package newpak;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+// =========================================================
+// HOSPITAL SHARD ROUTER (partitions by patient ID range)
+// =========================================================
+//
+// Each shard is a full HospitalSystemLogic (one campus) owning a contiguous
+// patient ID range. A shard lives either in this JVM or in another local
+// process behind HospitalHttpServer. ID-based calls go to the owning shard;
+// getAllPatients and getSystemReport are scattered to every shard in
+// parallel and gathered in ID-range order.
+//
+// Only the patient registry is routed. Emergency and OPD queues,
+// departments and medical history belong to a campus: a global "next
+// patient" would need every campus's queue, so callers use the shard's own
+// HospitalSystemLogic (or its HTTP API) for them.
+public class HospitalShardRouter {
+
+    // What the router needs from one partition
+    public interface Shard {
+        String getName();
+        boolean addPatient(int id, String name, int age, String gender, String disease, String contact);
+        Patient searchPatient(int id);
+        boolean patientExists(int id);   // unlike searchPatient, leaves a cold patient cold
+        boolean updatePatient(int id, String name, int age, String gender, String disease, String contact);
+        boolean deletePatient(int id);
+        List<Patient> getAllPatients();
+        Map<String, Integer> getSystemReport();
+    }
+
+    // Shards keyed by the first patient ID they own
+    private final TreeMap<Integer, Shard> shards = new TreeMap<>();
+    private final ExecutorService executor = HospitalHttpServer.newRequestExecutor();
+
+    // The shard owns IDs from firstId up to the next shard's firstId
+    public synchronized HospitalShardRouter addShard(int firstId, Shard shard) {
+        if (shards.containsKey(firstId)) {
+            throw new IllegalArgumentException("A shard already starts at ID " + firstId);
+        }
+        shards.put(firstId, shard);
+        return this;
+    }
+
+    public synchronized List<Shard> getShards() {
+        return new ArrayList<>(shards.values());
+    }
+
+    public synchronized Shard shardFor(int patientId) {
+        Map.Entry<Integer, Shard> entry = shards.floorEntry(patientId);
+        if (entry == null) {
+            throw new IllegalArgumentException("No shard owns patient ID " + patientId);
+        }
+        return entry.getValue();
+    }
+
+    // n in-process shards of idsPerShard IDs each, starting at firstId
+    public static HospitalShardRouter inProcess(int n, int firstId, int idsPerShard) {
+        HospitalShardRouter router = new HospitalShardRouter();
+        for (int i = 0; i < n; i++) {
+            router.addShard(firstId + i * idsPerShard, local("shard-" + i, new HospitalSystemLogic(false)));
+        }
+        return router;
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // ==================== ROUTED CALLS ====================
+
+    public boolean addPatient(int id, String name, int age, String gender, String disease, String contact) {
+        return shardFor(id).addPatient(id, name, age, gender, disease, contact);
+    }
+
+    public Patient searchPatient(int id) {
+        return shardFor(id).searchPatient(id);
+    }
+
+    public boolean updatePatient(int id, String name, int age, String gender, String disease, String contact) {
+        return shardFor(id).updatePatient(id, name, age, gender, disease, contact);
+    }
+
+    public boolean deletePatient(int id) {
+        return shardFor(id).deletePatient(id);
+    }
+
+    public boolean patientExists(int id) {
+        return shardFor(id).patientExists(id);
+    }
+
+    // ==================== SCATTER-GATHER ====================
+
+    public List<Patient> getAllPatients() {
+        List<List<Patient>> parts = scatter(Shard::getAllPatients);
+        int total = 0;
+        for (List<Patient> part : parts) total += part.size();
+        List<Patient> all = new ArrayList<>(total);
+        for (List<Patient> part : parts) all.addAll(part);
+        return all;
+    }
+
+    // Sum of every shard's counters (departments are per campus, so they add up
+    // too). Wait percentiles do not add up; the worst shard's value is kept.
+    public Map<String, Integer> getSystemReport() {
+        Map<String, Integer> report = new HashMap<>();
+        for (Map<String, Integer> part : scatter(Shard::getSystemReport)) {
+            part.forEach((key, value) -> report.merge(key, value,
+                    key.contains(" Wait p") ? Integer::max : Integer::sum));
+        }
+        report.put("Shards", getShards().size());
+        return report;
+    }
+
+    // Per-shard reports, keyed by shard name in ID-range order
+    public Map<String, Map<String, Integer>> getShardReports() {
+        List<Shard> targets = getShards();
+        List<Map<String, Integer>> parts = scatter(Shard::getSystemReport);
+        Map<String, Map<String, Integer>> reports = new LinkedHashMap<>();
+        for (int i = 0; i < targets.size(); i++) {
+            reports.put(targets.get(i).getName(), parts.get(i));
+        }
+        return reports;
+    }
+
+    private <T> List<T> scatter(java.util.function.Function<Shard, T> call) {
+        List<Shard> targets = getShards();
+        List<CompletableFuture<T>> futures = new ArrayList<>(targets.size());
+        for (Shard shard : targets) {
+            futures.add(CompletableFuture.supplyAsync(() -> call.apply(shard), executor));
+        }
+        List<T> results = new ArrayList<>(targets.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        return results;
+    }
+
+    // ==================== IN-PROCESS SHARD ====================
+
+    public static Shard local(String name, HospitalSystemLogic system) {
+        return new Shard() {
+            public String getName() { return name; }
+
+            public boolean addPatient(int id, String n, int age, String gender, String disease, String contact) {
+                return system.addPatient(id, n, age, gender, disease, contact);
+            }
+
+            public Patient searchPatient(int id) { return system.searchPatient(id); }
+            public boolean patientExists(int id) { return system.patientExists(id); }
+
+            public boolean updatePatient(int id, String n, int age, String gender, String disease, String contact) {
+                return system.updatePatient(id, n, age, gender, disease, contact);
+            }
+
+            public boolean deletePatient(int id) { return system.deletePatient(id); }
+            public List<Patient> getAllPatients() { return system.getAllPatients(); }
+            public Map<String, Integer> getSystemReport() { return system.getSystemReport(); }
+        };
+    }
+
+    // ==================== REMOTE SHARD (HTTP API) ====================
+
+    // Shard served by HospitalHttpServer at base, e.g. http://localhost:8081/api/.
+    // The API validates age and contact, so invalid input is rejected here
+    // with IllegalArgumentException rather than stored.
+    public static Shard remote(String name, URI base) {
+        return new RemoteShard(name, base);
+    }
+
+    static class RemoteShard implements Shard {
+        private final String name;
+        private final URI base;
+        private final HttpClient client = HttpClient.newHttpClient();
+
+        RemoteShard(String name, URI base) {
+            this.name = name;
+            this.base = base;
+        }
+
+        public String getName() { return name; }
+
+        public boolean addPatient(int id, String n, int age, String gender, String disease, String contact) {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(base.resolve("patients"))
+                    .POST(HttpRequest.BodyPublishers.ofString(patientBody(id, n, age, gender, disease, contact))));
+            return succeeded(response, 409);
+        }
+
+        public Patient searchPatient(int id) {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(base.resolve("patients/" + id)).GET());
+            return succeeded(response, 404) ? toPatient(Json.parseObject(response.body())) : null;
+        }
+
+        public boolean patientExists(int id) {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(base.resolve("patients/" + id))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody()));
+            if (response.statusCode() == 200) return true;
+            if (response.statusCode() == 404) return false;
+            throw new IllegalStateException(name + ": HTTP " + response.statusCode());   // HEAD has no error body
+        }
+
+        public boolean updatePatient(int id, String n, int age, String gender, String disease, String contact) {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(base.resolve("patients/" + id))
+                    .PUT(HttpRequest.BodyPublishers.ofString(patientBody(id, n, age, gender, disease, contact))));
+            return succeeded(response, 404);
+        }
+
+        public boolean deletePatient(int id) {
+            return succeeded(send(HttpRequest.newBuilder(base.resolve("patients/" + id)).DELETE()), 404);
+        }
+
+        // Streams the shard's JSON Lines export instead of paging
+        public List<Patient> getAllPatients() {
+            HttpRequest request = HttpRequest.newBuilder(base.resolve("patients/export")).GET().build();
+            try {
+                HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                List<Patient> patients = new ArrayList<>();
+                try (BufferedReader in = new BufferedReader(
+                        new InputStreamReader(response.body(), StandardCharsets.UTF_8), 1 << 16)) {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException(name + ": HTTP " + response.statusCode());
+                    }
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (!line.isEmpty()) patients.add(toPatient(Json.parseObject(line)));
+                    }
+                }
+                return patients;
+            } catch (IOException e) {
+                throw new UncheckedIOException(name + ": " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(name + ": interrupted", e);
+            }
+        }
+
+        public Map<String, Integer> getSystemReport() {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(base.resolve("report")).GET());
+            succeeded(response, -1);
+            Map<String, Integer> report = new HashMap<>();
+            Json.parseObject(response.body()).forEach((key, value) -> report.put(key, Integer.parseInt(value)));
+            return report;
+        }
+
+        private HttpResponse<String> send(HttpRequest.Builder request) {
+            try {
+                return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                throw new UncheckedIOException(name + ": " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(name + ": interrupted", e);
+            }
+        }
+
+        // 2xx -> true, the "expected failure" status -> false, anything else throws
+        private boolean succeeded(HttpResponse<String> response, int falseStatus) {
+            int status = response.statusCode();
+            if (status / 100 == 2) return true;
+            if (status == falseStatus) return false;
+            String message = name + ": " + Json.parseObject(response.body()).get("error");
+            if (status == 400) throw new IllegalArgumentException(message);
+            throw new IllegalStateException(message + " (HTTP " + status + ")");
+        }
+
+        private static String patientBody(int id, String name, int age, String gender, String disease, String contact) {
+            StringBuilder sb = new StringBuilder("{\"id\":").append(id).append(",\"name\":");
+            Json.appendString(sb, name).append(",\"age\":").append(age).append(",\"gender\":");
+            Json.appendString(sb, gender).append(",\"disease\":");
+            Json.appendString(sb, disease).append(",\"contact\":");
+            return Json.appendString(sb, contact).append('}').toString();
+        }
+
+        private static Patient toPatient(Map<String, String> fields) {
+            return new Patient(Integer.parseInt(fields.get("id")), fields.get("name"),
+                    Integer.parseInt(fields.get("age")), fields.get("gender"),
+                    fields.get("disease"), fields.get("contact"));
+        }
+    }
+
+    // ==================== LOCAL SHARD PROCESSES ====================
+
+    // Starts HospitalHttpServer in a child JVM with this classpath and Nagle
+    // off; dataDir may be null
+    public static Process launchShardProcess(int port, Path dataDir) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Dhospital.sampleData=false");
+        command.add("-Dsun.net.httpserver.nodelay=true");   // see HospitalHttpServer
+        if (dataDir != null) {
+            command.add("-Dhospital.dataDir=" + dataDir);
+        }
+        command.add(HospitalHttpServer.class.getName());
+        command.add(String.valueOf(port));
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+}
@@ -0,0 +1,471 @@
+package newpak;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// =========================================================
+// STRING DICTIONARY (repeated values stored once, referenced by code)
+// =========================================================
+class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    // -1 is reserved for null
+    int encode(String value) {
+        if (value == null) return -1;
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    List<String> values() {
+        return values;
+    }
+}
+
+// =========================================================
+// SNAPSHOT WRITER (staged NIO buffer, length-prefixed sections)
+// =========================================================
+class SnapshotWriter implements Closeable {
+    private static final int STAGING_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer staging = ByteBuffer.allocateDirect(STAGING_SIZE);
+    private final CRC32 crc = new CRC32();
+    private long flushed;            // bytes already in the file
+    private long sectionHeaderAt = -1;
+    private int crcFrom;             // staging index where the unchecked body starts
+
+    SnapshotWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    long position() {
+        return flushed + staging.position();
+    }
+
+    // ---------------- Sections: [byte type][long length][int crc32][body] ----------------
+    void beginSection(byte type) throws IOException {
+        ensure(13);
+        staging.put(type);
+        sectionHeaderAt = position();
+        staging.putLong(0).putInt(0); // patched in endSection
+        crc.reset();
+        crcFrom = staging.position();
+    }
+
+    void endSection() throws IOException {
+        checksumStaged();
+        flush();
+        long length = position() - sectionHeaderAt - 12;
+        ByteBuffer header = ByteBuffer.allocate(12).putLong(length).putInt((int) crc.getValue());
+        header.flip();
+        while (header.hasRemaining()) channel.write(header, sectionHeaderAt + 12 - header.remaining());
+        sectionHeaderAt = -1;
+    }
+
+    // ---------------- Primitives ----------------
+    void putByte(int value) throws IOException { ensure(1); staging.put((byte) value); }
+    void putInt(int value) throws IOException { ensure(4); staging.putInt(value); }
+    void putLong(long value) throws IOException { ensure(8); staging.putLong(value); }
+
+    // Length-prefixed UTF-8, -1 for null
+    void putString(String value) throws IOException {
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int n = Math.min(staging.remaining(), bytes.length - offset);
+            staging.put(bytes, offset, n);
+            offset += n;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (staging.remaining() < bytes) {
+            checksumStaged();
+            flush();
+        }
+    }
+
+    private void checksumStaged() {
+        if (sectionHeaderAt >= 0 && staging.position() > crcFrom) {
+            ByteBuffer body = staging.duplicate();
+            body.position(crcFrom).limit(staging.position());
+            crc.update(body);
+        }
+        crcFrom = staging.position();
+    }
+
+    void flush() throws IOException {
+        staging.flip();
+        while (staging.hasRemaining()) flushed += channel.write(staging);
+        staging.clear();
+        crcFrom = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
+
+// =========================================================
+// HOSPITAL SNAPSHOT (versioned binary image of the whole system)
+// =========================================================
+//
+// Version 3 layout (big-endian):
+//   [int magic][int version][long lsn][int sectionCount]
+//   sectionCount x [byte type][long length][int crc32][body]
+//   [int magic]
+// Gender, disease and department values go through one string dictionary
+// (section DICTIONARY, always first), rows store the int code. A disease
+// the FieldDictionary keeps inline is code -2 followed by the string (new
+// in version 3; version 2 files are read the same way). Unknown section
+// types are skipped so older readers survive newer writers.
+public class HospitalSnapshot {
+    private static final int MAGIC = 0x484D5353; // "HMSS"
+    static final int VERSION = 3;
+
+    static final byte SECTION_DICTIONARY = 1;
+    static final byte SECTION_PATIENTS = 2;
+    static final byte SECTION_EMERGENCY = 3;
+    static final byte SECTION_OPD = 4;
+    static final byte SECTION_HISTORY = 5;
+    static final byte SECTION_DEPARTMENTS = 6;
+    static final byte SECTION_ACTIVITY = 7;     // only when activity is tracked
+    static final byte SECTION_OPD_ARRIVALS = 8; // arrival time per OPD patient, queue order
+
+    // ==================== WRITE ====================
+
+    // Writes to a temp file then atomically renames it into place
+    static void write(HospitalSystemLogic system, long lsn, Path file) throws IOException {
+        publish(capture(system, lsn, file), file);
+    }
+
+    // Streams the state into file's temp sibling, without forcing it to disk,
+    // and returns the temp file. The caller holds every component lock, so
+    // this is the only part of a checkpoint that stops other operations: rows
+    // go straight from the registry (cold ones decoded one at a time) into
+    // the staging buffer, and the OS page cache takes the bytes.
+    static Path capture(HospitalSystemLogic system, long lsn, Path file) throws IOException {
+        PatientManagement patientManagement = system.getPatientManagement();
+        List<EmergencyPatient> emergency = system.getEmergencyManagement().getAllEmergencyPatients();
+        OPDManagement opd = system.getOPDManagement();
+        List<OPDPatient> opdPatients = opd.getAllOPDPatients();
+        List<String> records = system.getMedicalHistory().getAllRecords();
+        DepartmentManagement departments = system.getDepartmentManagement();
+        List<String> departmentNames = departments.getDepartmentsPreOrder();
+        IntIntHashMap activity = patientManagement.getActivity();
+
+        // The dictionary section is the genders and the shared diseases as they
+        // are (so the rows can be streamed), then the OPD and department names.
+        // Every shared disease in the registry was added to the dictionary
+        // before its row, so its code is below diseases.
+        int genders = Patient.GENDERS.length;
+        int diseases = FieldDictionary.DISEASES.size();
+        StringDictionary names = new StringDictionary();
+        int[] opdCodes = new int[opdPatients.size()];
+        for (int i = 0; i < opdPatients.size(); i++) {
+            opdCodes[i] = offset(names.encode(opdPatients.get(i).getDepartment()), genders + diseases);
+        }
+        int[] departmentCodes = new int[departmentNames.size()];
+        for (int i = 0; i < departmentNames.size(); i++) {
+            departmentCodes[i] = offset(names.encode(departmentNames.get(i)), genders + diseases);
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotWriter out = new SnapshotWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(lsn);
+            out.putInt(activity == null ? 7 : 8);
+
+            out.beginSection(SECTION_DICTIONARY);
+            out.putInt(genders + diseases + names.values().size());
+            for (String gender : Patient.GENDERS) {
+                out.putString(gender);
+            }
+            for (int code = 0; code < diseases; code++) {
+                out.putString(FieldDictionary.DISEASES.value(code));
+            }
+            for (String value : names.values()) {
+                out.putString(value);
+            }
+            out.endSection();
+
+            out.beginSection(SECTION_PATIENTS);
+            out.putInt(patientManagement.getTotalPatients());
+            for (Patient p : patientManagement.patients()) {
+                out.putInt(p.getPatientId());
+                out.putInt(p.getPatientAge());
+                out.putInt(p.getGenderCode());
+                String disease = p.getDisease();
+                int code = FieldDictionary.DISEASES.code(disease);
+                if (disease != null && (code < 0 || code >= diseases)) {
+                    out.putInt(INLINE);
+                    out.putString(disease);
+                } else {
+                    out.putInt(offset(code, genders));
+                }
+                out.putString(p.getPatientName());
+                out.putString(p.getContact());
+            }
+            out.endSection();
+
+            out.beginSection(SECTION_EMERGENCY);
+            out.putInt(emergency.size());
+            for (EmergencyPatient e : emergency) {
+                out.putInt(e.getPatientId());
+                out.putInt(e.getPriority());
+                out.putLong(e.getArrivalTime());
+                out.putString(e.getPatientName());
+                out.putString(e.getCondition());
+            }
+            out.endSection();
+
+            out.beginSection(SECTION_OPD);
+            out.putInt(opd.getTokenCounter());
+            out.putInt(opdPatients.size());
+            for (int i = 0; i < opdPatients.size(); i++) {
+                OPDPatient o = opdPatients.get(i);
+                out.putInt(o.getTokenNumber());
+                out.putInt(o.getPatientId());
+                out.putInt(opdCodes[i]);
+                out.putString(o.getPatientName());
+            }
+            out.endSection();
+
+            // Separate section, so readers that predate it still load the OPD queue
+            out.beginSection(SECTION_OPD_ARRIVALS);
+            out.putInt(opdPatients.size());
+            for (OPDPatient o : opdPatients) {
+                out.putLong(o.getArrivalTime());
+            }
+            out.endSection();
+
+            out.beginSection(SECTION_HISTORY);
+            out.putInt(records.size());
+            for (String r : records) {
+                out.putString(r);
+            }
+            out.endSection();
+
+            out.beginSection(SECTION_DEPARTMENTS);
+            out.putInt(departmentNames.size());
+            for (int i = 0; i < departmentNames.size(); i++) {
+                out.putInt(departmentCodes[i]);
+                out.putInt(departments.getPatientCount(departmentNames.get(i)));
+            }
+            out.endSection();
+
+            if (activity != null) {
+                out.beginSection(SECTION_ACTIVITY);
+                out.putInt(activity.size());
+                for (int slot = 0; slot < activity.capacity(); slot++) {
+                    if (!activity.usedAt(slot)) continue;
+                    out.putInt(activity.keyAt(slot));
+                    out.putInt(activity.valueAt(slot));
+                }
+                out.endSection();
+            }
+
+            out.putInt(MAGIC); // trailer: a short file never loads
+            out.close();
+        }
+        return tmp;
+    }
+
+    // Forces a captured temp file to disk and renames it over file; needs no lock
+    static void publish(Path tmp, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Row code of a value written after it instead of through the dictionary
+    private static final int INLINE = -2;
+
+    // Dictionary code of a value in a later part of the dictionary; -1 (null) stays -1
+    private static int offset(int code, int base) {
+        return code < 0 ? -1 : base + code;
+    }
+
+    // ==================== READ ====================
+
+    // Loads the snapshot into empty components, returns its lsn
+    static long read(HospitalSystemLogic system, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            while (header.hasRemaining() && channel.read(header) >= 0) { }
+            header.flip();
+            if (header.remaining() < 16 || header.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION && version != 2) throw new IOException("Unsupported snapshot version " + version);
+            long lsn = header.getLong();
+
+            ByteBuffer countBuffer = ByteBuffer.allocate(4);
+            channel.read(countBuffer, 16);
+            int sections = countBuffer.flip().getInt();
+
+            long position = 20;
+            String[] dictionary = new String[0];
+            byte[] scratch = new byte[256];
+            ByteBuffer sectionHeader = ByteBuffer.allocate(13);
+            for (int s = 0; s < sections; s++) {
+                sectionHeader.clear();
+                while (sectionHeader.hasRemaining()) {
+                    if (channel.read(sectionHeader, position + sectionHeader.position()) < 0) {
+                        throw new IOException("Truncated snapshot: " + file);
+                    }
+                }
+                sectionHeader.flip();
+                byte type = sectionHeader.get();
+                long length = sectionHeader.getLong();
+                int storedCrc = sectionHeader.getInt();
+                position += 13;
+                if (length > Integer.MAX_VALUE || position + length > channel.size()) {
+                    throw new IOException("Corrupt section " + type + " in " + file);
+                }
+
+                // Each section is mapped on its own (a single mapping is capped at 2 GiB)
+                MappedByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                CRC32 crc = new CRC32();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != storedCrc) {
+                    throw new IOException("Checksum mismatch in section " + type + " of " + file);
+                }
+
+                switch (type) {
+                    case SECTION_DICTIONARY -> {
+                        dictionary = new String[body.getInt()];
+                        for (int i = 0; i < dictionary.length; i++) {
+                            scratch = ensureScratch(scratch, body);
+                            dictionary[i] = getString(body, scratch);
+                        }
+                    }
+                    case SECTION_PATIENTS -> readPatients(system.getPatientManagement(), body, dictionary, scratch);
+                    case SECTION_EMERGENCY -> {
+                        EmergencyManagement emergency = system.getEmergencyManagement();
+                        for (int i = body.getInt(); i > 0; i--) {
+                            int id = body.getInt();
+                            int priority = body.getInt();
+                            long arrival = body.getLong();
+                            scratch = ensureScratch(scratch, body);
+                            String name = getString(body, scratch);
+                            scratch = ensureScratch(scratch, body);
+                            emergency.admitPatient(new EmergencyPatient(id, name, priority,
+                                    getString(body, scratch), arrival));
+                        }
+                    }
+                    case SECTION_OPD -> {
+                        OPDManagement opd = system.getOPDManagement();
+                        opd.setTokenCounter(body.getInt());
+                        for (int i = body.getInt(); i > 0; i--) {
+                            int token = body.getInt();
+                            int id = body.getInt();
+                            String department = decode(dictionary, body.getInt());
+                            scratch = ensureScratch(scratch, body);
+                            opd.restorePatient(new OPDPatient(id, getString(body, scratch), token, department));
+                        }
+                    }
+                    case SECTION_OPD_ARRIVALS -> {
+                        // Follows SECTION_OPD; older snapshots leave arrival at load time
+                        List<OPDPatient> queued = system.getOPDManagement().getAllOPDPatients();
+                        int count = body.getInt();
+                        for (int i = 0; i < count && i < queued.size(); i++) {
+                            queued.get(i).setArrivalTime(body.getLong());
+                        }
+                    }
+                    case SECTION_HISTORY -> {
+                        MedicalHistoryManagement history = system.getMedicalHistory();
+                        for (int i = body.getInt(); i > 0; i--) {
+                            scratch = ensureScratch(scratch, body);
+                            history.restoreRecord(getString(body, scratch));
+                        }
+                    }
+                    case SECTION_DEPARTMENTS -> {
+                        DepartmentManagement departments = system.getDepartmentManagement();
+                        for (int i = body.getInt(); i > 0; i--) {
+                            String name = decode(dictionary, body.getInt());
+                            departments.restoreDepartment(name, body.getInt());
+                        }
+                    }
+                    case SECTION_ACTIVITY -> {
+                        // Ignored unless this run tracks activity too
+                        PatientManagement patients = system.getPatientManagement();
+                        for (int i = body.getInt(); i > 0; i--) {
+                            patients.setLastActiveDay(body.getInt(), body.getInt());
+                        }
+                    }
+                    default -> { } // newer section, skip
+                }
+                position += length;
+            }
+
+            ByteBuffer trailer = ByteBuffer.allocate(4);
+            if (channel.read(trailer, position) != 4 || trailer.flip().getInt() != MAGIC) {
+                throw new IOException("Truncated snapshot: " + file);
+            }
+            return lsn;
+        }
+    }
+
+    private static void readPatients(PatientManagement patients, ByteBuffer body,
+                                     String[] dictionary, byte[] scratch) {
+        for (int i = body.getInt(); i > 0; i--) {
+            int id = body.getInt();
+            int age = body.getInt();
+            String gender = decode(dictionary, body.getInt());
+            int diseaseCode = body.getInt();
+            String disease;
+            if (diseaseCode == INLINE) {
+                scratch = ensureScratch(scratch, body);
+                disease = getString(body, scratch);
+            } else {
+                disease = decode(dictionary, diseaseCode);
+            }
+            scratch = ensureScratch(scratch, body);
+            String name = getString(body, scratch);
+            scratch = ensureScratch(scratch, body);
+            patients.addPatient(id, name, age, gender, disease, getString(body, scratch));
+        }
+    }
+
+    private static String decode(String[] dictionary, int code) {
+        return code < 0 ? null : dictionary[code];
+    }
+
+    // Grows the scratch array to fit the next length-prefixed string
+    private static byte[] ensureScratch(byte[] scratch, ByteBuffer body) {
+        int length = body.getInt(body.position());
+        return length > scratch.length ? new byte[length] : scratch;
+    }
+
+    private static String getString(ByteBuffer body, byte[] scratch) {
+        int length = body.getInt();
+        if (length < 0) return null;
+        body.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -1,25 +1,87 @@
 package newpak;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
 
+// =========================================================
+// FIELD DICTIONARY (repeated text -> one shared String)
+// =========================================================
+//
+// Disease and department values repeat across millions of rows, so rows
+// share one String per distinct value. Any client can send a new value, so
+// the dictionary stops growing at maxValues and later values stay inline
+// (unshared) in the row. Gender is a closed set and is stored as a code
+// instead, see Patient.GENDERS.
+class FieldDictionary {
+    static final FieldDictionary DISEASES = new FieldDictionary(1 << 16);
+    static final FieldDictionary DEPARTMENTS = new FieldDictionary(1 << 12);
+
+    private final int maxValues;
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    FieldDictionary(int maxValues) {
+        this.maxValues = maxValues;
+    }
+
+    // The shared String equal to value; value itself once the dictionary is full
+    synchronized String share(String value) {
+        if (value == null) return null;
+        Integer code = codes.get(value);
+        if (code != null) return values.get(code);
+        if (values.size() < maxValues) {
+            codes.put(value, values.size());
+            values.add(value);
+        }
+        return value;
+    }
+
+    // Position of a shared value, -1 for null or a value kept inline;
+    // codes are never reused
+    synchronized int code(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    synchronized String value(int code) {
+        return values.get(code);
+    }
+
+    synchronized int size() {
+        return values.size();
+    }
+}
+
 // =========================================================
 // PATIENT CLASS (Linked List Node)
 // =========================================================
+//
+// Compact layout (40 bytes per object with compressed references): age and
+// gender are shorts, disease a String shared through FieldDictionary. Name
+// and contact are unique per patient and stay plain Strings.
 class Patient {
+    // The only genders accepted (ignoring case); genderCode indexes this, -1 for null
+    static final String[] GENDERS = {"Male", "Female", "Other"};
+
     private int patientId;
-    private String patientName;
-    private int patientAge;
-    private String gender;
     private String disease;
+    private short patientAge;
+    private short genderCode;
+    private String patientName;
     private String contact;
     Patient next;
+    Patient prev;
 
     public Patient(int id, String name, int age, String gender, String disease, String contact) {
         this.patientId = id;
         this.patientName = name;
-        this.patientAge = age;
-        this.gender = gender;
-        this.disease = disease;
+        setPatientAge(age);
+        setGender(gender);
+        setDisease(disease);
         this.contact = contact;
         this.next = null;
     }
@@ -28,118 +90,607 @@ class Patient {
     public int getPatientId() { return patientId; }
     public String getPatientName() { return patientName; }
     public int getPatientAge() { return patientAge; }
-    public String getGender() { return gender; }
+    public String getGender() { return genderCode < 0 ? null : GENDERS[genderCode]; }
     public String getDisease() { return disease; }
     public String getContact() { return contact; }
 
+    // Index into GENDERS (-1 for null), e.g. for the snapshot dictionary
+    int getGenderCode() { return genderCode; }
+
     // Setters
     public void setPatientName(String name) { this.patientName = name; }
-    public void setPatientAge(int age) { this.patientAge = age; }
-    public void setGender(String gender) { this.gender = gender; }
-    public void setDisease(String disease) { this.disease = disease; }
+    public void setDisease(String disease) { this.disease = FieldDictionary.DISEASES.share(disease); }
     public void setContact(String contact) { this.contact = contact; }
 
+    public void setGender(String gender) {
+        int code = genderCode(gender);
+        if (code == -2) {
+            throw new IllegalArgumentException("Unknown gender: " + gender);
+        }
+        this.genderCode = (short) code;
+    }
+
+    // Index into GENDERS, -1 for null, -2 for anything else
+    static int genderCode(String gender) {
+        if (gender == null) return -1;
+        for (int i = 0; i < GENDERS.length; i++) {
+            if (GENDERS[i].equalsIgnoreCase(gender)) return i;
+        }
+        return -2;
+    }
+
+    public void setPatientAge(int age) {
+        if (age < Short.MIN_VALUE || age > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Age out of range: " + age);
+        }
+        this.patientAge = (short) age;
+    }
+
+    // Takes every field but the ID and links from an already validated
+    // patient; cannot throw, so an update is never half applied
+    void copyFieldsFrom(Patient other) {
+        this.patientName = other.patientName;
+        this.patientAge = other.patientAge;
+        this.genderCode = other.genderCode;
+        this.disease = other.disease;
+        this.contact = other.contact;
+    }
+
+    // Unlinked copy, readable after the registry lock is released
+    Patient copy() {
+        Patient copy = new Patient(patientId, patientName, patientAge, null, null, contact);
+        copy.genderCode = genderCode;
+        copy.disease = disease;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return String.format("ID: %d | Name: %s | Age: %d | Gender: %s | Disease: %s | Contact: %s",
-                patientId, patientName, patientAge, gender, disease, contact);
+                patientId, patientName, getPatientAge(), getGender(), getDisease(), contact);
+    }
+}
+
+// =========================================================
+// PATIENT FIELD (query / index keys)
+// =========================================================
+enum PatientField {
+    ID, NAME, AGE, GENDER, DISEASE, CONTACT;
+
+    // Orders keys of one field (all Integer or all String)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static final Comparator<Object> KEY_ORDER = (a, b) -> ((Comparable) a).compareTo(b);
+
+    boolean isNumeric() {
+        return this == ID || this == AGE;
+    }
+
+    // Integer for numeric fields, lower-case text otherwise (null stays null)
+    Object key(Patient p) {
+        switch (this) {
+            case ID: return p.getPatientId();
+            case AGE: return p.getPatientAge();
+            case NAME: return lower(p.getPatientName());
+            case GENDER: return lower(p.getGender());
+            case DISEASE: return lower(p.getDisease());
+            default: return lower(p.getContact());
+        }
+    }
+
+    static String lower(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    static PatientField parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
+
+// =========================================================
+// PATIENT INDEX (sorted secondary index: field key -> patient IDs)
+// =========================================================
+// Holds IDs rather than nodes, so patients moved to the cold tier stay indexed.
+class PatientIndex {
+    private final PatientField field;
+    private final TreeMap<Object, Set<Integer>> entries = new TreeMap<>(PatientField.KEY_ORDER);
+
+    PatientIndex(PatientField field) {
+        this.field = field;
+    }
+
+    PatientField getField() {
+        return field;
+    }
+
+    void add(Patient p) {
+        Object key = field.key(p);
+        if (key != null) {
+            entries.computeIfAbsent(key, k -> new HashSet<>()).add(p.getPatientId());
+        }
+    }
+
+    void remove(Patient p) {
+        Object key = field.key(p);
+        if (key == null) return;
+        Set<Integer> set = entries.get(key);
+        if (set != null && set.remove(p.getPatientId()) && set.isEmpty()) {
+            entries.remove(key);
+        }
+    }
+
+    // Keys in [from, to]; null bounds are open
+    SortedMap<Object, Set<Integer>> range(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+        if (from == null && to == null) return entries;
+        if (from == null) return entries.headMap(to, toInclusive);
+        if (to == null) return entries.tailMap(from, fromInclusive);
+        if (PatientField.KEY_ORDER.compare(from, to) > 0) return Collections.emptySortedMap();
+        return entries.subMap(from, fromInclusive, to, toInclusive);
+    }
+
+    // Text keys starting with prefix
+    SortedMap<Object, Set<Integer>> prefix(String prefix) {
+        return entries.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    Set<Integer> get(Object key) {
+        Set<Integer> set = entries.get(key);
+        return set == null ? Collections.emptySet() : set;
+    }
+
+    int getKeyCount() {
+        return entries.size();
     }
 }
 
 // =========================================================
 // PATIENT MANAGEMENT (Linked List)
 // =========================================================
+//
+// Optional tiering (-Dhospital.hotPatients=N): at most N patients stay in
+// the list (the hot tier). The ID map then runs in access order and acts as
+// an LRU cache: adding or loading a patient beyond N moves the least
+// recently used one to a memory-mapped record file (HospitalColdStore).
+// searchPatient loads cold patients back into the hot tier; updatePatient
+// rewrites a cold patient's slot in place.
 class PatientManagement {
     private Patient head;
-    private Set<Integer> patientIds;
+    private Patient tail;        // O(1) append (bulk restore replays every add)
+    private Map<Integer, Patient> patientIndex;   // ID -> node, O(1) lookups
+    private final EnumMap<PatientField, PatientIndex> indexes = new EnumMap<>(PatientField.class);
+
+    // Last activity day (UTC epoch day) per patient; null unless inactive
+    // patients are archived (-Dhospital.archive.inactiveDays)
+    private IntIntHashMap lastActive;
+
+    // Tiering (cold == null: every patient stays in memory)
+    private int hotCapacity;
+    private HospitalColdStore cold;
+    private long hotHits;
+    private long coldHits;
+    private final List<ExportCursor> cursors = new ArrayList<>(1);
+
+    // Materialized system report and change events (null for a standalone component)
+    private HospitalReport report;
+    private HospitalChangeBus changes;
 
     public PatientManagement() {
         head = null;
-        patientIds = new HashSet<>();
+        tail = null;
+        patientIndex = new HashMap<>();
+    }
+
+    // Call while empty; hotCapacity >= 1
+    void enableTiering(int hotCapacity, java.nio.file.Path directory) {
+        this.hotCapacity = Math.max(1, hotCapacity);
+        this.cold = new HospitalColdStore(directory);
+        this.patientIndex = new LinkedHashMap<>(16, 0.75f, true);
     }
 
     public boolean addPatient(int id, String name, int age, String gender, String disease, String contact) {
-        if (patientIds.contains(id)) {
+        if (patientExists(id)) {
             return false; // ID already exists
         }
 
         Patient newPatient = new Patient(id, name, age, gender, disease, contact);
-        patientIds.add(id);
-
-        if (head == null) {
-            head = newPatient;
-        } else {
-            Patient temp = head;
-            while (temp.next != null)
-                temp = temp.next;
-            temp.next = newPatient;
+        touch(id);
+        patientIndex.put(id, newPatient);
+        for (PatientIndex index : indexes.values()) {
+            index.add(newPatient);
         }
+        link(newPatient);
+        evictColdest();
+        countChanged();
+        publish(HospitalChangeBus.Change.ADDED, newPatient);
         return true;
     }
 
+    // Every patient ID: hot patients in list order, then the cold ones
+    int[] patientIds() {
+        int[] ids = new int[getTotalPatients()];
+        int n = 0;
+        for (Patient p = head; p != null; p = p.next) {
+            ids[n++] = p.getPatientId();
+        }
+        if (cold != null) {
+            int[] coldIds = cold.ids();
+            System.arraycopy(coldIds, 0, ids, n, coldIds.length);
+        }
+        return ids;
+    }
+
+    // Rows offset .. offset + limit of patientIds(), without copying the
+    // rest: skipped hot patients are only walked, cold ones never decoded
+    List<Patient> page(int offset, int limit) {
+        List<Patient> rows = new ArrayList<>(Math.max(0, Math.min(limit, getTotalPatients() - offset)));
+        int n = 0;
+        for (Patient p = head; p != null && rows.size() < limit; p = p.next) {
+            if (n++ >= offset) rows.add(p);
+        }
+        if (rows.size() < limit && cold != null) {
+            int[] coldIds = cold.ids();
+            for (int i = Math.max(0, offset - n); i < coldIds.length && rows.size() < limit; i++) {
+                rows.add(cold.read(coldIds[i]));
+            }
+        }
+        return rows;
+    }
+
     public List<Patient> getAllPatients() {
-        List<Patient> patients = new ArrayList<>();
-        Patient temp = head;
-        while (temp != null) {
-            patients.add(temp);
-            temp = temp.next;
+        List<Patient> patients = new ArrayList<>(getTotalPatients());
+        for (Patient p : patients()) {
+            patients.add(p);
         }
         return patients;
     }
 
     public Patient searchPatient(int id) {
-        Patient temp = head;
-        while (temp != null) {
-            if (temp.getPatientId() == id) {
-                return temp;
-            }
-            temp = temp.next;
+        Patient patient = patientIndex.get(id);
+        if (patient != null || cold == null) {
+            hotHits++;
+            if (patient != null) touch(id);
+            return patient;
         }
-        return null;
+        if (!cursors.isEmpty()) {
+            // An export is walking the tiers; serve a copy and stay put
+            patient = cold.read(id);
+            if (patient != null) coldHits++;
+            return patient;
+        }
+        patient = cold.remove(id);
+        if (patient != null) {
+            coldHits++;
+            touch(id);
+            patientIndex.put(id, patient);
+            link(patient);
+            evictColdest();
+        }
+        return patient;
+    }
+
+    // Like searchPatient, but a cold patient is returned as a copy and stays cold
+    Patient peekPatient(int id) {
+        Patient patient = patientIndex.get(id);
+        return patient != null || cold == null ? patient : cold.read(id);
     }
 
     public boolean updatePatient(int id, String name, int age, String gender, String disease, String contact) {
-        Patient patient = searchPatient(id);
+        Patient patient = patientIndex.get(id);
+        if (patient == null && cold != null && cold.contains(id)) {
+            // Cold patients are rewritten in their slot without loading them
+            Patient updated = new Patient(id, name, age, gender, disease, contact);
+            Patient old = cold.read(id);
+            cold.write(updated);
+            touch(id);
+            for (PatientIndex index : indexes.values()) {
+                index.remove(old);
+                index.add(updated);
+            }
+            publish(HospitalChangeBus.Change.UPDATED, updated);
+            return true;
+        }
         if (patient != null) {
-            patient.setPatientName(name);
-            patient.setPatientAge(age);
-            patient.setGender(gender);
-            patient.setDisease(disease);
-            patient.setContact(contact);
+            // Validated (age range, gender) before the indexes are touched
+            Patient updated = new Patient(id, name, age, gender, disease, contact);
+            for (PatientIndex index : indexes.values()) {
+                index.remove(patient);
+            }
+            patient.copyFieldsFrom(updated);
+            for (PatientIndex index : indexes.values()) {
+                index.add(patient);
+            }
+            touch(id);
+            publish(HospitalChangeBus.Change.UPDATED, patient);
             return true;
         }
         return false;
     }
 
     public boolean deletePatient(int id) {
-        if (head == null) return false;
+        Patient target = patientIndex.remove(id);
+        if (target != null) {
+            unlink(target);
+        } else if (cold != null) {
+            target = cold.remove(id);
+        }
+        if (target == null) return false;
+        for (PatientIndex index : indexes.values()) {
+            index.remove(target);
+        }
+        if (lastActive != null) lastActive.remove(id, 0);
+        countChanged();
+        publish(HospitalChangeBus.Change.REMOVED, target);
+        return true;
+    }
 
-        if (head.getPatientId() == id) {
-            head = head.next;
-            patientIds.remove(id);
-            return true;
+    public int getTotalPatients() {
+        return patientIndex.size() + (cold == null ? 0 : cold.size());
+    }
+
+    void attach(HospitalReport report, HospitalChangeBus changes) {
+        this.report = report;
+        this.changes = changes;
+        countChanged();
+    }
+
+    private void countChanged() {
+        if (report != null) report.set(HospitalReport.Counter.TOTAL_PATIENTS, getTotalPatients());
+    }
+
+    private void publish(HospitalChangeBus.Change change, Patient patient) {
+        if (changes != null) changes.publish(HospitalChangeBus.Topic.PATIENTS, change, patient);
+    }
+
+    // Both tiers answer from memory; the cold file is not read
+    public boolean patientExists(int id) {
+        return patientIndex.containsKey(id) || (cold != null && cold.contains(id));
+    }
+
+    // Every patient: the in-memory list first, then the cold tier (decoded copies)
+    Iterable<Patient> patients() {
+        return () -> new Iterator<Patient>() {
+            private Patient node = head;
+            private Iterator<Patient> coldPatients;
+
+            public boolean hasNext() {
+                if (node != null) return true;
+                if (cold == null) return false;
+                if (coldPatients == null) coldPatients = cold.iterator();
+                return coldPatients.hasNext();
+            }
+
+            public Patient next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                if (node != null) {
+                    Patient current = node;
+                    node = node.next;
+                    return current;
+                }
+                return coldPatients.next();
+            }
+        };
+    }
+
+    // ---------------- Linked list (doubly linked: O(1) unlink on eviction) ----------------
+    private void link(Patient p) {
+        p.next = null;
+        p.prev = tail;
+        if (head == null) {
+            head = p;
+        } else {
+            tail.next = p;
+        }
+        tail = p;
+    }
+
+    private void unlink(Patient p) {
+        for (ExportCursor cursor : cursors) {
+            if (cursor.node == p) cursor.node = p.next;
         }
+        if (p.prev == null) head = p.next; else p.prev.next = p.next;
+        if (p.next == null) tail = p.prev; else p.next.prev = p.prev;
+        p.next = null;
+        p.prev = null;
+    }
+
+    // Moves least recently used patients to the cold file while over capacity
+    private void evictColdest() {
+        if (cold == null || patientIndex.size() <= hotCapacity || !cursors.isEmpty()) return;
+        Iterator<Patient> lru = patientIndex.values().iterator();
+        while (patientIndex.size() > hotCapacity) {
+            Patient p = lru.next();
+            lru.remove();
+            unlink(p);
+            cold.write(p);
+        }
+    }
+
+    // ---------------- Activity (inactive patient archival) ----------------
+    void enableActivityTracking() {
+        if (lastActive != null) return;
+        lastActive = new IntIntHashMap(Math.max(1024, getTotalPatients()));
+        for (Patient p : patients()) {
+            touch(p.getPatientId());
+        }
+    }
+
+    static int today() {
+        return (int) (System.currentTimeMillis() / 86_400_000L);
+    }
 
-        Patient prev = head;
-        Patient curr = head.next;
-        while (curr != null) {
-            if (curr.getPatientId() == id) {
-                prev.next = curr.next;
-                patientIds.remove(id);
-                return true;
+    private void touch(int id) {
+        if (lastActive != null) lastActive.put(id, today());
+    }
+
+    // null when tracking is off
+    IntIntHashMap getActivity() {
+        return lastActive;
+    }
+
+    int getLastActiveDay(int id) {
+        return lastActive == null ? Integer.MAX_VALUE : lastActive.get(id, Integer.MAX_VALUE);
+    }
+
+    // Snapshot restore: the day recorded before the restart, not today
+    void setLastActiveDay(int id, int day) {
+        if (lastActive != null && lastActive.containsKey(id)) lastActive.put(id, day);
+    }
+
+    // ---------------- Export cursor ----------------
+    // Walks every patient in short steps, each under the registry lock: the
+    // in-memory list, then the cold file in slot order. While a cursor is
+    // open no patient moves between the tiers (the in-memory tier may run
+    // over capacity meanwhile), so every patient present throughout is
+    // visited once; one deleted meanwhile is skipped, one added meanwhile
+    // may or may not be visited. Memory use does not grow with the registry.
+    final class ExportCursor implements AutoCloseable {
+        private Patient node = head;   // next in-memory patient
+        private int slot = -1;         // next cold slot, once the list is done
+
+        ExportCursor() {
+            cursors.add(this);
+        }
+
+        // Copies of up to max more patients, none when done; call with the registry lock held
+        List<Patient> next(int max) {
+            List<Patient> batch = new ArrayList<>(max);
+            while (slot < 0 && node != null && batch.size() < max) {
+                batch.add(node.copy());
+                node = node.next;
+            }
+            if (slot < 0 && node == null) slot = 0;
+            while (slot >= 0 && cold != null && slot < cold.getSlotCount() && batch.size() < max) {
+                Patient p = cold.readSlot(slot++);
+                if (p != null) batch.add(p);
             }
-            prev = curr;
-            curr = curr.next;
+            return batch;
+        }
+
+        // Call with the registry lock held
+        @Override
+        public void close() {
+            if (cursors.remove(this)) evictColdest();
         }
-        return false;
     }
 
-    public int getTotalPatients() {
-        return patientIds.size();
+    ExportCursor exportCursor() {
+        return new ExportCursor();
     }
 
-    public boolean patientExists(int id) {
-        return patientIds.contains(id);
+    // ---------------- Tier statistics ----------------
+    int getHotCount() {
+        return patientIndex.size();
+    }
+
+    HospitalColdStore getColdStore() {
+        return cold;
+    }
+
+    long getHotHits() {
+        return hotHits;
+    }
+
+    long getColdHits() {
+        return coldHits;
+    }
+
+    // ---------------- Secondary indexes ----------------
+    // ID lookups always use patientIndex; other fields are indexed on request
+    boolean createIndex(PatientField field) {
+        if (field == PatientField.ID || indexes.containsKey(field)) return false;
+        PatientIndex index = new PatientIndex(field);
+        for (Patient p : patients()) {
+            index.add(p);
+        }
+        indexes.put(field, index);
+        return true;
+    }
+
+    boolean dropIndex(PatientField field) {
+        return indexes.remove(field) != null;
+    }
+
+    PatientIndex getIndex(PatientField field) {
+        return indexes.get(field);
+    }
+
+    Set<PatientField> getIndexedFields() {
+        EnumSet<PatientField> fields = EnumSet.of(PatientField.ID);
+        fields.addAll(indexes.keySet());
+        return fields;
+    }
+
+    // ---------------- Type-ahead search ----------------
+    static final PatientField[] SEARCH_FIELDS = {PatientField.NAME, PatientField.DISEASE, PatientField.CONTACT};
+
+    // Patients a search examines for fields without an index
+    static final int SEARCH_SCAN_LIMIT = 100_000;
+
+    // At most limit IDs: the patient with ID text, then patients whose name,
+    // disease or contact starts with text (ignoring case). A field with a
+    // secondary index (-Dhospital.patientIndexes) costs time in proportion to
+    // limit; the other fields are checked by scanning at most
+    // SEARCH_SCAN_LIMIT patients, and the result says when that scan
+    // stopped short of the registry. Indexes are never built here: that
+    // takes seconds at 1M patients and would hold the registry lock meanwhile.
+    HospitalSystemLogic.PatientSearch search(String text, int limit) {
+        String prefix = PatientField.lower(text.trim());
+        if (prefix.isEmpty() || limit <= 0) return new HospitalSystemLogic.PatientSearch(new int[0], true);
+        Set<Integer> found = new LinkedHashSet<>();
+        if (prefix.chars().allMatch(Character::isDigit) && prefix.length() <= 10) {
+            long id = Long.parseLong(prefix);
+            if (id <= Integer.MAX_VALUE && peekPatient((int) id) != null) found.add((int) id);
+        }
+        List<PatientField> unindexed = new ArrayList<>();
+        for (PatientField field : SEARCH_FIELDS) {
+            PatientIndex index = indexes.get(field);
+            if (index == null) {
+                unindexed.add(field);
+                continue;
+            }
+            for (Set<Integer> ids : index.prefix(prefix).values()) {
+                for (Integer id : ids) {
+                    found.add(id);
+                    if (found.size() == limit) return new HospitalSystemLogic.PatientSearch(toArray(found), true);
+                }
+            }
+        }
+        int examined = 0;
+        if (!unindexed.isEmpty()) {
+            for (Patient p : patients()) {
+                if (examined == SEARCH_SCAN_LIMIT) {
+                    return new HospitalSystemLogic.PatientSearch(toArray(found), false);
+                }
+                examined++;
+                for (PatientField field : unindexed) {
+                    Object key = field.key(p);
+                    if (key != null && ((String) key).startsWith(prefix)) {
+                        found.add(p.getPatientId());
+                        if (found.size() == limit) return new HospitalSystemLogic.PatientSearch(toArray(found), true);
+                        break;
+                    }
+                }
+            }
+        }
+        return new HospitalSystemLogic.PatientSearch(toArray(found), true);
+    }
+
+    // Whether search would return p for text (views filter change events with it)
+    static boolean matchesSearch(Patient p, String text) {
+        String prefix = PatientField.lower(text.trim());
+        if (prefix.isEmpty()) return true;
+        if (prefix.equals(String.valueOf(p.getPatientId()))) return true;
+        for (PatientField field : SEARCH_FIELDS) {
+            Object key = field.key(p);
+            if (key != null && ((String) key).startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    private static int[] toArray(Set<Integer> ids) {
+        int[] array = new int[ids.size()];
+        int n = 0;
+        for (int id : ids) array[n++] = id;
+        return array;
     }
 }
 
@@ -155,11 +706,16 @@ class EmergencyPatient implements Comparable<EmergencyPatient> {
     private long arrivalTime;    // NEW (for same-priority ordering)
 
     public EmergencyPatient(int id, String name, int priority, String condition) {
+        this(id, name, priority, condition, System.currentTimeMillis()); // auto-set
+    }
+
+    // Used when restoring from a snapshot / log, keeps the original arrival
+    EmergencyPatient(int id, String name, int priority, String condition, long arrivalTime) {
         this.patientId = id;
         this.patientName = name;
         this.priority = priority;
         this.condition = condition;
-        this.arrivalTime = System.currentTimeMillis(); // auto-set
+        this.arrivalTime = arrivalTime;
     }
 
     public int getPatientId() { return patientId; }
@@ -194,6 +750,8 @@ class EmergencyManagement {
 
     private PriorityQueue<EmergencyPatient> queue;
     private int capacity;
+    private HospitalReport report;       // null for a standalone component
+    private HospitalChangeBus changes;
 
     public EmergencyManagement(int capacity) {
         this.capacity = capacity;
@@ -201,15 +759,27 @@ class EmergencyManagement {
     }
 
     public boolean addEmergencyPatient(int id, String name, int priority, String condition) {
+        return admitPatient(new EmergencyPatient(id, name, priority, condition));
+    }
+
+    // Offers an already built patient (keeps its arrival time)
+    boolean admitPatient(EmergencyPatient patient) {
         if (queue.size() >= capacity) {
             return false;
         }
-        queue.offer(new EmergencyPatient(id, name, priority, condition));
+        queue.offer(patient);
+        countChanged();
+        publish(HospitalChangeBus.Change.ADDED, patient);
         return true;
     }
 
     public EmergencyPatient treatNextPatient() {
-        return queue.poll(); // highest priority + earliest arrival
+        EmergencyPatient next = queue.poll(); // highest priority + earliest arrival
+        if (next != null) {
+            countChanged();
+            publish(HospitalChangeBus.Change.TREATED, next);
+        }
+        return next;
     }
 
     public EmergencyPatient peekNextPatient() {
@@ -231,6 +801,20 @@ class EmergencyManagement {
         return queue.size();
     }
 
+    void attach(HospitalReport report, HospitalChangeBus changes) {
+        this.report = report;
+        this.changes = changes;
+        countChanged();
+    }
+
+    private void countChanged() {
+        if (report != null) report.set(HospitalReport.Counter.EMERGENCY_PATIENTS, queue.size());
+    }
+
+    private void publish(HospitalChangeBus.Change change, EmergencyPatient patient) {
+        if (changes != null) changes.publish(HospitalChangeBus.Topic.EMERGENCY, change, patient);
+    }
+
     public boolean isEmpty() {
         return queue.isEmpty();
     }
@@ -243,24 +827,34 @@ class OPDPatient {
     private int patientId;
     private String patientName;
     private int tokenNumber;
-    private String department;
+    private String department;    // shared through FieldDictionary.DEPARTMENTS
+    private long arrivalTime;     // for wait-time statistics
 
     public OPDPatient(int id, String name, int token, String department) {
+        this(id, name, token, department, System.currentTimeMillis());
+    }
+
+    // Used when restoring from a snapshot / log, keeps the original arrival
+    OPDPatient(int id, String name, int token, String department, long arrivalTime) {
         this.patientId = id;
         this.patientName = name;
         this.tokenNumber = token;
-        this.department = department;
+        this.department = FieldDictionary.DEPARTMENTS.share(department);
+        this.arrivalTime = arrivalTime;
     }
 
     public int getPatientId() { return patientId; }
     public String getPatientName() { return patientName; }
     public int getTokenNumber() { return tokenNumber; }
     public String getDepartment() { return department; }
+    public long getArrivalTime() { return arrivalTime; }
+
+    void setArrivalTime(long arrivalTime) { this.arrivalTime = arrivalTime; }
 
     @Override
     public String toString() {
         return String.format("Token: %d | ID: %d | Name: %s | Department: %s",
-                tokenNumber, patientId, patientName, department);
+                tokenNumber, patientId, patientName, getDepartment());
     }
 }
 
@@ -270,6 +864,8 @@ class OPDPatient {
 class OPDManagement {
     private OPDPatient[] queue;
     private int front, rear, size, capacity, tokenCounter;
+    private HospitalReport report;       // null for a standalone component
+    private HospitalChangeBus changes;
 
     public OPDManagement(int capacity) {
         this.capacity = capacity;
@@ -281,16 +877,43 @@ class OPDManagement {
     }
 
     public boolean addOPDPatient(int id, String name, String department) {
+        return addOPDPatient(id, name, department, System.currentTimeMillis());
+    }
+
+    boolean addOPDPatient(int id, String name, String department, long arrivalTime) {
         if (size == capacity) {
             return false;
         }
         rear = (rear + 1) % capacity;
-        queue[rear] = new OPDPatient(id, name, tokenCounter, department);
+        queue[rear] = new OPDPatient(id, name, tokenCounter, department, arrivalTime);
         size++;
         tokenCounter++;
+        countChanged();
+        publish(HospitalChangeBus.Change.ADDED, queue[rear]);
+        return true;
+    }
+
+    // Re-enqueues a patient with its original token (snapshot restore)
+    boolean restorePatient(OPDPatient patient) {
+        if (size == capacity) {
+            return false;
+        }
+        rear = (rear + 1) % capacity;
+        queue[rear] = patient;
+        size++;
+        countChanged();
+        publish(HospitalChangeBus.Change.ADDED, patient);
         return true;
     }
 
+    int getTokenCounter() {
+        return tokenCounter;
+    }
+
+    void setTokenCounter(int tokenCounter) {
+        this.tokenCounter = tokenCounter;
+    }
+
     public OPDPatient treatNextPatient() {
         if (size == 0) {
             return null;
@@ -298,6 +921,8 @@ class OPDManagement {
         OPDPatient treated = queue[front];
         front = (front + 1) % capacity;
         size--;
+        countChanged();
+        publish(HospitalChangeBus.Change.TREATED, treated);
         return treated;
     }
 
@@ -317,6 +942,20 @@ class OPDManagement {
         return size;
     }
 
+    void attach(HospitalReport report, HospitalChangeBus changes) {
+        this.report = report;
+        this.changes = changes;
+        countChanged();
+    }
+
+    private void countChanged() {
+        if (report != null) report.set(HospitalReport.Counter.OPD_PATIENTS, size);
+    }
+
+    private void publish(HospitalChangeBus.Change change, OPDPatient patient) {
+        if (changes != null) changes.publish(HospitalChangeBus.Topic.OPD, change, patient);
+    }
+
     public boolean isEmpty() {
         return size == 0;
     }
@@ -333,6 +972,12 @@ class OPDManagement {
 class MedicalHistoryManagement {
     private Stack<String> historyStack;
     private int capacity;
+    // Record number of the bottom of the stack; record n is historyStack.get(n - firstNumber).
+    // Grows as old records are archived or cleared, so a number is never reused for
+    // an older record (the latest one's is, after removeLatestRecord).
+    private long firstNumber;
+    private HospitalReport report;       // null for a standalone component
+    private HospitalChangeBus changes;
 
     public MedicalHistoryManagement(int capacity) {
         this.capacity = capacity;
@@ -340,11 +985,30 @@ class MedicalHistoryManagement {
     }
 
     public boolean addMedicalRecord(String record) {
+        return addStampedRecord(record) != null;
+    }
+
+    // Returns the stored (timestamped) record, or null when full
+    String addStampedRecord(String record) {
         if (historyStack.size() >= capacity) {
-            return false;
+            return null;
         }
         String timestamp = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
-        historyStack.push(timestamp + " - " + record);
+        String stamped = timestamp + " - " + record;
+        historyStack.push(stamped);
+        countChanged();
+        publish(HospitalChangeBus.Change.ADDED, stamped);
+        return stamped;
+    }
+
+    // Pushes a record exactly as it was stored (snapshot / log restore)
+    boolean restoreRecord(String stamped) {
+        if (historyStack.size() >= capacity) {
+            return false;
+        }
+        historyStack.push(stamped);
+        countChanged();
+        publish(HospitalChangeBus.Change.ADDED, stamped);
         return true;
     }
 
@@ -352,13 +1016,80 @@ class MedicalHistoryManagement {
         if (historyStack.isEmpty()) {
             return null;
         }
-        return historyStack.pop();
+        String latest = historyStack.pop();
+        countChanged();
+        publish(HospitalChangeBus.Change.REMOVED, latest);
+        return latest;
     }
 
     public List<String> getAllRecords() {
         return new ArrayList<>(historyStack);
     }
 
+    // The oldest records (bottom of the stack) written before cutoff, at most max
+    List<String> getRecordsBefore(java.time.LocalDate cutoff, int max) {
+        List<String> oldest = new ArrayList<>();
+        for (String record : historyStack) {
+            if (oldest.size() == max || !HospitalArchive.recordDay(record).isBefore(cutoff)) break;
+            oldest.add(record);
+        }
+        return oldest;
+    }
+
+    // Numbers of the records (newest first) that mention patient: an ID as a
+    // whole number, or any other text case-insensitively; every record when blank
+    long[] findRecords(String patient) {
+        String filter = patient == null ? "" : patient.trim();
+        long[] numbers = new long[historyStack.size()];
+        int found = 0;
+        for (int i = historyStack.size() - 1; i >= 0; i--) {
+            if (filter.isEmpty() || mentions(historyStack.get(i), filter)) {
+                numbers[found++] = firstNumber + i;
+            }
+        }
+        return found == numbers.length ? numbers : Arrays.copyOf(numbers, found);
+    }
+
+    // The record with that number, or null when it is no longer in the stack
+    String getRecord(long number) {
+        long index = number - firstNumber;
+        return index >= 0 && index < historyStack.size() ? historyStack.get((int) index) : null;
+    }
+
+    static boolean mentions(String record, String patient) {
+        int text = record.indexOf(" - ");   // not the "yyyy-MM-dd HH:mm:ss" stamp
+        record = text < 0 ? record : record.substring(text + 3);
+        if (patient.chars().allMatch(Character::isDigit)) {
+            // "1001" matches "Patient 1001:" but not "11001" or "10012"
+            for (int at = record.indexOf(patient); at >= 0; at = record.indexOf(patient, at + 1)) {
+                int end = at + patient.length();
+                if ((at == 0 || !Character.isDigit(record.charAt(at - 1)))
+                        && (end == record.length() || !Character.isDigit(record.charAt(end)))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return record.toLowerCase().contains(patient.toLowerCase());
+    }
+
+    // Drops the n oldest records (they were archived)
+    void removeOldest(int n) {
+        firstNumber += Math.min(n, historyStack.size());
+        historyStack.subList(0, Math.min(n, historyStack.size())).clear();
+        countChanged();
+        publish(HospitalChangeBus.Change.CLEARED, null);
+    }
+
+    // Whether records are still the oldest ones, in order (same objects)
+    boolean startsWith(List<String> records) {
+        if (records.size() > historyStack.size()) return false;
+        for (int i = 0; i < records.size(); i++) {
+            if (historyStack.get(i) != records.get(i)) return false;
+        }
+        return true;
+    }
+
     public int getRecordCount() {
         return historyStack.size();
     }
@@ -368,7 +1099,24 @@ class MedicalHistoryManagement {
     }
 
     public void clearHistory() {
+        firstNumber += historyStack.size();
         historyStack.clear();
+        countChanged();
+        publish(HospitalChangeBus.Change.CLEARED, null);
+    }
+
+    void attach(HospitalReport report, HospitalChangeBus changes) {
+        this.report = report;
+        this.changes = changes;
+        countChanged();
+    }
+
+    private void countChanged() {
+        if (report != null) report.set(HospitalReport.Counter.MEDICAL_RECORDS, historyStack.size());
+    }
+
+    private void publish(HospitalChangeBus.Change change, String record) {
+        if (changes != null) changes.publish(HospitalChangeBus.Topic.MEDICAL_HISTORY, change, record);
     }
 }
 // =========================================================
@@ -392,6 +1140,8 @@ class DepartmentNode {
 class DepartmentManagement {
     private DepartmentNode root;
     private Map<String, Integer> departmentStats;
+    private HospitalReport report;       // null for a standalone component
+    private HospitalChangeBus changes;
 
     public DepartmentManagement() {
         root = null;
@@ -405,6 +1155,8 @@ class DepartmentManagement {
         }
         root = addRecursive(root, name);
         departmentStats.put(name.toLowerCase(), 0);
+        countChanged(name);
+        publish(HospitalChangeBus.Change.ADDED, name);
         return true;
     }
 
@@ -425,6 +1177,8 @@ class DepartmentManagement {
         if (!departmentStats.containsKey(name.toLowerCase())) return false;
         root = removeRecursive(root, name);
         departmentStats.remove(name.toLowerCase());
+        if (report != null) report.removeDepartment(name);
+        publish(HospitalChangeBus.Change.REMOVED, name);
         return true;
     }
 
@@ -477,6 +1231,8 @@ class DepartmentManagement {
         removeDepartment(oldName);
         addDepartment(newName);
         departmentStats.put(newName.toLowerCase(), count);
+        countChanged(newName);
+        publish(HospitalChangeBus.Change.UPDATED, newName);
         return true;
     }
 
@@ -485,6 +1241,8 @@ class DepartmentManagement {
         if (!departmentStats.containsKey(department.toLowerCase())) return false;
         departmentStats.put(department.toLowerCase(),
                 departmentStats.get(department.toLowerCase()) + 1);
+        countChanged(department);
+        publish(HospitalChangeBus.Change.UPDATED, department);
         return true;
     }
 
@@ -492,6 +1250,8 @@ class DepartmentManagement {
         if (!departmentStats.containsKey(department.toLowerCase())) return false;
         int count = departmentStats.get(department.toLowerCase());
         departmentStats.put(department.toLowerCase(), Math.max(0, count - 1));
+        countChanged(department);
+        publish(HospitalChangeBus.Change.UPDATED, department);
         return true;
     }
 
@@ -525,6 +1285,50 @@ class DepartmentManagement {
     public int countDepartments() {
         return departmentStats.size();
     }
+
+    // ---------------- Persistence Support ----------------
+    public int getPatientCount(String department) {
+        return departmentStats.getOrDefault(department.toLowerCase(), 0);
+    }
+
+    // Pre-order keeps the exact BST shape when the names are re-inserted
+    List<String> getDepartmentsPreOrder() {
+        List<String> departments = new ArrayList<>();
+        preOrderTraversal(root, departments);
+        return departments;
+    }
+
+    private void preOrderTraversal(DepartmentNode node, List<String> departments) {
+        if (node != null) {
+            departments.add(node.deptName);
+            preOrderTraversal(node.left, departments);
+            preOrderTraversal(node.right, departments);
+        }
+    }
+
+    boolean restoreDepartment(String name, int patientCount) {
+        if (!addDepartment(name)) return false;
+        departmentStats.put(name.toLowerCase(), patientCount);
+        countChanged(name);
+        publish(HospitalChangeBus.Change.UPDATED, name);
+        return true;
+    }
+
+    void attach(HospitalReport report, HospitalChangeBus changes) {
+        this.report = report;
+        this.changes = changes;
+        for (String dept : getAllDepartments()) {
+            countChanged(dept);
+        }
+    }
+
+    private void countChanged(String department) {
+        if (report != null) report.setDepartment(department, getPatientCount(department));
+    }
+
+    private void publish(HospitalChangeBus.Change change, String department) {
+        if (changes != null) changes.publish(HospitalChangeBus.Topic.DEPARTMENTS, change, department);
+    }
 }
 
 
@@ -542,6 +1346,29 @@ public class HospitalSystemLogic {
     private MedicalHistoryManagement medicalHistory;
     private DepartmentManagement departmentManagement;
 
+    // Durable state (null when running purely in memory)
+    private HospitalPersistence persistence;
+
+    // CompletableFuture variant of this facade, created on first use
+    private HospitalAsync async;
+
+    // Operation counters / latencies (-Dhospital.metrics=false to switch off)
+    private final HospitalMetrics metrics = new HospitalMetrics(this);
+
+    // Emergency / OPD waits per priority and department (hour, shift, day)
+    private final HospitalWaitTimes waitTimes = new HospitalWaitTimes();
+
+    // System report counters, updated by the components on every change
+    private final HospitalReport report = new HospitalReport(waitTimes);
+
+    // Added / updated / removed / treated events for views
+    private final HospitalChangeBus changes = new HospitalChangeBus();
+
+    // Discharged / inactive patients and old records (null without hospital.dataDir)
+    private HospitalArchive archive;
+    private int archiveInactiveDays;
+    private int archiveHistoryDays;
+
     // Configuration
     private static final int EMERGENCY_CAPACITY = 100;
     private static final int OPD_CAPACITY = 50;
@@ -551,6 +1378,14 @@ public class HospitalSystemLogic {
         initialize();
     }
 
+    // Standalone in-memory instance, not the singleton (benchmarks, tools)
+    HospitalSystemLogic(boolean withSampleData) {
+        createComponents();
+        if (withSampleData) {
+            initializeSampleData();
+        }
+    }
+
     public static synchronized HospitalSystemLogic getInstance() {
         if (instance == null) {
             instance = new HospitalSystemLogic();
@@ -558,15 +1393,73 @@ public class HospitalSystemLogic {
         return instance;
     }
 
-    private void initialize() {
+    private void createComponents() {
         patientManagement = new PatientManagement();
+        // -Dhospital.hotPatients=N keeps at most N patients in memory, the rest
+        // in a record file under hospital.dataDir (or the temp directory)
+        int hotPatients = Integer.getInteger("hospital.hotPatients", 0);
+        if (hotPatients > 0) {
+            String dir = System.getProperty("hospital.dataDir", System.getProperty("java.io.tmpdir"));
+            java.nio.file.Path path = java.nio.file.Paths.get(dir);
+            try {
+                java.nio.file.Files.createDirectories(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            patientManagement.enableTiering(hotPatients, path);
+        }
+        // -Dhospital.patientIndexes=age,disease,name (comma separated)
+        for (String field : System.getProperty("hospital.patientIndexes", "").split(",")) {
+            if (!field.isBlank()) patientManagement.createIndex(PatientField.parse(field));
+        }
+        // -Dhospital.archive.inactiveDays / historyDays: archive patients idle and
+        // medical records older than that many days (0 = never)
+        archiveInactiveDays = Integer.getInteger("hospital.archive.inactiveDays", 0);
+        archiveHistoryDays = Integer.getInteger("hospital.archive.historyDays", 0);
+        if (archiveInactiveDays > 0) {
+            patientManagement.enableActivityTracking();
+        }
         emergencyManagement = new EmergencyManagement(EMERGENCY_CAPACITY);
         opdManagement = new OPDManagement(OPD_CAPACITY);
         medicalHistory = new MedicalHistoryManagement(HISTORY_CAPACITY);
         departmentManagement = new DepartmentManagement();
 
-        // Initialize with some sample data
-        initializeSampleData();
+        patientManagement.attach(report, changes);
+        emergencyManagement.attach(report, changes);
+        opdManagement.attach(report, changes);
+        medicalHistory.attach(report, changes);
+        departmentManagement.attach(report, changes);
+    }
+
+    private void initialize() {
+        createComponents();
+        metrics.registerMBeans();
+
+        // -Dhospital.dataDir=<dir> turns on the write-ahead log + snapshots
+        String dataDir = System.getProperty("hospital.dataDir");
+        // -Dhospital.sampleData=false starts empty (e.g. shard processes)
+        boolean sampleData = !"false".equals(System.getProperty("hospital.sampleData"));
+        if (dataDir == null) {
+            // Initialize with some sample data
+            if (sampleData) {
+                initializeSampleData();
+            }
+            return;
+        }
+
+        java.nio.file.Path dir = java.nio.file.Paths.get(dataDir);
+        persistence = HospitalPersistence.open(dir, this);
+        // Before recovery, so patients deleted after the last snapshot are
+        // queued for the archive again; the archiver itself starts after it
+        attachArchive(dir.resolve("archive"));
+        if (!persistence.recover()) {
+            // Fresh data directory: seed it and make the seed durable
+            if (sampleData) {
+                initializeSampleData();
+            }
+            persistence.checkpoint();
+        }
+        startArchiver();
     }
 
     private void initializeSampleData() {
@@ -591,163 +1484,907 @@ public class HospitalSystemLogic {
         medicalHistory.addMedicalRecord("Patient 1003: X-ray results reviewed for arthritis");
     }
 
+    // ==================== COMPONENT ACCESS (persistence) ====================
+
+    PatientManagement getPatientManagement() { return patientManagement; }
+    EmergencyManagement getEmergencyManagement() { return emergencyManagement; }
+    OPDManagement getOPDManagement() { return opdManagement; }
+    MedicalHistoryManagement getMedicalHistory() { return medicalHistory; }
+    DepartmentManagement getDepartmentManagement() { return departmentManagement; }
+
+    // ==================== PERSISTENCE METHODS ====================
+
+    public boolean isPersistent() {
+        return persistence != null;
+    }
+
+    // Writes a snapshot and truncates the write-ahead log. Every component
+    // lock is held while the snapshot's state is captured (one consistent
+    // state), not while it is forced to disk.
+    public void checkpoint() {
+        if (persistence == null) return;
+        long start = metrics.beginShared(HospitalMetrics.Operation.CHECKPOINT);
+        persistence.checkpoint(this::runLocked);
+        metrics.endShared(HospitalMetrics.Operation.CHECKPOINT, start);
+    }
+
+    // Runs action with every component lock held, so no mutation (and no
+    // log record) can interleave with it
+    void runLocked(Runnable action) {
+        synchronized (patientManagement) {
+            synchronized (emergencyManagement) {
+                synchronized (opdManagement) {
+                    synchronized (departmentManagement) {
+                        synchronized (medicalHistory) {
+                            action.run();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    HospitalPersistence getPersistence() {
+        return persistence;
+    }
+
+    // Makes an in-memory instance durable from its current state on (e.g. a
+    // promoted replica). lastLsn continues the log sequence it was built from.
+    void attachPersistence(java.nio.file.Path dir, long lastLsn) {
+        runLocked(() -> {
+            if (persistence != null) {
+                throw new IllegalStateException("Persistence already attached");
+            }
+            persistence = HospitalPersistence.open(dir, this);
+            persistence.restartAt(lastLsn);
+            persistence.checkpoint();
+        });
+    }
+
+    // ==================== ARCHIVE ====================
+
+    // Opens the archive; no pass runs until startArchiver
+    void attachArchive(java.nio.file.Path dir) {
+        archive = new HospitalArchive(dir);
+    }
+
+    // -Dhospital.archive.intervalMs: how often the archiver runs (default 1 min).
+    // Only once recovery is over: a pass takes the registry and then the log,
+    // which recovery takes the other way round.
+    void startArchiver() {
+        if (archive != null) {
+            archive.start(this::archiveNow, Long.getLong("hospital.archive.intervalMs", 60_000L));
+        }
+    }
+
+    HospitalArchive getArchive() {
+        return archive;
+    }
+
+    // A patient that left the registry (discharged or inactive), or null
+    public HospitalArchive.ArchivedPatient searchArchivedPatient(int id) {
+        return archive == null ? null : archive.searchPatient(id);
+    }
+
+    // Archived medical records written between from and to (inclusive)
+    public List<String> getArchivedRecords(java.time.LocalDate from, java.time.LocalDate to) {
+        return archive == null ? new ArrayList<>() : archive.getRecords(from, to);
+    }
+
+    public Map<String, Long> getArchiveStats() {
+        return archive == null ? new LinkedHashMap<>() : archive.getStats();
+    }
+
+    // One archiver pass (normally on the archiver thread)
+    public void archiveNow() {
+        if (archive == null) return;
+        archive.flushPending();
+        if (archiveInactiveDays > 0) {
+            archiveInactivePatients(PatientManagement.today() - archiveInactiveDays);
+        }
+        if (archiveHistoryDays > 0) {
+            archiveOldRecords(java.time.LocalDate.now().minusDays(archiveHistoryDays));
+        }
+    }
+
+    // Moves patients whose last activity was before cutoffDay to the archive.
+    // The registry is locked per chunk to pick rows and again to remove them;
+    // the segment is written in between without any lock held.
+    int archiveInactivePatients(int cutoffDay) {
+        // Removals shift later map entries back past the scan position, so
+        // scan again until a pass finds nothing
+        int total = 0;
+        for (int archived; (archived = scanInactivePatients(cutoffDay)) > 0; ) {
+            total += archived;
+        }
+        return total;
+    }
+
+    private int scanInactivePatients(int cutoffDay) {
+        int archived = 0;
+        int slot = 0;
+        boolean done = false;
+        while (!done) {
+            List<HospitalArchive.ArchivedPatient> batch = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            synchronized (patientManagement) {
+                IntIntHashMap activity = patientManagement.getActivity();
+                if (activity == null) return 0;
+                int end = Math.min(activity.capacity(), slot + 65_536);
+                for (; slot < end && batch.size() < HospitalArchive.SEGMENT_PATIENTS; slot++) {
+                    if (activity.usedAt(slot) && activity.valueAt(slot) < cutoffDay) {
+                        Patient p = patientManagement.peekPatient(activity.keyAt(slot));
+                        if (p == null) continue;
+                        // Copy: a hot patient may be updated while the segment is written
+                        Patient copy = new Patient(p.getPatientId(), p.getPatientName(), p.getPatientAge(),
+                                p.getGender(), p.getDisease(), p.getContact());
+                        batch.add(new HospitalArchive.ArchivedPatient(copy, now, HospitalArchive.Reason.INACTIVE));
+                    }
+                }
+                done = slot >= activity.capacity();
+            }
+            if (batch.isEmpty()) continue;
+            archive.writePatients(batch);
+            synchronized (patientManagement) {
+                for (HospitalArchive.ArchivedPatient row : batch) {
+                    int id = row.getPatient().getPatientId();
+                    // Skip patients used again while the segment was written
+                    if (patientManagement.getLastActiveDay(id) < cutoffDay && removeArchivedPatient(id)) {
+                        archived++;
+                    }
+                }
+            }
+        }
+        return archived;
+    }
+
+    // Moves medical records written before cutoff to the archive
+    int archiveOldRecords(java.time.LocalDate cutoff) {
+        List<String> oldest;
+        synchronized (medicalHistory) {
+            oldest = medicalHistory.getRecordsBefore(cutoff, HISTORY_CAPACITY);
+        }
+        if (oldest.isEmpty()) return 0;
+        archive.writeHistory(oldest);
+        synchronized (medicalHistory) {
+            // Removed or cleared meanwhile: the archive copy stays, the stack is left alone
+            if (!medicalHistory.startsWith(oldest)) return 0;
+            removeArchivedRecords(oldest.size());
+        }
+        return oldest.size();
+    }
+
+    // Drops an archived patient from the registry (also log replay)
+    boolean removeArchivedPatient(int id) {
+        synchronized (patientManagement) {
+            boolean success = patientManagement.deletePatient(id);
+            if (success && persistence != null) {
+                persistence.logArchivePatient(id);
+            }
+            return success;
+        }
+    }
+
+    // Drops the n oldest medical records (also log replay)
+    void removeArchivedRecords(int n) {
+        synchronized (medicalHistory) {
+            medicalHistory.removeOldest(n);
+            if (persistence != null) {
+                persistence.logArchiveRecords(n);
+            }
+        }
+    }
+
+    // Forces every buffered log record to disk
+    public void flush() {
+        if (persistence != null) {
+            persistence.flush();
+        }
+    }
+
+    public synchronized HospitalAsync async() {
+        if (async == null) {
+            async = new HospitalAsync(this);
+        }
+        return async;
+    }
+
+    public void shutdown() {
+        HospitalAsync pending;
+        synchronized (this) {
+            pending = async;
+        }
+        if (pending != null) {
+            // Let queued commands reach the log before it is closed
+            pending.shutdown();
+            try {
+                pending.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (archive != null) {
+            archive.close();
+        }
+        if (persistence != null) {
+            persistence.close();
+        }
+        metrics.unregisterMBeans();
+    }
+
+    // ==================== METRICS ====================
+
+    public HospitalMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Text table of operation counts, latency percentiles and queue depths
+    public String getMetricsReport() {
+        return metrics.dump();
+    }
+
+    // ==================== THREAD SAFETY ====================
+    //
+    // Each component is guarded by its own monitor, so independent modules
+    // can be used in parallel (GUI, HTTP API, importers). The log record is
+    // appended while the monitor is held, which keeps log order equal to the
+    // order the changes were applied. Lock order when more than one is
+    // needed: patients -> emergency -> OPD -> departments -> history.
+
     // ==================== PATIENT MANAGEMENT METHODS ====================
 
     public boolean addPatient(int id, String name, int age, String gender, String disease, String contact) {
-        return patientManagement.addPatient(id, name, age, gender, disease, contact);
+        HospitalEvents.PatientRegistration event = new HospitalEvents.PatientRegistration();
+        event.begin();
+        boolean success;
+        synchronized (patientManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.ADD_PATIENT);
+            success = patientManagement.addPatient(id, name, age, gender, disease, contact);
+            if (success && persistence != null) {
+                persistence.logAddPatient(id, name, age, gender, disease, contact);
+            }
+            metrics.end(HospitalMetrics.Operation.ADD_PATIENT, start);
+        }
+        if (event.shouldCommit()) {
+            event.patientId = id;
+            event.disease = disease;
+            event.registered = success;
+            event.commit();
+        }
+        return success;
     }
 
     public List<Patient> getAllPatients() {
-        return patientManagement.getAllPatients();
+        synchronized (patientManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.LIST_PATIENTS);
+            List<Patient> result = patientManagement.getAllPatients();
+            metrics.end(HospitalMetrics.Operation.LIST_PATIENTS, start);
+            return result;
+        }
     }
 
     public Patient searchPatient(int id) {
-        return patientManagement.searchPatient(id);
+        synchronized (patientManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.SEARCH_PATIENT);
+            Patient result = patientManagement.searchPatient(id);
+            metrics.end(HospitalMetrics.Operation.SEARCH_PATIENT, start);
+            return result;
+        }
+    }
+
+    // Patient IDs in registry order, 4 bytes a row, for views that read
+    // rows on demand. whileLocked runs before the registry is unlocked, so a
+    // view can drop queued change events these IDs already include.
+    int[] getPatientIds(Runnable whileLocked) {
+        synchronized (patientManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.LIST_PATIENTS);
+            int[] ids = patientManagement.patientIds();
+            whileLocked.run();
+            metrics.end(HospitalMetrics.Operation.LIST_PATIENTS, start);
+            return ids;
+        }
+    }
+
+    // IDs found by searchPatients. A field without an index is checked by
+    // scanning at most PatientManagement.SEARCH_SCAN_LIMIT patients; when
+    // the registry is larger the IDs cover only the patients scanned and
+    // isComplete is false.
+    public static final class PatientSearch {
+        private final int[] ids;
+        private final boolean complete;
+
+        PatientSearch(int[] ids, boolean complete) {
+            this.ids = ids;
+            this.complete = complete;
+        }
+
+        public int[] getIds() {
+            return ids;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    // Search-as-you-type: the patient with ID text, then patients whose name,
+    // disease or contact starts with text, at most limit. Reads the name,
+    // disease and contact indexes that exist (-Dhospital.patientIndexes) and
+    // never builds one; see PatientSearch for fields without an index.
+    public PatientSearch searchPatients(String text, int limit) {
+        return searchPatientIds(text, limit, () -> { });
+    }
+
+    // whileLocked as in getPatientIds
+    PatientSearch searchPatientIds(String text, int limit, Runnable whileLocked) {
+        long start = metrics.beginShared(HospitalMetrics.Operation.QUERY_PATIENTS);
+        PatientSearch found;
+        synchronized (patientManagement) {
+            found = patientManagement.search(text, limit);
+            whileLocked.run();
+        }
+        metrics.endShared(HospitalMetrics.Operation.QUERY_PATIENTS, start);
+        return found;
+    }
+
+    // For display: not counted as activity, and a cold patient is read as a
+    // copy instead of being loaded into memory
+    // Peeks a page of rows under one lock: unlinked copies, safe to read on
+    // the EDT afterwards; null where a patient no longer exists
+    Patient[] peekPatients(int[] ids) {
+        Patient[] patients = new Patient[ids.length];
+        synchronized (patientManagement) {
+            for (int i = 0; i < ids.length; i++) {
+                Patient p = patientManagement.peekPatient(ids[i]);
+                if (p != null) patients[i] = p.copy();
+            }
+        }
+        return patients;
     }
 
     public boolean updatePatient(int id, String name, int age, String gender, String disease, String contact) {
-        return patientManagement.updatePatient(id, name, age, gender, disease, contact);
+        synchronized (patientManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.UPDATE_PATIENT);
+            try {
+                // Throws before changing anything when a value is invalid (e.g. age)
+                boolean success = patientManagement.updatePatient(id, name, age, gender, disease, contact);
+                if (success && persistence != null) {
+                    persistence.logUpdatePatient(id, name, age, gender, disease, contact);
+                }
+                return success;
+            } finally {
+                metrics.end(HospitalMetrics.Operation.UPDATE_PATIENT, start);
+            }
+        }
     }
 
+    // Discharge: with an archive the patient's last state is kept there
     public boolean deletePatient(int id) {
-        return patientManagement.deletePatient(id);
+        synchronized (patientManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.DELETE_PATIENT);
+            Patient removed = archive == null ? null : patientManagement.peekPatient(id);
+            boolean success = patientManagement.deletePatient(id);
+            if (success && persistence != null) {
+                persistence.logDeletePatient(id);
+            }
+            boolean replayed = persistence != null && persistence.isReplaying();
+            if (success && archive != null && archive.discharge(removed, replayed)) {
+                archive.requestPass();
+            }
+            metrics.end(HospitalMetrics.Operation.DELETE_PATIENT, start);
+            return success;
+        }
     }
 
     public int getTotalPatients() {
-        return patientManagement.getTotalPatients();
+        synchronized (patientManagement) {
+            return patientManagement.getTotalPatients();
+        }
+    }
+
+    // One page of the registry (as getPatientIds orders it) and its size
+    public HospitalQuery.Page getPatientPage(int offset, int limit) {
+        synchronized (patientManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.LIST_PATIENTS);
+            HospitalQuery.Page page = new HospitalQuery.Page(patientManagement.getTotalPatients(),
+                    patientManagement.page(offset, limit));
+            metrics.end(HospitalMetrics.Operation.LIST_PATIENTS, start);
+            return page;
+        }
+    }
+
+    // Filter language, see HospitalQuery (e.g. "gender = female and age > 65")
+    public List<Patient> queryPatients(String query) {
+        long start = metrics.beginShared(HospitalMetrics.Operation.QUERY_PATIENTS);
+        List<Patient> result = HospitalQuery.compile(query).execute(this);
+        metrics.endShared(HospitalMetrics.Operation.QUERY_PATIENTS, start);
+        return result;
+    }
+
+    // Matches offset .. offset + limit of a query, and how many match in all
+    public HospitalQuery.Page queryPatients(String query, int offset, int limit) {
+        long start = metrics.beginShared(HospitalMetrics.Operation.QUERY_PATIENTS);
+        HospitalQuery.Page page = HospitalQuery.compile(query).execute(this, offset, limit);
+        metrics.endShared(HospitalMetrics.Operation.QUERY_PATIENTS, start);
+        return page;
+    }
+
+    // Chosen access path, row count and time of one run
+    public String explainPatientQuery(String query) {
+        return HospitalQuery.compile(query).explain(this);
+    }
+
+    // Secondary index on name, age, gender, disease or contact (ID is always indexed)
+    public boolean createPatientIndex(String field) {
+        synchronized (patientManagement) {
+            return patientManagement.createIndex(PatientField.parse(field));
+        }
+    }
+
+    public boolean dropPatientIndex(String field) {
+        synchronized (patientManagement) {
+            return patientManagement.dropIndex(PatientField.parse(field));
+        }
+    }
+
+    // Hot / cold tier sizes and how lookups were served
+    public Map<String, Long> getPatientStorageStats() {
+        synchronized (patientManagement) {
+            Map<String, Long> stats = new LinkedHashMap<>();
+            HospitalColdStore cold = patientManagement.getColdStore();
+            stats.put("Hot Patients", (long) patientManagement.getHotCount());
+            stats.put("Cold Patients", cold == null ? 0L : cold.size());
+            stats.put("Cold File Bytes", cold == null ? 0L : cold.getFileBytes());
+            stats.put("Lookups From Memory", patientManagement.getHotHits());
+            stats.put("Lookups From Cold File", patientManagement.getColdHits());
+            stats.put("Cold Writes", cold == null ? 0L : cold.getWrites());
+            stats.put("Cold Overflow Bytes", cold == null ? 0L : cold.getOverflowBytes());
+            stats.put("Cold Overflow Garbage", cold == null ? 0L : cold.getOverflowGarbage());
+            return stats;
+        }
     }
 
     public boolean patientExists(int id) {
-        return patientManagement.patientExists(id);
+        synchronized (patientManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.PATIENT_EXISTS);
+            boolean result = patientManagement.patientExists(id);
+            metrics.end(HospitalMetrics.Operation.PATIENT_EXISTS, start);
+            return result;
+        }
     }
 
     // ==================== EMERGENCY MANAGEMENT METHODS ====================
 
     public boolean addEmergencyPatient(int id, String name, int priority, String condition) {
-        return emergencyManagement.addEmergencyPatient(id, name, priority, condition);
+        HospitalEvents.EmergencyEnqueue event = new HospitalEvents.EmergencyEnqueue();
+        event.begin();
+        EmergencyPatient patient = new EmergencyPatient(id, name, priority, condition);
+        boolean success;
+        int depth;
+        synchronized (emergencyManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.ADD_EMERGENCY);
+            success = emergencyManagement.admitPatient(patient);
+            if (success && persistence != null) {
+                persistence.logAddEmergencyPatient(patient);
+            }
+            depth = emergencyManagement.getEmergencyCount();
+            metrics.end(HospitalMetrics.Operation.ADD_EMERGENCY, start);
+        }
+        if (event.shouldCommit()) {
+            event.patientId = id;
+            event.priority = priority;
+            event.admitted = success;
+            event.queueDepth = depth;
+            event.commit();
+        }
+        return success;
+    }
+
+    // A logged admission with its original arrival time (log replay and
+    // replicas), under the same lock as the other queue writers
+    boolean admitEmergencyPatient(EmergencyPatient patient) {
+        synchronized (emergencyManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.ADD_EMERGENCY);
+            boolean success = emergencyManagement.admitPatient(patient);
+            if (success && persistence != null) {
+                persistence.logAddEmergencyPatient(patient);
+            }
+            metrics.end(HospitalMetrics.Operation.ADD_EMERGENCY, start);
+            return success;
+        }
     }
 
     public EmergencyPatient treatNextEmergencyPatient() {
-        return emergencyManagement.treatNextPatient();
+        HospitalEvents.EmergencyTreatment event = new HospitalEvents.EmergencyTreatment();
+        event.begin();
+        EmergencyPatient patient;
+        int depth;
+        synchronized (emergencyManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.TREAT_EMERGENCY);
+            patient = emergencyManagement.treatNextPatient();
+            if (patient != null && persistence != null) {
+                persistence.logTreatNextEmergencyPatient();
+            }
+            if (patient != null && isLive()) {
+                waitTimes.recordEmergency(patient, System.currentTimeMillis());
+                report.changed();
+            }
+            depth = emergencyManagement.getEmergencyCount();
+            metrics.end(HospitalMetrics.Operation.TREAT_EMERGENCY, start);
+        }
+        if (patient != null && event.shouldCommit()) {
+            event.patientId = patient.getPatientId();
+            event.priority = patient.getPriority();
+            event.waitMillis = System.currentTimeMillis() - patient.getArrivalTime();
+            event.queueDepth = depth;
+            event.commit();
+        }
+        return patient;
     }
 
     public List<EmergencyPatient> getAllEmergencyPatients() {
-        return emergencyManagement.getAllEmergencyPatients();
+        synchronized (emergencyManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.LIST_EMERGENCY);
+            List<EmergencyPatient> result = emergencyManagement.getAllEmergencyPatients();
+            metrics.end(HospitalMetrics.Operation.LIST_EMERGENCY, start);
+            return result;
+        }
     }
 
     public int getEmergencyCount() {
-        return emergencyManagement.getEmergencyCount();
+        synchronized (emergencyManagement) {
+            return emergencyManagement.getEmergencyCount();
+        }
     }
 
     public EmergencyPatient peekNextEmergencyPatient() {
-        return emergencyManagement.peekNextPatient();
+        synchronized (emergencyManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.PEEK_EMERGENCY);
+            EmergencyPatient result = emergencyManagement.peekNextPatient();
+            metrics.end(HospitalMetrics.Operation.PEEK_EMERGENCY, start);
+            return result;
+        }
     }
 
     // ==================== OPD MANAGEMENT METHODS ====================
 
     public boolean addOPDPatient(int id, String name, String department) {
-        if (departmentManagement.departmentExists(department)) {
-            boolean success = opdManagement.addOPDPatient(id, name, department);
-            if (success) {
-                departmentManagement.incrementPatientCount(department);
+        return addOPDPatient(id, name, department, System.currentTimeMillis());
+    }
+
+    // arrivalTime: now, or the original arrival when replaying the log
+    boolean addOPDPatient(int id, String name, String department, long arrivalTime) {
+        HospitalEvents.OPDTokenIssue event = new HospitalEvents.OPDTokenIssue();
+        event.begin();
+        boolean success;
+        int token;
+        int depth;
+        synchronized (opdManagement) {
+            synchronized (departmentManagement) {
+                long start = metrics.begin(HospitalMetrics.Operation.ADD_OPD);
+                success = departmentManagement.departmentExists(department)
+                        && opdManagement.addOPDPatient(id, name, department, arrivalTime);
+                if (success) {
+                    departmentManagement.incrementPatientCount(department);
+                    commitDepartmentCountChange(department, id);
+                    if (persistence != null) {
+                        persistence.logAddOPDPatient(id, name, department, arrivalTime);
+                    }
+                }
+                token = success ? opdManagement.getTokenCounter() - 1 : 0;
+                depth = opdManagement.getOPDCount();
+                metrics.end(HospitalMetrics.Operation.ADD_OPD, start);
             }
-            return success;
         }
-        return false;
+        if (event.shouldCommit()) {
+            event.patientId = id;
+            event.token = token;
+            event.department = department;
+            event.queueDepth = depth;
+            event.commit();
+        }
+        return success;
     }
 
     public OPDPatient treatNextOPDPatient() {
-        OPDPatient patient = opdManagement.treatNextPatient();
-        if (patient != null) {
-            departmentManagement.incrementPatientCount(patient.getDepartment());
+        HospitalEvents.OPDServe event = new HospitalEvents.OPDServe();
+        event.begin();
+        OPDPatient patient;
+        int depth;
+        synchronized (opdManagement) {
+            synchronized (departmentManagement) {
+                long start = metrics.begin(HospitalMetrics.Operation.TREAT_OPD);
+                patient = opdManagement.treatNextPatient();
+                if (patient != null) {
+                    departmentManagement.incrementPatientCount(patient.getDepartment());
+                    commitDepartmentCountChange(patient.getDepartment(), patient.getPatientId());
+                    if (persistence != null) {
+                        persistence.logTreatNextOPDPatient();
+                    }
+                    if (isLive()) {
+                        waitTimes.recordOPD(patient, System.currentTimeMillis());
+                        report.changed();
+                    }
+                }
+                depth = opdManagement.getOPDCount();
+                metrics.end(HospitalMetrics.Operation.TREAT_OPD, start);
+            }
+        }
+        if (patient != null && event.shouldCommit()) {
+            event.patientId = patient.getPatientId();
+            event.token = patient.getTokenNumber();
+            event.department = patient.getDepartment();
+            event.queueDepth = depth;
+            event.commit();
         }
         return patient;
     }
 
+    // False while recovery replays the log: treatments then happened long ago
+    // and their real time is unknown, so they stay out of the wait statistics
+    private boolean isLive() {
+        return persistence == null || !persistence.isReplaying();
+    }
+
+    // Caller holds the departments lock
+    private void commitDepartmentCountChange(String department, int patientId) {
+        HospitalEvents.DepartmentCountChange event = new HospitalEvents.DepartmentCountChange();
+        if (event.shouldCommit()) {
+            event.department = department;
+            event.patientId = patientId;
+            event.patientCount = departmentManagement.getPatientCount(department);
+            event.commit();
+        }
+    }
+
     public List<OPDPatient> getAllOPDPatients() {
-        return opdManagement.getAllOPDPatients();
+        synchronized (opdManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.LIST_OPD);
+            List<OPDPatient> result = opdManagement.getAllOPDPatients();
+            metrics.end(HospitalMetrics.Operation.LIST_OPD, start);
+            return result;
+        }
     }
 
     public int getOPDCount() {
-        return opdManagement.getOPDCount();
+        synchronized (opdManagement) {
+            return opdManagement.getOPDCount();
+        }
     }
 
     public OPDPatient peekNextOPDPatient() {
-        return opdManagement.peekNextPatient();
+        synchronized (opdManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.PEEK_OPD);
+            OPDPatient result = opdManagement.peekNextPatient();
+            metrics.end(HospitalMetrics.Operation.PEEK_OPD, start);
+            return result;
+        }
     }
 
     // ==================== MEDICAL HISTORY METHODS ====================
 
     public boolean addMedicalRecord(String record) {
-        return medicalHistory.addMedicalRecord(record);
+        HospitalEvents.HistoryAppend event = new HospitalEvents.HistoryAppend();
+        event.begin();
+        String stamped;
+        int count;
+        synchronized (medicalHistory) {
+            long start = metrics.begin(HospitalMetrics.Operation.ADD_RECORD);
+            stamped = medicalHistory.addStampedRecord(record);
+            if (stamped != null && persistence != null) {
+                persistence.logAddMedicalRecord(stamped);
+            }
+            count = medicalHistory.getRecordCount();
+            metrics.end(HospitalMetrics.Operation.ADD_RECORD, start);
+        }
+        if (event.shouldCommit()) {
+            event.recordLength = record == null ? 0 : record.length();
+            event.appended = stamped != null;
+            event.recordCount = count;
+            event.commit();
+        }
+        return stamped != null;
+    }
+
+    // A logged record, already stamped (log replay and replicas)
+    boolean restoreMedicalRecord(String stamped) {
+        synchronized (medicalHistory) {
+            long start = metrics.begin(HospitalMetrics.Operation.ADD_RECORD);
+            boolean success = medicalHistory.restoreRecord(stamped);
+            if (success && persistence != null) {
+                persistence.logAddMedicalRecord(stamped);
+            }
+            metrics.end(HospitalMetrics.Operation.ADD_RECORD, start);
+            return success;
+        }
     }
 
     public String removeLatestRecord() {
-        return medicalHistory.removeLatestRecord();
+        synchronized (medicalHistory) {
+            long start = metrics.begin(HospitalMetrics.Operation.REMOVE_RECORD);
+            String record = medicalHistory.removeLatestRecord();
+            if (record != null && persistence != null) {
+                persistence.logRemoveLatestRecord();
+            }
+            metrics.end(HospitalMetrics.Operation.REMOVE_RECORD, start);
+            return record;
+        }
     }
 
     public List<String> getAllMedicalRecords() {
-        return medicalHistory.getAllRecords();
+        synchronized (medicalHistory) {
+            long start = metrics.begin(HospitalMetrics.Operation.LIST_RECORDS);
+            List<String> result = medicalHistory.getAllRecords();
+            metrics.end(HospitalMetrics.Operation.LIST_RECORDS, start);
+            return result;
+        }
+    }
+
+    // Record numbers of the records mentioning patient (an ID, or any text),
+    // newest first; every record when patient is blank. Fetch the records a
+    // page at a time with getMedicalRecords.
+    public long[] findMedicalRecords(String patient) {
+        synchronized (medicalHistory) {
+            long start = metrics.begin(HospitalMetrics.Operation.LIST_RECORDS);
+            long[] numbers = medicalHistory.findRecords(patient);
+            metrics.end(HospitalMetrics.Operation.LIST_RECORDS, start);
+            return numbers;
+        }
+    }
+
+    // The records with those numbers; null for one removed since
+    public String[] getMedicalRecords(long[] numbers) {
+        synchronized (medicalHistory) {
+            long start = metrics.begin(HospitalMetrics.Operation.LIST_RECORDS);
+            String[] records = new String[numbers.length];
+            for (int i = 0; i < numbers.length; i++) {
+                records[i] = medicalHistory.getRecord(numbers[i]);
+            }
+            metrics.end(HospitalMetrics.Operation.LIST_RECORDS, start);
+            return records;
+        }
     }
 
     public int getMedicalRecordCount() {
-        return medicalHistory.getRecordCount();
+        synchronized (medicalHistory) {
+            return medicalHistory.getRecordCount();
+        }
     }
 
     public void clearMedicalHistory() {
-        medicalHistory.clearHistory();
+        synchronized (medicalHistory) {
+            long start = metrics.begin(HospitalMetrics.Operation.CLEAR_HISTORY);
+            medicalHistory.clearHistory();
+            if (persistence != null) {
+                persistence.logClearMedicalHistory();
+            }
+            metrics.end(HospitalMetrics.Operation.CLEAR_HISTORY, start);
+        }
     }
 
     // ==================== DEPARTMENT MANAGEMENT METHODS ====================
 
     public boolean addDepartment(String name) {
-        return departmentManagement.addDepartment(name);
+        synchronized (departmentManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.ADD_DEPARTMENT);
+            boolean success = departmentManagement.addDepartment(name);
+            if (success && persistence != null) {
+                persistence.logAddDepartment(name);
+            }
+            metrics.end(HospitalMetrics.Operation.ADD_DEPARTMENT, start);
+            return success;
+        }
     }
 
     public List<String> getAllDepartments() {
-        return departmentManagement.getAllDepartments();
+        synchronized (departmentManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.LIST_DEPARTMENTS);
+            List<String> result = departmentManagement.getAllDepartments();
+            metrics.end(HospitalMetrics.Operation.LIST_DEPARTMENTS, start);
+            return result;
+        }
     }
 
+    // From the materialized report: unmodifiable, shared until a count changes
     public List<String> getDepartmentsWithStats() {
-        return departmentManagement.getDepartmentsWithStats();
+        return report.snapshot().getDepartmentStats();
     }
 
     public int getDepartmentCount() {
-        return departmentManagement.countDepartments();
+        synchronized (departmentManagement) {
+            return departmentManagement.countDepartments();
+        }
     }
 
     public boolean departmentExists(String name) {
-        return departmentManagement.departmentExists(name);
+        synchronized (departmentManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.DEPARTMENT_EXISTS);
+            boolean result = departmentManagement.departmentExists(name);
+            metrics.end(HospitalMetrics.Operation.DEPARTMENT_EXISTS, start);
+            return result;
+        }
+    }
+
+    // Patients counted for one department (0 when unknown)
+    public int getDepartmentPatientCount(String name) {
+        synchronized (departmentManagement) {
+            return departmentManagement.getPatientCount(name);
+        }
     }
 
     // Remove a department
     public boolean removeDepartment(String name) {
-        return departmentManagement.removeDepartment(name);
+        synchronized (departmentManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.REMOVE_DEPARTMENT);
+            boolean success = departmentManagement.removeDepartment(name);
+            if (success && persistence != null) {
+                persistence.logRemoveDepartment(name);
+            }
+            metrics.end(HospitalMetrics.Operation.REMOVE_DEPARTMENT, start);
+            return success;
+        }
     }
 
     // Update a department name
     public boolean updateDepartmentName(String oldName, String newName) {
-        return departmentManagement.updateDepartmentName(oldName, newName);
+        synchronized (departmentManagement) {
+            long start = metrics.begin(HospitalMetrics.Operation.RENAME_DEPARTMENT);
+            boolean success = departmentManagement.updateDepartmentName(oldName, newName);
+            if (success && persistence != null) {
+                persistence.logUpdateDepartmentName(oldName, newName);
+            }
+            metrics.end(HospitalMetrics.Operation.RENAME_DEPARTMENT, start);
+            return success;
+        }
     }
 
 
 
     // ==================== REPORT METHODS ====================
 
+    // Unmodifiable; the same map is returned until something changes
     public Map<String, Integer> getSystemReport() {
-        Map<String, Integer> report = new HashMap<>();
-        report.put("Total Patients", patientManagement.getTotalPatients());
-        report.put("Emergency Patients", emergencyManagement.getEmergencyCount());
-        report.put("OPD Patients", opdManagement.getOPDCount());
-        report.put("Departments", departmentManagement.countDepartments());
-        report.put("Medical Records", medicalHistory.getRecordCount());
-        return report;
+        long start = metrics.beginShared(HospitalMetrics.Operation.SYSTEM_REPORT);
+        Map<String, Integer> entries = report.snapshot().getEntries();
+        metrics.endShared(HospitalMetrics.Operation.SYSTEM_REPORT, start);
+        return entries;
+    }
+
+    // Consistent view of the counters, department stats and report text for
+    // one version; compare getVersion() to skip re-rendering an unchanged report
+    public HospitalReport.Snapshot getReportSnapshot() {
+        return report.snapshot();
+    }
+
+    // Bumped by every change that affects the report
+    public long getReportVersion() {
+        return report.getVersion();
+    }
+
+    // ==================== CHANGE EVENTS ====================
+
+    // Subscribe here to apply row-level changes instead of reloading lists
+    public HospitalChangeBus getChangeBus() {
+        return changes;
+    }
+
+    // Arrival-to-treatment waits; groups are "Emergency Priority <1-3>" and "OPD <department>"
+    public HospitalWaitTimes getWaitTimes() {
+        return waitTimes;
     }
 
     // ==================== VALIDATION METHODS ====================
 
+    // Compiled once; String.matches would recompile the regex on every call
+    private static final java.util.regex.Pattern PHONE_PATTERN = java.util.regex.Pattern.compile("\\d{10}");
+
     public static boolean isValidPhone(String phone) {
-        return phone != null && phone.matches("\\d{10}");
+        return phone != null && PHONE_PATTERN.matcher(phone).matches();
+    }
+
+    // Male, Female or Other, ignoring case; null when not given
+    public static boolean isValidGender(String gender) {
+        return Patient.genderCode(gender) != -2;
     }
 
     public static boolean isValidAge(int age) {
@@ -758,35 +2395,60 @@ public class HospitalSystemLogic {
         return priority >= 1 && priority <= 3;
     }
 
+    // ==================== BULK IMPORT METHODS ====================
+
+    // Imports a .csv or .jsonl patient file (same columns as the exporters)
+    public HospitalImport.ImportReport importPatients(java.nio.file.Path file) throws IOException {
+        return HospitalImport.importPatients(this, file, HospitalImport.DEFAULT_BATCH_SIZE,
+                Runtime.getRuntime().availableProcessors());
+    }
+
     // ==================== DATA EXPORT METHODS ====================
 
     public String exportPatientData() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("===== PATIENT DATA EXPORT =====\n");
-        sb.append("Total Patients: ").append(getTotalPatients()).append("\n\n");
-
-        for (Patient p : getAllPatients()) {
-            sb.append(p.toString()).append("\n");
+        StringWriter sw = new StringWriter();
+        try {
+            exportPatientData(sw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter never throws
         }
+        return sw.toString();
+    }
 
-        return sb.toString();
+    // Streams the export and returns the number of patients written; memory
+    // use does not grow with the registry
+    public int exportPatientData(Writer out) throws IOException {
+        return exportPatientData(out, written -> { });
     }
 
-    public String exportSystemReport() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("===== HOSPITAL SYSTEM REPORT =====\n");
-        sb.append("Generated: ").append(new Date()).append("\n\n");
+    // progress gets the number of patients written so far, once per batch
+    public int exportPatientData(Writer out, java.util.function.IntConsumer progress) throws IOException {
+        long start = metrics.beginShared(HospitalMetrics.Operation.EXPORT);
+        int written = HospitalExport.writePatientData(this, new ExportBuffer(out), progress);
+        metrics.endShared(HospitalMetrics.Operation.EXPORT, start);
+        return written;
+    }
 
-        Map<String, Integer> report = getSystemReport();
-        for (Map.Entry<String, Integer> entry : report.entrySet()) {
-            sb.append(String.format("%-20s: %d\n", entry.getKey(), entry.getValue()));
-        }
+    public int exportPatientData(WritableByteChannel out) throws IOException {
+        long start = metrics.beginShared(HospitalMetrics.Operation.EXPORT);
+        int written = HospitalExport.writePatientData(this, new ExportBuffer(out));
+        metrics.endShared(HospitalMetrics.Operation.EXPORT, start);
+        return written;
+    }
 
-        sb.append("\n===== DEPARTMENT STATISTICS =====\n");
-        for (String dept : getDepartmentsWithStats()) {
-            sb.append(dept).append("\n");
-        }
+    // Rendered once per report version
+    public String exportSystemReport() {
+        return report.snapshot().getText();
+    }
+
+    public void exportSystemReport(Writer out) throws IOException {
+        out.write(report.snapshot().getText());
+        out.flush();
+    }
 
-        return sb.toString();
+    public void exportSystemReport(WritableByteChannel out) throws IOException {
+        ExportBuffer buffer = new ExportBuffer(out);
+        buffer.append(report.snapshot().getText());
+        buffer.flush();
     }
 }
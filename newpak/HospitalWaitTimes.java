@@ -0,0 +1,193 @@
+package newpak;
+
+import java.util.*;
+
+// =========================================================
+// SLIDING HISTOGRAM (wait-time distribution over a time window)
+// =========================================================
+//
+// A ring of per-slot histograms: a value lands in the slot of the time it
+// was recorded, and a slot is cleared when the ring comes back round to it.
+// The window is the last slotCount slots, the current one included, so it
+// ends within one slot of its nominal length. Memory is fixed by the slot
+// and bucket counts, whatever the traffic.
+class SlidingHistogram {
+    // Milliseconds, 16 buckets per power of two (~6%), up to ~50 days
+    private static final int SUB_BITS = 4;
+    private static final int MAX_EXPONENT = 31;
+    static final int BUCKETS = LatencyHistogram.bucketCount(SUB_BITS, MAX_EXPONENT);
+
+    private final long slotMillis;
+    private final int[][] slots;      // allocated on first use
+    private final long[] slotNumbers; // time / slotMillis held by each ring position
+
+    SlidingHistogram(long windowMillis, int slotCount) {
+        this.slotMillis = windowMillis / slotCount;
+        this.slots = new int[slotCount][];
+        this.slotNumbers = new long[slotCount];
+        Arrays.fill(slotNumbers, -1);
+    }
+
+    void record(long now, long valueMillis) {
+        long number = now / slotMillis;
+        int position = (int) (number % slots.length);
+        if (slotNumbers[position] != number) {
+            if (slots[position] == null) {
+                slots[position] = new int[BUCKETS];
+            } else {
+                Arrays.fill(slots[position], 0);
+            }
+            slotNumbers[position] = number;
+        }
+        slots[position][LatencyHistogram.bucket(valueMillis, SUB_BITS, MAX_EXPONENT)]++;
+    }
+
+    // Counts of every slot still inside the window, added into merged
+    long addTo(long now, long[] merged) {
+        long oldest = now / slotMillis - slots.length + 1;
+        long total = 0;
+        for (int position = 0; position < slots.length; position++) {
+            if (slots[position] == null || slotNumbers[position] < oldest) continue;
+            int[] counts = slots[position];
+            for (int b = 0; b < BUCKETS; b++) {
+                merged[b] += counts[b];
+                total += counts[b];
+            }
+        }
+        return total;
+    }
+
+    // True when no slot is inside the window any more
+    boolean isEmpty(long now) {
+        long oldest = now / slotMillis - slots.length + 1;
+        for (long number : slotNumbers) {
+            if (number >= oldest) return false;
+        }
+        return true;
+    }
+
+    // Value at fraction (0..1) of a merged distribution holding total values
+    static long percentile(long[] merged, long total, double fraction) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += merged[b];
+            if (seen >= rank) return LatencyHistogram.upperBound(b, SUB_BITS);
+        }
+        return LatencyHistogram.upperBound(BUCKETS - 1, SUB_BITS);
+    }
+}
+
+// =========================================================
+// HOSPITAL WAIT TIMES (queue waits per priority / department)
+// =========================================================
+//
+// Time from arrival to treatment for every patient taken off the emergency
+// queue (grouped by priority) or the OPD queue (grouped by department),
+// with p50 / p90 / p99 over the last hour, shift and day. Each group holds
+// one SlidingHistogram per window, so memory grows with the number of
+// groups, not with the number of patients treated.
+public class HospitalWaitTimes {
+
+    public enum Window {
+        HOUR("Hour", 3_600_000L, 12),       // 5-minute slots
+        SHIFT("Shift", 8 * 3_600_000L, 16), // 30-minute slots
+        DAY("Day", 24 * 3_600_000L, 24);    // 1-hour slots
+
+        final String label;
+        final long millis;
+        final int slots;
+
+        Window(String label, long millis, int slots) {
+            this.label = label;
+            this.millis = millis;
+            this.slots = slots;
+        }
+    }
+
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.99};
+
+    // Group name ("Emergency Priority 3", "OPD Cardiology") -> one histogram per window
+    private final Map<String, SlidingHistogram[]> groups = new TreeMap<>();
+
+    static String emergencyGroup(int priority) {
+        return "Emergency Priority " + priority;
+    }
+
+    static String opdGroup(String department) {
+        return "OPD " + department;
+    }
+
+    synchronized void recordEmergency(EmergencyPatient patient, long treatedAt) {
+        record(emergencyGroup(patient.getPriority()), treatedAt, treatedAt - patient.getArrivalTime());
+    }
+
+    synchronized void recordOPD(OPDPatient patient, long treatedAt) {
+        record(opdGroup(patient.getDepartment()), treatedAt, treatedAt - patient.getArrivalTime());
+    }
+
+    private void record(String group, long now, long waitMillis) {
+        SlidingHistogram[] windows = groups.get(group);
+        if (windows == null) {
+            windows = new SlidingHistogram[Window.values().length];
+            for (Window w : Window.values()) {
+                windows[w.ordinal()] = new SlidingHistogram(w.millis, w.slots);
+            }
+            groups.put(group, windows);
+        }
+        for (SlidingHistogram h : windows) {
+            h.record(now, Math.max(0, waitMillis));
+        }
+    }
+
+    // Wait in milliseconds at fraction (0..1) of the group's patients treated
+    // within the window, or -1 when none were
+    public synchronized long getPercentile(String group, Window window, double fraction, long now) {
+        SlidingHistogram[] windows = groups.get(group);
+        if (windows == null) return -1;
+        long[] merged = new long[SlidingHistogram.BUCKETS];
+        long total = windows[window.ordinal()].addTo(now, merged);
+        return total == 0 ? -1 : SlidingHistogram.percentile(merged, total, fraction);
+    }
+
+    public synchronized long getCount(String group, Window window, long now) {
+        SlidingHistogram[] windows = groups.get(group);
+        return windows == null ? 0 : windows[window.ordinal()].addTo(now, new long[SlidingHistogram.BUCKETS]);
+    }
+
+    // When the report entries next change without a new treatment (the end
+    // of the current hour-window slot; longer slots end on those boundaries
+    // too), or Long.MAX_VALUE while nothing is recorded
+    synchronized long nextExpiry(long now) {
+        if (groups.isEmpty()) return Long.MAX_VALUE;
+        long slotMillis = Window.HOUR.millis / Window.HOUR.slots;
+        return (now / slotMillis + 1) * slotMillis;
+    }
+
+    // Report entries, e.g. "Emergency Priority 3 Wait p90 Seconds (Hour)",
+    // for every group and window with treated patients. Groups idle for a
+    // whole day are dropped.
+    synchronized void addTo(Map<String, Integer> report, long now) {
+        long[] merged = new long[SlidingHistogram.BUCKETS];
+        Iterator<Map.Entry<String, SlidingHistogram[]>> it = groups.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, SlidingHistogram[]> group = it.next();
+            if (group.getValue()[Window.DAY.ordinal()].isEmpty(now)) {
+                it.remove();
+                continue;
+            }
+            for (Window w : Window.values()) {
+                Arrays.fill(merged, 0);
+                long total = group.getValue()[w.ordinal()].addTo(now, merged);
+                if (total == 0) continue;
+                report.put(group.getKey() + " Treated (" + w.label + ")", (int) Math.min(Integer.MAX_VALUE, total));
+                for (double fraction : PERCENTILES) {
+                    long millis = SlidingHistogram.percentile(merged, total, fraction);
+                    report.put(group.getKey() + " Wait p" + Math.round(fraction * 100) + " Seconds (" + w.label + ")",
+                            (int) Math.min(Integer.MAX_VALUE, Math.round(millis / 1000.0)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package newpak;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// =========================================================
+// JSON (flat objects only: what the exporters and the API use)
+// =========================================================
+class Json {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Quoted + escaped JSON string, or null
+    static StringBuilder appendString(StringBuilder sb, String value) {
+        if (value == null) return sb.append("null");
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20) {
+                        sb.append("\\u00").append(HEX[ch >> 4]).append(HEX[ch & 0xF]);
+                    } else {
+                        sb.append(ch);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+
+    // Flat JSON object: string, number, true/false or null values.
+    // Values come back as text (numbers unparsed), JSON null as null.
+    static Map<String, String> parseObject(String text) {
+        Map<String, String> values = new HashMap<>();
+        int i = skipSpace(text, 0);
+        if (i >= text.length() || text.charAt(i) != '{') throw new IllegalArgumentException("Expected JSON object");
+        i = skipSpace(text, i + 1);
+        if (i < text.length() && text.charAt(i) == '}') return values;
+
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            i = readString(text, skipSpace(text, i), sb);
+            String key = sb.toString();
+            i = skipSpace(text, i);
+            if (i >= text.length() || text.charAt(i) != ':') throw new IllegalArgumentException("Expected ':' after \"" + key + "\"");
+            i = skipSpace(text, i + 1);
+
+            String value;
+            if (i < text.length() && text.charAt(i) == '"') {
+                i = readString(text, i, sb);
+                value = sb.toString();
+            } else {
+                int end = i;
+                while (end < text.length() && ",} \t\r\n".indexOf(text.charAt(end)) < 0) end++;
+                value = text.substring(i, end);
+                if (value.isEmpty()) throw new IllegalArgumentException("Missing value for \"" + key + "\"");
+                if (value.equals("null")) value = null;
+                i = end;
+            }
+            values.put(key, value);
+
+            i = skipSpace(text, i);
+            if (i >= text.length()) throw new IllegalArgumentException("Unterminated JSON object");
+            char ch = text.charAt(i);
+            if (ch == '}') return values;
+            if (ch != ',') throw new IllegalArgumentException("Expected ',' or '}' at column " + (i + 1));
+            i++;
+        }
+    }
+
+    private static int skipSpace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) i++;
+        return i;
+    }
+
+    // Reads a quoted JSON string starting at i into sb, returns the index after the closing quote
+    private static int readString(String text, int i, StringBuilder sb) {
+        if (i >= text.length() || text.charAt(i) != '"') throw new IllegalArgumentException("Expected string at column " + (i + 1));
+        sb.setLength(0);
+        for (i++; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '"') return i + 1;
+            if (ch != '\\') {
+                sb.append(ch);
+                continue;
+            }
+            if (++i >= text.length()) break;
+            char esc = text.charAt(i);
+            switch (esc) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (i + 4 >= text.length()) throw new IllegalArgumentException("Bad \\u escape");
+                    sb.append((char) Integer.parseInt(text.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default: sb.append(esc); // \" \\ \/
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string");
+    }
+}
@@ -2,12 +2,23 @@ package newpak;
 
 import javax.swing.*;
 import javax.swing.border.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class ModernHospitalGUI extends JFrame {
 
@@ -32,11 +43,40 @@ public class ModernHospitalGUI extends JFrame {
     private final Color BORDER_COLOR = new Color(224, 224, 224);       // Light grey for borders
 
     // Components
-    private DefaultTableModel patientTableModel, emergencyTableModel, opdTableModel;
+    private PatientTableModel patientTableModel;
+    private EmergencyTableModel emergencyTableModel;
+    private OPDTableModel opdTableModel;
     private JTable patientTable, emergencyTable, opdTable;
-    private JTextArea medicalHistoryArea, reportArea;
+    private JTextArea reportArea;
+    private HistoryListModel historyListModel;
+    private JTextField patientFilterField;
+    private JLabel patientFilterStatus;
+    private Timer patientFilterTimer;
+    private String shownPatientFilter = "";   // filter of the rows in patientTableModel
+    private JTextField historyFilterField;
     private JList<String> departmentList;
     private DefaultListModel<String> departmentListModel;
+    private long shownReportVersion = -1;   // report version in reportArea
+    // One background loader per view; see ViewLoader
+    private ViewLoader<PatientRows> patientLoader;
+    private ViewLoader<List<EmergencyPatient>> emergencyLoader;
+    private ViewLoader<List<OPDPatient>> opdLoader;
+    private ViewLoader<long[]> historyLoader;
+    private ViewLoader<List<String>> departmentLoader;
+    private ViewLoader<List<String>> departmentNamesLoader;
+    private ViewLoader<HospitalReport.Snapshot> reportLoader;
+
+    // Loads requested during one frame start together on the next tick
+    private static final int FRAME_MILLIS = 16;
+    private final Set<ViewLoader<?>> nextFrame = new LinkedHashSet<>();
+    private Timer frameTimer;
+
+    // More changes than this before the EDT catches up: reload instead
+    private static final int MAX_PENDING_CHANGES = 1000;
+
+    // Patient filter: search after typing pauses this long, show at most this many
+    private static final int PATIENT_FILTER_DELAY = 150;
+    private static final int PATIENT_FILTER_LIMIT = 1000;
 
     public ModernHospitalGUI() {
         system = HospitalSystemLogic.getInstance();
@@ -59,6 +99,10 @@ public class ModernHospitalGUI extends JFrame {
     }
 
     private void initializeUI() {
+        // Before the first load, so no change falls between load and subscription
+        // (loads and events are applied on the EDT, after this constructor returns)
+        createLoaders();
+
         // Main container with CardLayout
         cardLayout = new CardLayout();
         mainPanel = new JPanel(cardLayout);
@@ -84,12 +128,232 @@ public class ModernHospitalGUI extends JFrame {
         cardLayout.show(mainPanel, "DASHBOARD");
     }
 
+    // ---------------- Change Events ----------------
+    // Every view follows the system through row-level changes, whoever made
+    // them (this window, the HTTP API, the archiver), instead of reloading
+    // whole tables after each action
+    private void createLoaders() {
+        frameTimer = new Timer(FRAME_MILLIS, e -> startFrame());
+        frameTimer.setRepeats(false);
+
+        HospitalChangeBus bus = system.getChangeBus();
+        ChangeQueue<Patient> patientChanges =
+                new ChangeQueue<>(this::applyPatientChange, this::refreshPatientTable);
+        ChangeQueue<EmergencyPatient> emergencyChanges =
+                new ChangeQueue<>(this::applyEmergencyChange, this::refreshEmergencyTable);
+        ChangeQueue<OPDPatient> opdChanges =
+                new ChangeQueue<>(this::applyOPDChange, this::refreshOPDTable);
+        ChangeQueue<String> historyChanges =
+                new ChangeQueue<>(this::applyHistoryChange, () -> {
+                    historyListModel.invalidate();
+                    refreshMedicalHistory();
+                });
+        ChangeQueue<String> departmentChanges = new ChangeQueue<>(this::applyDepartmentChange, () -> {
+            refreshDepartmentList();
+            refreshOPDDepartmentCombo();
+        });
+
+        // Change events still queued when the IDs are taken are already part of them
+        Supplier<Callable<PatientRows>> patientFetch = () -> {
+            String filter = patientFilterField.getText().trim();
+            return () -> filter.isEmpty()
+                    ? new PatientRows(filter, system.getPatientIds(patientChanges::discardPending), true)
+                    : new PatientRows(filter,
+                            system.searchPatientIds(filter, PATIENT_FILTER_LIMIT, patientChanges::discardPending));
+        };
+        patientLoader = new ViewLoader<>(patientFetch, this::showPatientRows, patientChanges);
+        emergencyLoader = new ViewLoader<>(system::getAllEmergencyPatients,
+                patients -> emergencyTableModel.load(patients), emergencyChanges);
+        opdLoader = new ViewLoader<>(system::getAllOPDPatients,
+                patients -> opdTableModel.load(patients), opdChanges);
+        Supplier<Callable<long[]>> historyFetch = () -> {
+            String filter = historyFilterField.getText();
+            return () -> {
+                historyChanges.discardPending();   // already part of the numbers
+                return system.findMedicalRecords(filter);
+            };
+        };
+        historyLoader = new ViewLoader<>(historyFetch, numbers -> historyListModel.load(numbers), historyChanges);
+        departmentLoader = new ViewLoader<>(system::getDepartmentsWithStats,
+                this::showDepartmentList, departmentChanges);
+        departmentNamesLoader = new ViewLoader<>(system::getAllDepartments,
+                this::showOPDDepartments, null);
+        reportLoader = new ViewLoader<>(() -> {
+            HospitalReport.Snapshot report = system.getReportSnapshot();
+            report.getText();   // render here rather than on the EDT
+            return report;
+        }, this::showReport, null);
+
+        bus.subscribe(HospitalChangeBus.Topic.PATIENTS, patientChanges);
+        bus.subscribe(HospitalChangeBus.Topic.EMERGENCY, emergencyChanges);
+        bus.subscribe(HospitalChangeBus.Topic.OPD, opdChanges);
+        bus.subscribe(HospitalChangeBus.Topic.MEDICAL_HISTORY, historyChanges);
+        bus.subscribe(HospitalChangeBus.Topic.DEPARTMENTS, departmentChanges);
+    }
+
+    // ---------------- Background Loading ----------------
+    // Fetches a view's data on a SwingWorker thread and installs it on the
+    // EDT, so a large registry never freezes the window. Requests (EDT only)
+    // are coalesced: any number within a frame start one load on the next
+    // tick, and requests while a load runs discard its result and start one
+    // more when it is done.
+    // The view's change events are held during the load and applied after it.
+    // A view whose load depends on its components (e.g. a filter box) reads
+    // them in prepare, on the EDT, and returns the fetch to run on the worker.
+    private final class ViewLoader<R> {
+        private final Supplier<Callable<R>> prepare;
+        private final Consumer<R> install;
+        private final ChangeQueue<?> changes;   // null when the view has no events
+        private boolean queued, running, again;
+
+        ViewLoader(Callable<R> fetch, Consumer<R> install, ChangeQueue<?> changes) {
+            this(() -> fetch, install, changes);
+        }
+
+        ViewLoader(Supplier<Callable<R>> prepare, Consumer<R> install, ChangeQueue<?> changes) {
+            this.prepare = prepare;
+            this.install = install;
+            this.changes = changes;
+        }
+
+        void request() {
+            if (running) {
+                again = true;
+            } else if (!queued) {
+                queued = true;
+                nextFrame.add(this);
+                if (!frameTimer.isRunning()) frameTimer.start();
+            }
+        }
+
+        void start() {
+            queued = false;
+            running = true;
+            if (changes != null) changes.hold();
+            Callable<R> fetch = prepare.get();
+            new SwingWorker<R, Void>() {
+                @Override
+                protected R doInBackground() throws Exception {
+                    return fetch.call();
+                }
+
+                @Override
+                protected void done() {
+                    running = false;
+                    if (again) {
+                        // Superseded while it ran (e.g. the filter changed): the
+                        // result is stale, so load again and keep events held
+                        again = false;
+                        start();
+                        return;
+                    }
+                    try {
+                        install.accept(get());
+                    } catch (InterruptedException | ExecutionException e) {
+                        e.printStackTrace();   // the view keeps what it showed
+                    } finally {
+                        if (changes != null) changes.release();
+                    }
+                }
+            }.execute();
+        }
+    }
+
+    private void startFrame() {
+        List<ViewLoader<?>> due = new ArrayList<>(nextFrame);
+        nextFrame.clear();
+        for (ViewLoader<?> loader : due) {
+            loader.start();
+        }
+    }
+
+    // Collects events on the publishing thread and applies them on the EDT,
+    // one invokeLater per burst. A burst past MAX_PENDING_CHANGES (an import,
+    // say) is dropped and the view reloads once. While the view reloads the
+    // events are held, then applied on top of the loaded state.
+    private static final class ChangeQueue<T> implements HospitalChangeBus.Listener<T> {
+        private final HospitalChangeBus.Listener<T> apply;
+        private final Runnable reload;
+        private List<HospitalChangeBus.Change> changes = new ArrayList<>();
+        private List<T> items = new ArrayList<>();
+        private boolean overflow;
+        private boolean held;   // a reload is in flight; keep buffering
+
+        ChangeQueue(HospitalChangeBus.Listener<T> apply, Runnable reload) {
+            this.apply = apply;
+            this.reload = reload;
+        }
+
+        @Override
+        public synchronized void onChange(HospitalChangeBus.Change change, T item) {
+            if (overflow) return;
+            if (changes.isEmpty()) {
+                SwingUtilities.invokeLater(this::drain);
+            }
+            if (changes.size() == MAX_PENDING_CHANGES) {
+                overflow = true;
+                changes.clear();
+                items.clear();
+                return;
+            }
+            changes.add(change);
+            items.add(item);
+        }
+
+        // The view is being reloaded from a state that includes these
+        synchronized void discardPending() {
+            changes.clear();
+            items.clear();
+            overflow = false;
+        }
+
+        synchronized void hold() {
+            held = true;
+        }
+
+        void release() {
+            synchronized (this) {
+                held = false;
+            }
+            drain();
+        }
+
+        private void drain() {
+            List<HospitalChangeBus.Change> batch;
+            List<T> batchItems;
+            boolean reloadAll;
+            synchronized (this) {
+                if (held) return;   // release() drains
+                batch = changes;
+                batchItems = items;
+                reloadAll = overflow;
+                changes = new ArrayList<>();
+                items = new ArrayList<>();
+                overflow = false;
+            }
+            if (reloadAll) {
+                reload.run();
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                apply.onChange(batch.get(i), batchItems.get(i));
+            }
+        }
+    }
+
     private void refreshOPDDepartmentCombo() {
+        departmentNamesLoader.request();
+    }
+
+    private void showOPDDepartments(List<String> departments) {
+        Object selected = opdDeptCombo.getSelectedItem();
         opdDeptCombo.removeAllItems();
-        List<String> departments = system.getAllDepartments();
         for (String dept : departments) {
             opdDeptCombo.addItem(dept);
         }
+        if (selected != null && departments.contains(selected)) {
+            opdDeptCombo.setSelectedItem(selected);
+        }
     }
 
     private JPanel createSidebarPanel() {
@@ -367,9 +631,25 @@ public class ModernHospitalGUI extends JFrame {
 
         JButton addBtn = createActionButton("Add Patient", SUCCESS_COLOR, e -> showAddPatientDialog(), new Dimension(110, 32));
         JButton refreshBtn = createActionButton("Refresh", INFO_COLOR, e -> refreshPatientTable(), new Dimension(90, 32));
-        JButton searchBtn = createActionButton("Search", WARNING_COLOR, e -> showSearchPatientDialog(), new Dimension(90, 32));
+        JButton importBtn = createActionButton("Import", PURPLE_COLOR, e -> showImportPatientsDialog(), new Dimension(90, 32));
+
+        // Live filter: searches once typing pauses; a newer search supersedes a running one
+        patientFilterField = new JTextField(14);
+        patientFilterField.setToolTipText("Patient ID, or the start of a name, disease or contact");
+        patientFilterStatus = new JLabel();
+        patientFilterStatus.setForeground(TEXT_SECONDARY);
+        patientFilterTimer = new Timer(PATIENT_FILTER_DELAY, e -> refreshPatientTable());
+        patientFilterTimer.setRepeats(false);
+        patientFilterField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { patientFilterTimer.restart(); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { patientFilterTimer.restart(); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) { patientFilterTimer.restart(); }
+        });
 
-        buttonPanel.add(searchBtn);
+        buttonPanel.add(patientFilterStatus);
+        buttonPanel.add(new JLabel("Filter:"));
+        buttonPanel.add(patientFilterField);
+        buttonPanel.add(importBtn);
         buttonPanel.add(refreshBtn);
         buttonPanel.add(addBtn);
 
@@ -378,18 +658,7 @@ public class ModernHospitalGUI extends JFrame {
         panel.add(headerPanel, BorderLayout.NORTH);
 
         // Patient Table with action buttons
-        String[] columns = {"ID", "Name", "Age", "Gender", "Disease", "Contact", "Actions"};
-        patientTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 6;
-            }
-
-            @Override
-            public Class<?> getColumnClass(int column) {
-                return column == 6 ? JPanel.class : String.class;
-            }
-        };
+        patientTableModel = new PatientTableModel();
 
         patientTable = new JTable(patientTableModel);
         patientTable.setRowHeight(35);
@@ -487,9 +756,10 @@ public class ModernHospitalGUI extends JFrame {
             editBtn.setFocusPainted(false);
             editBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
             editBtn.addActionListener(e -> {
-                int row = patientTable.convertRowIndexToModel(currentRow);
-                Patient patient = system.getAllPatients().get(row);
-                showEditPatientDialog(patient);
+                Patient patient = patientAtRow(currentRow);
+                if (patient != null) {
+                    showEditPatientDialog(patient);
+                }
                 fireEditingStopped();
             });
 
@@ -504,14 +774,16 @@ public class ModernHospitalGUI extends JFrame {
             deleteBtn.setFocusPainted(false);
             deleteBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
             deleteBtn.addActionListener(e -> {
-                int row = patientTable.convertRowIndexToModel(currentRow);
-                Patient patient = system.getAllPatients().get(row);
+                Patient patient = patientAtRow(currentRow);
+                if (patient == null) {
+                    fireEditingStopped();
+                    return;
+                }
                 int confirm = JOptionPane.showConfirmDialog(ModernHospitalGUI.this,
                         "Delete patient " + patient.getPatientName() + "?",
                         "Confirm Delete", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
                 if (confirm == JOptionPane.YES_OPTION) {
                     system.deletePatient(patient.getPatientId());
-                    refreshPatientTable();
                 }
                 fireEditingStopped();
             });
@@ -563,22 +835,280 @@ public class ModernHospitalGUI extends JFrame {
     }
 
     private void refreshPatientTable() {
-        patientTableModel.setRowCount(0);
-        List<Patient> patients = system.getAllPatients();
-
-        for (Patient patient : patients) {
-            patientTableModel.addRow(new Object[]{
-                    patient.getPatientId(),
-                    patient.getPatientName(),
-                    patient.getPatientAge(),
-                    patient.getGender(),
-                    patient.getDisease(),
-                    patient.getContact(),
-                    null
-            });
+        patientLoader.request();
+    }
+
+    private void applyPatientChange(HospitalChangeBus.Change change, Patient patient) {
+        int id = patient.getPatientId();
+        if (!shownPatientFilter.isEmpty() && change != HospitalChangeBus.Change.REMOVED) {
+            // Filtered: an edit can move a patient into or out of the matches
+            if (!PatientManagement.matchesSearch(patient, shownPatientFilter)) {
+                patientTableModel.remove(id);
+                return;
+            }
+            if (!patientTableModel.contains(id)) {
+                patientTableModel.add(id);
+                return;
+            }
+        }
+        switch (change) {
+            case ADDED -> patientTableModel.add(id);
+            case UPDATED -> patientTableModel.update(id);
+            case REMOVED -> patientTableModel.remove(id);
+            default -> { }
         }
     }
 
+    // The IDs of one patient load and the filter they match ("" for all)
+    private static final class PatientRows {
+        final String filter;
+        final int[] ids;
+        final boolean complete;   // false: the search scanned only part of the registry
+
+        PatientRows(String filter, int[] ids, boolean complete) {
+            this.filter = filter;
+            this.ids = ids;
+            this.complete = complete;
+        }
+
+        PatientRows(String filter, HospitalSystemLogic.PatientSearch search) {
+            this(filter, search.getIds(), search.isComplete());
+        }
+    }
+
+    private void showPatientRows(PatientRows rows) {
+        shownPatientFilter = rows.filter;
+        patientTableModel.load(rows.ids);
+        if (rows.filter.isEmpty()) {
+            patientFilterStatus.setText("");
+        } else if (rows.ids.length == PATIENT_FILTER_LIMIT) {
+            patientFilterStatus.setText("First " + PATIENT_FILTER_LIMIT + " matches");
+        } else if (!rows.complete) {
+            patientFilterStatus.setText(rows.ids.length + " in the first "
+                    + PatientManagement.SEARCH_SCAN_LIMIT + " patients (no index: -Dhospital.patientIndexes)");
+        } else {
+            patientFilterStatus.setText(rows.ids.length + (rows.ids.length == 1 ? " match" : " matches"));
+        }
+    }
+
+    // Rows are patient IDs (4 bytes each) in registry order. A row's values
+    // are fetched only when the table asks for them, i.e. for the rows on
+    // screen, so a million patients cost 4 MB here and scrolling touches only
+    // what is painted. Painting never takes the registry lock: a missing row
+    // shows blank and its page is copied on a SwingWorker, then repainted.
+    // Rows are peeked: painting neither counts as patient activity nor loads
+    // cold patients into memory.
+    private final class PatientTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private static final int RENUMBER_AFTER = 1024;
+        private static final int PAGE = 256;
+        private static final int CACHED_ROWS = 16 * PAGE;
+
+        private final String[] columns = {"ID", "Name", "Age", "Gender", "Disease", "Contact", "Actions"};
+        private int[] ids = new int[0];
+        private int size;
+        // ID -> row, so a change event finds its row without a scan. Removing
+        // a row moves every later row up; instead of renumbering them each
+        // time, rowOf keeps the row an ID had before the removals since the
+        // last renumbering (its "base"), removedBases lists the removed bases
+        // in order, and the row is the base minus the removed bases below it.
+        private IntIntHashMap rowOf = new IntIntHashMap(16);
+        private int[] removedBases = new int[RENUMBER_AFTER];
+        private int removedCount;
+        private int nextBase;
+        // Copies of recently painted rows by ID, least recently painted first;
+        // null for a patient deleted before its event arrived
+        private final LinkedHashMap<Integer, Patient> cache = new LinkedHashMap<Integer, Patient>(CACHED_ROWS, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Patient> eldest) {
+                return size() > CACHED_ROWS;
+            }
+        };
+        // One page fetch at a time; a miss meanwhile is fetched after it.
+        // IDs changed while a fetch runs are not cached from its result, and
+        // a reload discards the result altogether.
+        private boolean fetching;
+        private int wantedRow = -1;
+        private int generation;
+        private IntIntHashMap changedDuringFetch = new IntIntHashMap(16);
+
+        void load(int[] ids) {
+            this.ids = ids;
+            this.size = ids.length;
+            rowOf = new IntIntHashMap(Math.max(16, size));
+            for (int row = 0; row < size; row++) {
+                rowOf.put(ids[row], row);
+            }
+            removedCount = 0;
+            nextBase = size;
+            cache.clear();
+            generation++;
+            fireTableDataChanged();
+        }
+
+        // O(1) amortized
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(16, size * 2));
+            }
+            ids[size] = id;
+            rowOf.put(id, nextBase++);
+            size++;
+            fireTableRowsInserted(size - 1, size - 1);
+        }
+
+        void update(int id) {
+            int row = indexOf(id);
+            if (row < 0) return;
+            invalidate(id);
+            fireTableRowsUpdated(row, row);
+        }
+
+        void remove(int id) {
+            int base = rowOf.remove(id, -1);
+            if (base < 0) return;
+            int below = removedBelow(base);
+            int row = base - below;
+            System.arraycopy(ids, row + 1, ids, row, size - row - 1);
+            size--;
+            System.arraycopy(removedBases, below, removedBases, below + 1, removedCount - below);
+            removedBases[below] = base;
+            if (++removedCount == RENUMBER_AFTER) renumber();
+            invalidate(id);
+            fireTableRowsDeleted(row, row);
+        }
+
+        boolean contains(int id) {
+            return rowOf.containsKey(id);
+        }
+
+        private int indexOf(int id) {
+            int base = rowOf.get(id, -1);
+            return base < 0 ? -1 : base - removedBelow(base);
+        }
+
+        private int removedBelow(int base) {
+            int i = Arrays.binarySearch(removedBases, 0, removedCount, base);
+            return i < 0 ? -i - 1 : i;
+        }
+
+        // Rows above the first removal kept their base; the rest get their row
+        private void renumber() {
+            for (int row = removedBases[0]; row < size; row++) {
+                rowOf.put(ids[row], row);
+            }
+            removedCount = 0;
+            nextBase = size;
+        }
+
+        int getIdAt(int row) {
+            return ids[row];
+        }
+
+        private void invalidate(int id) {
+            cache.remove(id);
+            if (fetching) changedDuringFetch.put(id, 1);
+        }
+
+        // Copies the page around row off the EDT and repaints what arrived
+        private void fetchPage(int row) {
+            if (fetching) {
+                wantedRow = row;
+                return;
+            }
+            fetching = true;
+            changedDuringFetch = new IntIntHashMap(16);
+            int from = Math.max(0, row - PAGE / 2);
+            int[] page = Arrays.copyOfRange(ids, from, Math.min(size, from + PAGE));
+            int fetchGeneration = generation;
+            new SwingWorker<Patient[], Void>() {
+                @Override
+                protected Patient[] doInBackground() {
+                    return system.peekPatients(page);
+                }
+
+                @Override
+                protected void done() {
+                    fetching = false;
+                    try {
+                        if (fetchGeneration == generation) install(page, get());
+                    } catch (InterruptedException | ExecutionException e) {
+                        e.printStackTrace();   // the rows stay blank until asked again
+                    }
+                    if (wantedRow >= 0) {
+                        int next = wantedRow;
+                        wantedRow = -1;
+                        if (next < size && !cache.containsKey(ids[next])) fetchPage(next);
+                    }
+                }
+            }.execute();
+        }
+
+        private void install(int[] page, Patient[] patients) {
+            int first = Integer.MAX_VALUE, last = -1;
+            for (int i = 0; i < page.length; i++) {
+                if (changedDuringFetch.containsKey(page[i])) continue;
+                int row = indexOf(page[i]);
+                if (row < 0) continue;
+                cache.put(page[i], patients[i]);
+                first = Math.min(first, row);
+                last = Math.max(last, row);
+            }
+            if (last >= 0) fireTableRowsUpdated(first, last);
+        }
+
+        @Override
+        public int getRowCount() {
+            return size;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return column == 6;
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 6 ? JPanel.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            if (column == 0) return ids[row];
+            if (column == 6) return null;
+            Patient cached = cache.get(ids[row]);
+            if (cached == null) {
+                if (!cache.containsKey(ids[row])) fetchPage(row);
+                return null;   // not fetched yet, or removed with its event queued
+            }
+            switch (column) {
+                case 1: return cached.getPatientName();
+                case 2: return cached.getPatientAge();
+                case 3: return cached.getGender();
+                case 4: return cached.getDisease();
+                default: return cached.getContact();
+            }
+        }
+    }
+
+    // The patient shown in a table row (null if deleted meanwhile)
+    private Patient patientAtRow(int viewRow) {
+        int row = patientTable.convertRowIndexToModel(viewRow);
+        return system.searchPatient(patientTableModel.getIdAt(row));
+    }
+
     private void showAddPatientDialog() {
         JDialog dialog = createDialog("Add New Patient", 400, 380);
 
@@ -639,24 +1169,27 @@ public class ModernHospitalGUI extends JFrame {
         buttonPanel.setBackground(CARD_COLOR);
 
         JButton saveBtn = createActionButton("Save", SUCCESS_COLOR, e -> {
+            JButton source = (JButton) e.getSource();
             try {
-                boolean success = system.addPatient(
+                source.setEnabled(false);
+                system.async().addPatientAsync(
                         Integer.parseInt(idField.getText()),
                         nameField.getText(),
                         Integer.parseInt(ageField.getText()),
                         (String) genderCombo.getSelectedItem(),
                         diseaseField.getText(),
                         contactField.getText()
-                );
-
-                if (success) {
-                    JOptionPane.showMessageDialog(dialog, "Patient added successfully!");
-                    refreshPatientTable();
-                    dialog.dispose();
-                } else {
-                    JOptionPane.showMessageDialog(dialog, "Patient ID already exists!");
-                }
+                ).thenAcceptAsync(success -> {
+                    if (success) {
+                        JOptionPane.showMessageDialog(dialog, "Patient added successfully!");
+                        dialog.dispose();
+                    } else {
+                        source.setEnabled(true);
+                        JOptionPane.showMessageDialog(dialog, "Patient ID already exists!");
+                    }
+                }, SwingUtilities::invokeLater);
             } catch (NumberFormatException ex) {
+                source.setEnabled(true);
                 JOptionPane.showMessageDialog(dialog, "Please enter valid numbers!");
             }
         }, new Dimension(90, 28));
@@ -756,7 +1289,6 @@ public class ModernHospitalGUI extends JFrame {
 
                 if (success) {
                     JOptionPane.showMessageDialog(dialog, "Patient updated successfully!");
-                    refreshPatientTable();
                     dialog.dispose();
                 }
             } catch (NumberFormatException ex) {
@@ -774,29 +1306,42 @@ public class ModernHospitalGUI extends JFrame {
         dialog.setVisible(true);
     }
 
-    private void showSearchPatientDialog() {
-        String idStr = JOptionPane.showInputDialog(this, "Enter Patient ID to search:");
-        if (idStr != null && !idStr.trim().isEmpty()) {
-            try {
-                int id = Integer.parseInt(idStr.trim());
-                Patient patient = system.searchPatient(id);
-                if (patient != null) {
-                    JOptionPane.showMessageDialog(this,
-                            "<html><b>Patient Found:</b><br><br>" +
-                                    "<b>ID:</b> " + patient.getPatientId() + "<br>" +
-                                    "<b>Name:</b> " + patient.getPatientName() + "<br>" +
-                                    "<b>Age:</b> " + patient.getPatientAge() + "<br>" +
-                                    "<b>Gender:</b> " + patient.getGender() + "<br>" +
-                                    "<b>Disease:</b> " + patient.getDisease() + "<br>" +
-                                    "<b>Contact:</b> " + patient.getContact() + "</html>",
-                            "Patient Information", JOptionPane.INFORMATION_MESSAGE);
-                } else {
-                    JOptionPane.showMessageDialog(this, "Patient not found!");
+    private void showImportPatientsDialog() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import Patients (CSV / JSON Lines)");
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.nio.file.Path file = fileChooser.getSelectedFile().toPath();
+        // Runs on a worker thread; the table follows through change events
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<HospitalImport.ImportReport, Void>() {
+            @Override
+            protected HospitalImport.ImportReport doInBackground() throws Exception {
+                return system.importPatients(file);
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    HospitalImport.ImportReport report = get();
+                    StringBuilder message = new StringBuilder(report.toString());
+                    List<HospitalImport.RowError> errors = report.getErrors();
+                    for (int i = 0; i < Math.min(10, errors.size()); i++) {
+                        message.append("\n").append(errors.get(i));
+                    }
+                    if (errors.size() > 10) {
+                        message.append("\n... ").append(report.getRejected() - 10).append(" more");
+                    }
+                    JOptionPane.showMessageDialog(ModernHospitalGUI.this, message.toString(), "Import Complete",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(ModernHospitalGUI.this, "Import failed: " + cause.getMessage());
                 }
-            } catch (NumberFormatException e) {
-                JOptionPane.showMessageDialog(this, "Please enter a valid Patient ID!");
             }
-        }
+        }.execute();
     }
 
     private JDialog createDialog(String title, int width, int height) {
@@ -907,7 +1452,6 @@ public class ModernHospitalGUI extends JFrame {
 
                 if (success) {
                     JOptionPane.showMessageDialog(this, "Emergency case added!");
-                    refreshEmergencyTable();
                     idField.setText("");
                     nameField.setText("");
                     conditionField.setText("");
@@ -941,16 +1485,16 @@ public class ModernHospitalGUI extends JFrame {
         title.setForeground(TEXT_PRIMARY);
 
         JButton treatBtn = createActionButton("Treat Next", SUCCESS_COLOR, e -> {
-            EmergencyPatient patient = system.treatNextEmergencyPatient();
-            if (patient != null) {
-                JOptionPane.showMessageDialog(this,
-                        String.format("Treated Patient:<br><b>Name:</b> %s<br><b>Priority:</b> %d<br><b>Condition:</b> %s",
-                                patient.getPatientName(), patient.getPriority(), patient.getCondition()),
-                        "Treatment Complete", JOptionPane.INFORMATION_MESSAGE);
-                refreshEmergencyTable();
-            } else {
-                JOptionPane.showMessageDialog(this, "No emergency patients!");
-            }
+            system.async().treatNextEmergencyPatientAsync().thenAcceptAsync(patient -> {
+                if (patient != null) {
+                    JOptionPane.showMessageDialog(this,
+                            String.format("Treated Patient:<br><b>Name:</b> %s<br><b>Priority:</b> %d<br><b>Condition:</b> %s",
+                                    patient.getPatientName(), patient.getPriority(), patient.getCondition()),
+                            "Treatment Complete", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(this, "No emergency patients!");
+                }
+            }, SwingUtilities::invokeLater);
         }, new Dimension(110, 32));
 
         JPanel headerPanel = new JPanel(new BorderLayout());
@@ -959,8 +1503,7 @@ public class ModernHospitalGUI extends JFrame {
         headerPanel.add(treatBtn, BorderLayout.EAST);
 
         // Emergency Table
-        String[] columns = {"Priority", "ID", "Name", "Condition", "Arrival Time"};
-        emergencyTableModel = new DefaultTableModel(columns, 0);
+        emergencyTableModel = new EmergencyTableModel();
 
         emergencyTable = new JTable(emergencyTableModel);
         emergencyTable.setRowHeight(28);
@@ -977,24 +1520,78 @@ public class ModernHospitalGUI extends JFrame {
     }
 
     private void refreshEmergencyTable() {
-        emergencyTableModel.setRowCount(0);
-        List<EmergencyPatient> patients = system.getAllEmergencyPatients();
-
-        for (EmergencyPatient p : patients) {
-            String priority = "";
-            switch(p.getPriority()) {
-                case 3: priority = "HIGH"; break;
-                case 2: priority = "MEDIUM"; break;
-                case 1: priority = "LOW"; break;
-            }
+        emergencyLoader.request();
+    }
 
-            emergencyTableModel.addRow(new Object[]{
-                    priority,
-                    p.getPatientId(),
-                    p.getPatientName(),
-                    p.getCondition(),
-                    new Date(p.getArrivalTime())
-            });
+    private void applyEmergencyChange(HospitalChangeBus.Change change, EmergencyPatient patient) {
+        switch (change) {
+            case ADDED -> emergencyTableModel.add(patient);
+            case TREATED -> emergencyTableModel.remove(patient);
+            default -> { }
+        }
+    }
+
+    // Rows are the queued patients in treatment order (EmergencyPatient.compareTo);
+    // cells are formatted when painted
+    private static final class EmergencyTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] columns = {"Priority", "ID", "Name", "Condition", "Arrival Time"};
+        private final List<EmergencyPatient> rows = new ArrayList<>();
+
+        void load(List<EmergencyPatient> patients) {
+            rows.clear();
+            rows.addAll(patients);
+            fireTableDataChanged();
+        }
+
+        // Inserted at its binary-searched position; skipped if a reload already has it
+        void add(EmergencyPatient patient) {
+            if (rows.contains(patient)) return;
+            int row = Collections.binarySearch(rows, patient);
+            if (row < 0) row = -row - 1;
+            rows.add(row, patient);
+            fireTableRowsInserted(row, row);
+        }
+
+        void remove(EmergencyPatient patient) {
+            int row = rows.indexOf(patient);   // normally the first row
+            if (row < 0) return;
+            rows.remove(row);
+            fireTableRowsDeleted(row, row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            EmergencyPatient p = rows.get(row);
+            switch (column) {
+                case 0:
+                    switch (p.getPriority()) {
+                        case 3: return "HIGH";
+                        case 2: return "MEDIUM";
+                        case 1: return "LOW";
+                        default: return "";
+                    }
+                case 1: return p.getPatientId();
+                case 2: return p.getPatientName();
+                case 3: return p.getCondition();
+                default: return new Date(p.getArrivalTime());
+            }
         }
     }
 
@@ -1075,11 +1672,8 @@ public class ModernHospitalGUI extends JFrame {
 
                 if (success) {
                     JOptionPane.showMessageDialog(this, "OPD patient registered!");
-                    refreshOPDTable();
                     idField.setText("");
                     nameField.setText("");
-                    // Refresh department list to show updated patient count
-                    refreshDepartmentList();
                 } else {
                     JOptionPane.showMessageDialog(this, "Registration failed!");
                 }
@@ -1109,16 +1703,16 @@ public class ModernHospitalGUI extends JFrame {
         title.setForeground(TEXT_PRIMARY);
 
         JButton treatBtn = createActionButton("Call Next", SUCCESS_COLOR, e -> {
-            OPDPatient patient = system.treatNextOPDPatient();
-            if (patient != null) {
-                JOptionPane.showMessageDialog(this,
-                        String.format("Now treating:<br><b>Token:</b> %d<br><b>Name:</b> %s<br><b>Department:</b> %s",
-                                patient.getTokenNumber(), patient.getPatientName(), patient.getDepartment()),
-                        "Patient Called", JOptionPane.INFORMATION_MESSAGE);
-                refreshOPDTable();
-            } else {
-                JOptionPane.showMessageDialog(this, "No OPD patients waiting!");
-            }
+            system.async().treatNextOPDPatientAsync().thenAcceptAsync(patient -> {
+                if (patient != null) {
+                    JOptionPane.showMessageDialog(this,
+                            String.format("Now treating:<br><b>Token:</b> %d<br><b>Name:</b> %s<br><b>Department:</b> %s",
+                                    patient.getTokenNumber(), patient.getPatientName(), patient.getDepartment()),
+                            "Patient Called", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(this, "No OPD patients waiting!");
+                }
+            }, SwingUtilities::invokeLater);
         }, new Dimension(110, 32));
 
         JPanel headerPanel = new JPanel(new BorderLayout());
@@ -1127,8 +1721,7 @@ public class ModernHospitalGUI extends JFrame {
         headerPanel.add(treatBtn, BorderLayout.EAST);
 
         // OPD Table
-        String[] columns = {"Token", "ID", "Name", "Department"};
-        opdTableModel = new DefaultTableModel(columns, 0);
+        opdTableModel = new OPDTableModel();
 
         opdTable = new JTable(opdTableModel);
         opdTable.setRowHeight(28);
@@ -1145,16 +1738,68 @@ public class ModernHospitalGUI extends JFrame {
     }
 
     private void refreshOPDTable() {
-        opdTableModel.setRowCount(0);
-        List<OPDPatient> patients = system.getAllOPDPatients();
-
-        for (OPDPatient p : patients) {
-            opdTableModel.addRow(new Object[]{
-                    p.getTokenNumber(),
-                    p.getPatientId(),
-                    p.getPatientName(),
-                    p.getDepartment()
-            });
+        opdLoader.request();
+    }
+
+    private void applyOPDChange(HospitalChangeBus.Change change, OPDPatient patient) {
+        switch (change) {
+            case ADDED -> opdTableModel.add(patient);
+            case TREATED -> opdTableModel.remove(patient);
+            default -> { }
+        }
+    }
+
+    // Rows are the waiting patients, first in first out
+    private static final class OPDTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] columns = {"Token", "ID", "Name", "Department"};
+        private final List<OPDPatient> rows = new ArrayList<>();
+
+        void load(List<OPDPatient> patients) {
+            rows.clear();
+            rows.addAll(patients);
+            fireTableDataChanged();
+        }
+
+        // Registrations append; skipped if a reload already has it
+        void add(OPDPatient patient) {
+            if (rows.contains(patient)) return;
+            rows.add(patient);
+            fireTableRowsInserted(rows.size() - 1, rows.size() - 1);
+        }
+
+        void remove(OPDPatient patient) {
+            int row = rows.indexOf(patient);   // normally the first row
+            if (row < 0) return;
+            rows.remove(row);
+            fireTableRowsDeleted(row, row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            OPDPatient p = rows.get(row);
+            switch (column) {
+                case 0: return p.getTokenNumber();
+                case 1: return p.getPatientId();
+                case 2: return p.getPatientName();
+                default: return p.getDepartment();
+            }
         }
     }
 
@@ -1200,7 +1845,6 @@ public class ModernHospitalGUI extends JFrame {
                 if (system.addMedicalRecord(record)) {
                     JOptionPane.showMessageDialog(this, "Medical record added!");
                     recordField.setText("");
-                    refreshMedicalHistory();
                 } else {
                     JOptionPane.showMessageDialog(this, "Medical history storage is full!");
                 }
@@ -1229,14 +1873,44 @@ public class ModernHospitalGUI extends JFrame {
         historyLabel.setFont(new Font("Segoe UI", Font.BOLD, 12));
         historyLabel.setForeground(TEXT_PRIMARY);
 
-        medicalHistoryArea = new JTextArea();
-        medicalHistoryArea.setEditable(false);
-        medicalHistoryArea.setFont(new Font("Monospaced", Font.PLAIN, 11));
-        medicalHistoryArea.setBackground(new Color(250, 250, 250));
+        // Patient filter: an ID, or a name / any text in the record
+        historyFilterField = new JTextField(12);
+        historyFilterField.setToolTipText("Patient ID or text; blank shows every record");
+        historyFilterField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { refreshMedicalHistory(); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { refreshMedicalHistory(); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) { refreshMedicalHistory(); }
+        });
+
+        JPanel historyHeader = new JPanel(new BorderLayout(6, 0));
+        historyHeader.setBackground(CARD_COLOR);
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        filterPanel.setBackground(CARD_COLOR);
+        filterPanel.add(new JLabel("Patient:"));
+        filterPanel.add(historyFilterField);
+        historyHeader.add(historyLabel, BorderLayout.WEST);
+        historyHeader.add(filterPanel, BorderLayout.EAST);
+
+        // Fixed cell size: the list never measures rows it does not paint
+        historyListModel = new HistoryListModel();
+        JList<String> historyList = new JList<>(historyListModel);
+        historyList.setFont(new Font("Monospaced", Font.PLAIN, 11));
+        historyList.setBackground(new Color(250, 250, 250));
+        historyList.setFixedCellHeight(historyList.getFontMetrics(historyList.getFont()).getHeight() + 6);
+        historyList.setFixedCellWidth(100);   // narrower than the viewport: cells fill its width
+        historyList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                setToolTipText(String.valueOf(value));   // records wider than the list
+                return this;
+            }
+        });
 
         refreshMedicalHistory();
 
-        JScrollPane scrollPane = new JScrollPane(medicalHistoryArea);
+        JScrollPane scrollPane = new JScrollPane(historyList);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         buttonPanel.setBackground(CARD_COLOR);
@@ -1248,7 +1922,6 @@ public class ModernHospitalGUI extends JFrame {
                     JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
             if (confirm == JOptionPane.YES_OPTION) {
                 system.clearMedicalHistory();
-                refreshMedicalHistory();
             }
         }, new Dimension(90, 28));
 
@@ -1256,7 +1929,7 @@ public class ModernHospitalGUI extends JFrame {
         buttonPanel.add(Box.createRigidArea(new Dimension(5, 0)));
         buttonPanel.add(clearBtn);
 
-        historyPanel.add(historyLabel, BorderLayout.NORTH);
+        historyPanel.add(historyHeader, BorderLayout.NORTH);
         historyPanel.add(scrollPane, BorderLayout.CENTER);
         historyPanel.add(buttonPanel, BorderLayout.SOUTH);
 
@@ -1269,18 +1942,113 @@ public class ModernHospitalGUI extends JFrame {
     }
 
     private void refreshMedicalHistory() {
-        medicalHistoryArea.setText("");
-        List<String> records = system.getAllMedicalRecords();
+        historyLoader.request();
+    }
 
-        if (records.isEmpty()) {
-            medicalHistoryArea.setText("No medical records available.");
-        } else {
-            for (int i = records.size() - 1; i >= 0; i--) {
-                medicalHistoryArea.append(records.get(i) + "\n\n");
-            }
+    // The numbers are re-read on every change (a scan of at most the history
+    // capacity); records already fetched stay valid unless one was removed
+    private void applyHistoryChange(HospitalChangeBus.Change change, String record) {
+        if (change != HospitalChangeBus.Change.ADDED) {
+            historyListModel.invalidate();
         }
+        refreshMedicalHistory();
     }
 
+    // ---------------- Medical History List ----------------
+    // A virtual list over the record numbers matching the filter, newest
+    // first. A row's record is fetched with its page (HISTORY_PAGE records,
+    // on a worker thread) when the list first paints it, and at most
+    // HISTORY_CACHE records are kept, so memory stays flat however long the
+    // history is or however far the user scrolls.
+    private static final int HISTORY_PAGE = 50;
+    private static final int HISTORY_CACHE = 500;
+    private static final String NO_RECORDS = "No medical records available.";
+    private static final String LOADING = "Loading...";
+
+    private final class HistoryListModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+
+        private long[] numbers = new long[0];
+        // Record number -> record; least recently painted dropped first
+        private final java.util.Map<Long, String> records =
+                new java.util.LinkedHashMap<Long, String>(HISTORY_CACHE, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(java.util.Map.Entry<Long, String> eldest) {
+                        return size() > HISTORY_CACHE;
+                    }
+                };
+        private final Set<Integer> pagesLoading = new java.util.HashSet<>();
+        private int generation;   // pages fetched before an invalidate are dropped
+
+        void load(long[] numbers) {
+            int oldSize = getSize();
+            this.numbers = numbers;
+            pagesLoading.clear();   // page indexes refer to the old numbers
+            generation++;
+            fireRowsReplaced(oldSize, getSize());
+        }
+
+        // A record was removed: a number may now belong to a newer record
+        void invalidate() {
+            records.clear();
+            pagesLoading.clear();
+            generation++;
+        }
+
+        @Override
+        public int getSize() {
+            return Math.max(1, numbers.length);
+        }
+
+        @Override
+        public String getElementAt(int row) {
+            if (numbers.length == 0) {
+                return historyFilterField.getText().isBlank() ? NO_RECORDS
+                        : "No medical records for \"" + historyFilterField.getText().trim() + "\".";
+            }
+            String record = records.get(numbers[row]);
+            if (record == null) {
+                fetchPage(row / HISTORY_PAGE);
+                return LOADING;
+            }
+            return record;
+        }
+
+        private void fetchPage(int page) {
+            if (!pagesLoading.add(page)) return;
+            int from = page * HISTORY_PAGE;
+            long[] wanted = Arrays.copyOfRange(numbers, from, Math.min(numbers.length, from + HISTORY_PAGE));
+            int fetchGeneration = generation;
+            new SwingWorker<String[], Void>() {
+                @Override
+                protected String[] doInBackground() {
+                    return system.getMedicalRecords(wanted);
+                }
+
+                @Override
+                protected void done() {
+                    if (fetchGeneration != generation) return;   // reloaded or invalidated meanwhile
+                    pagesLoading.remove(page);
+                    try {
+                        String[] fetched = get();
+                        for (int i = 0; i < fetched.length; i++) {
+                            // Removed since the numbers were read: the reload that follows drops it
+                            records.put(wanted[i], fetched[i] != null ? fetched[i] : LOADING);
+                        }
+                        fireContentsChanged(HistoryListModel.this, from, from + fetched.length - 1);
+                    } catch (InterruptedException | ExecutionException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }.execute();
+        }
+
+        private void fireRowsReplaced(int oldSize, int newSize) {
+            if (newSize < oldSize) fireIntervalRemoved(this, newSize, oldSize - 1);
+            if (newSize > oldSize) fireIntervalAdded(this, oldSize, newSize - 1);
+            fireContentsChanged(this, 0, Math.min(oldSize, newSize) - 1);
+        }
+    }
 
     private JPanel createDepartmentsPanel() {
         JPanel panel = new JPanel(new BorderLayout(0, 10));
@@ -1324,8 +2092,6 @@ public class ModernHospitalGUI extends JFrame {
                 if (system.addDepartment(deptName)) {
                     JOptionPane.showMessageDialog(this, "Department added!");
                     addField.setText("");
-                    refreshDepartmentList();
-                    refreshOPDDepartmentCombo(); // Update OPD combo too
                 } else {
                     JOptionPane.showMessageDialog(this, "Department already exists!");
                 }
@@ -1360,8 +2126,6 @@ public class ModernHospitalGUI extends JFrame {
                 if (system.removeDepartment(deptName)) {
                     JOptionPane.showMessageDialog(this, "Department removed!");
                     removeField.setText("");
-                    refreshDepartmentList();
-                    refreshOPDDepartmentCombo(); // Update OPD combo too
                 } else {
                     JOptionPane.showMessageDialog(this, "Department not found!");
                 }
@@ -1404,8 +2168,6 @@ public class ModernHospitalGUI extends JFrame {
                     JOptionPane.showMessageDialog(this, "Department name updated!");
                     oldNameField.setText("");
                     newNameField.setText("");
-                    refreshDepartmentList();
-                    refreshOPDDepartmentCombo(); // Update OPD combo too
                 } else {
                     JOptionPane.showMessageDialog(this, "Update failed! Check names.");
                 }
@@ -1465,16 +2227,40 @@ public class ModernHospitalGUI extends JFrame {
         return panel;
     }
 
+    // The list shows patient counts, so every change reloads it (a handful
+    // of departments); the OPD combo only changes with the names
+    private void applyDepartmentChange(HospitalChangeBus.Change change, String department) {
+        refreshDepartmentList();
+        if (change != HospitalChangeBus.Change.UPDATED) {
+            refreshOPDDepartmentCombo();
+        }
+    }
+
     // ---------------- Refresh Department List ----------------
     private void refreshDepartmentList() {
+        departmentLoader.request();
+    }
+
+    private void showDepartmentList(List<String> departments) {
         departmentListModel.clear();
-        List<String> departments = system.getDepartmentsWithStats();
         for (String dept : departments) {
             departmentListModel.addElement(dept);
         }
     }
 
 
+    // ---------------- Refresh Report ----------------
+    private void refreshReport() {
+        reportLoader.request();
+    }
+
+    // Skips the re-render (and text area re-layout) when nothing changed
+    private void showReport(HospitalReport.Snapshot report) {
+        if (report.getVersion() == shownReportVersion) return;
+        shownReportVersion = report.getVersion();
+        reportArea.setText(report.getText());
+    }
+
     private JPanel createReportsPanel() {
         JPanel panel = new JPanel(new BorderLayout(0, 10));
         panel.setBackground(BACKGROUND_COLOR);
@@ -1493,7 +2279,7 @@ public class ModernHospitalGUI extends JFrame {
         reportArea.setEditable(false);
         reportArea.setFont(new Font("Monospaced", Font.PLAIN, 11));
         reportArea.setBackground(new Color(250, 250, 250));
-        reportArea.setText(system.exportSystemReport());
+        refreshReport();
 
         JScrollPane scrollPane = new JScrollPane(reportArea);
         scrollPane.setBorder(BorderFactory.createCompoundBorder(
@@ -1505,16 +2291,14 @@ public class ModernHospitalGUI extends JFrame {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 6, 0));
         buttonPanel.setBackground(BACKGROUND_COLOR);
 
-        JButton refreshBtn = createActionButton("Refresh", PRIMARY_COLOR, e -> {
-            reportArea.setText(system.exportSystemReport());
-        }, new Dimension(90, 32));
+        JButton refreshBtn = createActionButton("Refresh", PRIMARY_COLOR, e -> refreshReport(),
+                new Dimension(90, 32));
 
         JButton exportBtn = createActionButton("Export", SUCCESS_COLOR, e -> {
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setDialogTitle("Save Report");
             if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-                JOptionPane.showMessageDialog(this, "Report export feature would save to: " +
-                        fileChooser.getSelectedFile().getPath());
+                exportReport(fileChooser.getSelectedFile().toPath());
             }
         }, new Dimension(90, 32));
 
@@ -1538,7 +2322,100 @@ public class ModernHospitalGUI extends JFrame {
         return panel;
     }
 
+    // ---------------- Export Report ----------------
+    // Streams the report and every patient to the file on a worker thread.
+    // A progress monitor shows the exporter's count of patients written;
+    // Cancel stops the export and deletes the partial file.
+    private void exportReport(java.nio.file.Path file) {
+        int total = Math.max(1, system.getTotalPatients());
+        ProgressMonitor monitor = new ProgressMonitor(this, "Exporting to " + file.getFileName(),
+                "Starting...", 0, total);
+        monitor.setMillisToDecideToPopup(200);
+
+        new SwingWorker<Integer, Integer>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                try (java.io.Writer out = new CancellableWriter(java.nio.file.Files.newBufferedWriter(file),
+                        this::isCancelled)) {
+                    system.exportSystemReport(out);
+                    out.write("\n");
+                    return system.exportPatientData(out, written -> publish(written));
+                }
+            }
+
+            @Override
+            protected void process(List<Integer> counts) {
+                int written = Math.min(total, counts.get(counts.size() - 1));
+                monitor.setProgress(written);
+                monitor.setNote(written + " of " + total + " patients");
+                if (monitor.isCanceled()) cancel(true);
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    int written = get();
+                    JOptionPane.showMessageDialog(ModernHospitalGUI.this,
+                            "Report saved to: " + file + " (" + written + " patients)");
+                    return;
+                } catch (java.util.concurrent.CancellationException ex) {
+                    JOptionPane.showMessageDialog(ModernHospitalGUI.this, "Export cancelled.");
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(ModernHospitalGUI.this, "Export failed: " + cause.getMessage());
+                }
+                try {
+                    java.nio.file.Files.deleteIfExists(file);
+                } catch (java.io.IOException ignored) {
+                    // Left behind; the user was told the export did not complete
+                }
+            }
+        }.execute();
+    }
+
+    // Stops the export once its task is cancelled
+    private static final class CancellableWriter extends java.io.FilterWriter {
+        private final java.util.function.BooleanSupplier cancelled;
+
+        CancellableWriter(java.io.Writer out, java.util.function.BooleanSupplier cancelled) {
+            super(out);
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public void write(int c) throws java.io.IOException {
+            checkCancelled();
+            super.write(c);
+        }
+
+        @Override
+        public void write(char[] buf, int off, int len) throws java.io.IOException {
+            checkCancelled();
+            super.write(buf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws java.io.IOException {
+            checkCancelled();
+            super.write(str, off, len);
+        }
+
+        private void checkCancelled() throws java.io.InterruptedIOException {
+            if (cancelled.getAsBoolean()) throw new java.io.InterruptedIOException("Export cancelled");
+        }
+    }
+
     public static void main(String[] args) {
+        // Optional JSON API alongside the GUI
+        Integer httpPort = Integer.getInteger("hospital.http.port");
+        if (httpPort != null) {
+            try {
+                HospitalHttpServer.start(HospitalSystemLogic.getInstance(), httpPort);
+            } catch (java.io.IOException e) {
+                System.err.println("HTTP API not started: " + e.getMessage());
+            }
+        }
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {